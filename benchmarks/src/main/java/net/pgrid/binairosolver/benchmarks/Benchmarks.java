@@ -0,0 +1,37 @@
+package net.pgrid.binairosolver.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so that every score comes with
+ * its allocation rate in bytes per operation.
+ *
+ * Accepts the usual JMH command-line options, e.g. a regular expression
+ * selecting the benchmarks to run.
+ * @author Patrick Kramer
+ */
+public final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Entry point of the benchmarks.
+     * @param args The JMH command-line options.
+     * @throws CommandLineOptionException - If the options are invalid.
+     * @throws RunnerException - If a benchmark fails.
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,77 @@
+package net.pgrid.binairosolver.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.pgrid.binairosolver.Game;
+import net.pgrid.binairosolver.GameFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks creating, copying, parsing and formatting boards.
+ * @author Patrick Kramer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+
+    @Param({"binairo1.txt", "binairo2.txt"})
+    public String sample;
+
+    private List<String> lines;
+    private ByteBuffer bytes, output;
+    private Game game, board;
+
+    @Setup
+    public void setup() {
+        game   = Puzzles.sample(sample);
+        String text = game.toString();
+        lines  = Arrays.asList(text.split("\n"));
+        bytes  = ByteBuffer.wrap(text.getBytes());
+        output = ByteBuffer.allocate(GameFormat.length(game));
+        board  = game.copy();
+    }
+
+    @Benchmark
+    public Game create() {
+        return Game.create(lines);
+    }
+
+    @Benchmark
+    public Game parse() {
+        bytes.rewind();
+        return GameFormat.parse(bytes, board);
+    }
+
+    @Benchmark
+    public List<String> format() {
+        return Arrays.asList(game.toString().split("\n"));
+    }
+
+    @Benchmark
+    public ByteBuffer write() {
+        output.clear();
+        GameFormat.write(game, output);
+        return output;
+    }
+
+    @Benchmark
+    public Game copy() {
+        return game.copy();
+    }
+}
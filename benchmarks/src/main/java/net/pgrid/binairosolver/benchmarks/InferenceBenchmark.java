@@ -0,0 +1,96 @@
+package net.pgrid.binairosolver.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import net.pgrid.binairosolver.Game;
+import net.pgrid.binairosolver.Generator;
+import net.pgrid.binairosolver.Inference;
+import net.pgrid.binairosolver.Solver;
+import net.pgrid.binairosolver.SolverStatistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the Inference levels on hard puzzles.
+ *
+ * The {@code RANDOM} corpus is the hard corpus of {@link SolveBenchmark},
+ * whose puzzles usually have many solutions. The {@code UNIQUE} corpus holds
+ * puzzles with a unique solution from the {@code Generator}. Besides the
+ * time per solve, the guesses and probes of all solves in an iteration are
+ * reported as secondary results; divide them by {@code solves} for the
+ * number per solve.
+ * @author Patrick Kramer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InferenceBenchmark {
+
+    private static final int CORPUS_SIZE = 64;
+
+    @Param({"16", "20"})
+    public int size;
+
+    @Param({"RANDOM", "UNIQUE"})
+    public String corpus;
+
+    @Param({"RULES", "PATTERNS", "PROBING"})
+    public Inference inference;
+
+    private final Solver solver = new Solver();
+    private List<Game> puzzles;
+    private SolverStatistics last;
+    private int next;
+
+    /**
+     * The search effort of the solves in an iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Nodes {
+        public long solves, guesses, probes;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            solves  = 0;
+            guesses = 0;
+            probes  = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        puzzles = "UNIQUE".equals(corpus)
+                ? new Generator(size, size).generate(net.pgrid.binairosolver.Difficulty.HARD, CORPUS_SIZE, size)
+                        .collect(Collectors.toList())
+                : Puzzles.generate(size, Puzzles.Difficulty.HARD, CORPUS_SIZE);
+        solver.setInference(inference);
+        solver.addListener((puzzle, solved, statistics) -> last = statistics);
+    }
+
+    @Benchmark
+    public Game solve(Nodes nodes) {
+        Game puzzle = puzzles.get(next);
+        next = (next + 1) % CORPUS_SIZE;
+        Game solution = solver.solve(puzzle);
+        nodes.solves++;
+        nodes.guesses += last.getGuesses();
+        nodes.probes  += last.getProbes();
+        return solution;
+    }
+}
@@ -0,0 +1,74 @@
+package net.pgrid.binairosolver.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.pgrid.binairosolver.Game;
+import net.pgrid.binairosolver.Solver;
+import net.pgrid.binairosolver.SolverException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks propagation and full solves of generated boards with lines
+ * longer than 64 cells, which span several words per bitset.
+ *
+ * Like {@link SolveBenchmark}, every invocation takes the next puzzle of a
+ * corpus, which is kept small since a large solve takes milliseconds to
+ * seconds. Dividing a score by the number of cells shows how close the
+ * solver stays to linear in the size of the board.
+ * @author Patrick Kramer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LargeBoardBenchmark {
+
+    private static final int CORPUS_SIZE = 8;
+
+    @Param({"64", "100", "128", "200"})
+    public int size;
+
+    @Param({"EASY", "MEDIUM", "HARD"})
+    public Puzzles.Difficulty difficulty;
+
+    private final Solver solver = new Solver();
+    private List<Game> corpus;
+    private int next;
+
+    @Setup
+    public void setup() {
+        corpus = Puzzles.generate(size, difficulty, CORPUS_SIZE);
+    }
+
+    @Benchmark
+    public Game simpleRules() throws SolverException {
+        return solver.solveSimpleRules(nextPuzzle().copy());
+    }
+
+    @Benchmark
+    public Game solve() {
+        return solver.solve(nextPuzzle());
+    }
+
+    /**
+     * Returns the next puzzle of the corpus.
+     * @return The puzzle.
+     */
+    private Game nextPuzzle() {
+        Game puzzle = corpus.get(next);
+        next = (next + 1) % CORPUS_SIZE;
+        return puzzle;
+    }
+}
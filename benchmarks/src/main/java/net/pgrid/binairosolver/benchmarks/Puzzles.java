@@ -0,0 +1,123 @@
+package net.pgrid.binairosolver.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.pgrid.binairosolver.Game;
+import net.pgrid.binairosolver.Game.State;
+import net.pgrid.binairosolver.Solver;
+import net.pgrid.binairosolver.SolverException;
+
+/**
+ * Puzzles used by the benchmarks.
+ *
+ * Generated puzzles are derived from a solved board by mirroring, transposing
+ * or inverting it at random, and clearing random cells so that a fixed
+ * fraction of clues remains. Fewer clues make a puzzle harder, as the solver
+ * has to guess more. Generation is seeded, so every run benchmarks the same
+ * puzzles.
+ * @author Patrick Kramer
+ */
+public final class Puzzles {
+
+    /**
+     * The difficulty levels of generated puzzles.
+     */
+    public enum Difficulty {
+        EASY(0.5), MEDIUM(0.42), HARD(0.35);
+
+        private final double clues;
+
+        Difficulty(double clues) {
+            this.clues = clues;
+        }
+
+        /**
+         * Returns the fraction of cells that are kept as clues.
+         * @return The fraction of clues.
+         */
+        public double getClues() {
+            return clues;
+        }
+    }
+
+    private Puzzles() {
+    }
+
+    /**
+     * Loads one of the bundled samples.
+     *
+     * The samples are read from the directory in the {@code samples} system
+     * property, which defaults to the samples of the parent project.
+     * @param name The file name of the sample.
+     * @return     The puzzle.
+     */
+    public static Game sample(String name) {
+        Path dir = Paths.get(System.getProperty("samples", "../samples"));
+        try {
+            return Game.create(Files.readAllLines(dir.resolve(name)));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns one of the boards that are equivalent to a solved board under
+     * mirroring, transposing and inverting.
+     * @param solution The solved board, which must be square.
+     * @param random   The source of randomness.
+     * @return         The transformed board.
+     */
+    private static Game transform(Game solution, Random random) {
+        int size = solution.getWidth(), variant = random.nextInt(16);
+        Game game = new Game(size, size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int sx = (variant & 1) != 0 ? size - 1 - x : x;
+                int sy = (variant & 2) != 0 ? size - 1 - y : y;
+                State value = (variant & 4) != 0 ? solution.get(sy, sx) : solution.get(sx, sy);
+                if ((variant & 8) != 0) {
+                    value = value == State.ONE ? State.ZERO : State.ONE;
+                }
+                game.set(x, y, value);
+            }
+        }
+        return game;
+    }
+
+    /**
+     * Generates puzzles of the given size and difficulty.
+     * @param size       The width and height of the boards, which must be
+     *                   even.
+     * @param difficulty The difficulty of the puzzles.
+     * @param count      The number of puzzles.
+     * @return           The puzzles.
+     */
+    public static List<Game> generate(int size, Difficulty difficulty, int count) {
+        Game solution;
+        try {
+            solution = new Solver().solveImpl(new Game(size, size));
+        } catch (SolverException ex) {
+            throw new IllegalStateException("Empty board has no solution", ex);
+        }
+        Random random = new Random(31L * size + difficulty.ordinal());
+        List<Game> puzzles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Game puzzle = transform(solution, random);
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    if (random.nextDouble() >= difficulty.getClues()) {
+                        puzzle.set(x, y, State.EMPTY);
+                    }
+                }
+            }
+            puzzles.add(puzzle);
+        }
+        return puzzles;
+    }
+}
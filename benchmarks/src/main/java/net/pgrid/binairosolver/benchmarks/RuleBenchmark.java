@@ -0,0 +1,80 @@
+package net.pgrid.binairosolver.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import net.pgrid.binairosolver.Game;
+import net.pgrid.binairosolver.Solver;
+import net.pgrid.binairosolver.SolverException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the individual rules, and the rules applied to a fixpoint.
+ *
+ * The rules change the board they are applied to, so every invocation works
+ * on a fresh copy of the puzzle. The cost of that copy is measured by
+ * {@link GameBenchmark#copy()}.
+ * @author Patrick Kramer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleBenchmark {
+
+    @Param({"binairo1.txt", "binairo2.txt"})
+    public String sample;
+
+    private final Solver solver = new Solver();
+    private Game game;
+
+    @Setup
+    public void setup() {
+        game = Puzzles.sample(sample);
+    }
+
+    @Benchmark
+    public Game doubleRulePerRow() throws SolverException {
+        return solver.solveDoubleRulePerRow(game.copy());
+    }
+
+    @Benchmark
+    public Game doubleRulePerColumn() throws SolverException {
+        return solver.solveDoubleRulePerColumn(game.copy());
+    }
+
+    @Benchmark
+    public Game gapRulePerRow() throws SolverException {
+        return solver.solveGapRulePerRow(game.copy());
+    }
+
+    @Benchmark
+    public Game gapRulePerColumn() throws SolverException {
+        return solver.solveGapRulePerColumn(game.copy());
+    }
+
+    @Benchmark
+    public Game valueCountPerRow() throws SolverException {
+        return solver.solveValueCountPerRow(game.copy());
+    }
+
+    @Benchmark
+    public Game valueCountPerColumn() throws SolverException {
+        return solver.solveValueCountPerColumn(game.copy());
+    }
+
+    @Benchmark
+    public Game simpleRules() throws SolverException {
+        return solver.solveSimpleRules(game.copy());
+    }
+}
@@ -0,0 +1,65 @@
+package net.pgrid.binairosolver.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import net.pgrid.binairosolver.BranchingStrategy;
+import net.pgrid.binairosolver.Game;
+import net.pgrid.binairosolver.Inference;
+import net.pgrid.binairosolver.Solver;
+import net.pgrid.binairosolver.SolverContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks full solves of the bundled samples.
+ *
+ * Every sample is solved with each combination of Inference level and
+ * BranchingStrategy.
+ * @author Patrick Kramer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleBenchmark {
+
+    @Param({"binairo1.txt", "binairo2.txt"})
+    public String sample;
+
+    @Param({"RULES", "PATTERNS", "PROBING"})
+    public Inference inference;
+
+    @Param({"FIRST_EMPTY", "MOST_CONSTRAINED", "MOST_FAILED", "MOST_CONSEQUENCES"})
+    public BranchingStrategy branching;
+
+    private final Solver solver = new Solver();
+    private final SolverContext context = new SolverContext(solver);
+    private Game game;
+
+    @Setup
+    public void setup() {
+        game = Puzzles.sample(sample);
+        solver.setInference(inference);
+        solver.setBranchingStrategy(branching);
+    }
+
+    @Benchmark
+    public Game solve() {
+        return solver.solve(game);
+    }
+
+    @Benchmark
+    public boolean solveInContext() {
+        return context.solve(game);
+    }
+}
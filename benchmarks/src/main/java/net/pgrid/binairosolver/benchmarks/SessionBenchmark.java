@@ -0,0 +1,78 @@
+package net.pgrid.binairosolver.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import net.pgrid.binairosolver.Difficulty;
+import net.pgrid.binairosolver.Game;
+import net.pgrid.binairosolver.Generator;
+import net.pgrid.binairosolver.Solver;
+import net.pgrid.binairosolver.SolverSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the moves of a SolverSession against solving the board again
+ * after every move.
+ *
+ * Every invocation of {@code move} makes the right move on the next empty
+ * cell of a hard puzzle and takes it back again, so the score covers two
+ * moves. {@code solve} solves the puzzle from scratch, which is what a game
+ * client without a session does after every move.
+ * @author Patrick Kramer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionBenchmark {
+
+    @Param({"10", "16", "20"})
+    public int size;
+
+    private final Solver solver = new Solver();
+    private Game puzzle, solution;
+    private SolverSession session;
+    private int[] empty;
+    private int next;
+
+    @Setup
+    public void setup() {
+        puzzle   = new Generator(size, size).generate(Difficulty.HARD, 1, size).findFirst().get();
+        solution = solver.solve(puzzle);
+        session  = new SolverSession(solver, puzzle);
+        Game board = session.getBoard();
+        int count = 0;
+        empty = new int[size * size];
+        for (int cell = 0; cell < size * size; cell++) {
+            if (board.get(cell % size, cell / size) == Game.State.EMPTY) {
+                empty[count++] = cell;
+            }
+        }
+        empty = Arrays.copyOf(empty, count);
+    }
+
+    @Benchmark
+    public int move() {
+        int cell = empty[next];
+        next = (next + 1) % empty.length;
+        int x = cell % size, y = cell / size;
+        int forced = session.assign(x, y, solution.get(x, y)).size();
+        return forced + session.retract(x, y).size();
+    }
+
+    @Benchmark
+    public Game solve() {
+        return solver.solve(puzzle);
+    }
+}
@@ -0,0 +1,63 @@
+package net.pgrid.binairosolver.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.pgrid.binairosolver.Backend;
+import net.pgrid.binairosolver.Game;
+import net.pgrid.binairosolver.Solver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks full solves of generated puzzles.
+ *
+ * Every invocation solves the next puzzle of a corpus of generated puzzles
+ * of one size and difficulty, so the score is the average over the corpus.
+ * Each corpus is solved with every Backend.
+ * @author Patrick Kramer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolveBenchmark {
+
+    private static final int CORPUS_SIZE = 64;
+
+    @Param({"6", "8", "10", "12", "14", "16", "18", "20"})
+    public int size;
+
+    @Param({"EASY", "MEDIUM", "HARD"})
+    public Puzzles.Difficulty difficulty;
+
+    @Param({"SEARCH", "SAT", "AUTO"})
+    public Backend backend;
+
+    private final Solver solver = new Solver();
+    private List<Game> corpus;
+    private int next;
+
+    @Setup
+    public void setup() {
+        corpus = Puzzles.generate(size, difficulty, CORPUS_SIZE);
+        solver.setBackend(backend);
+    }
+
+    @Benchmark
+    public Game solve() {
+        Game puzzle = corpus.get(next);
+        next = (next + 1) % CORPUS_SIZE;
+        return solver.solve(puzzle);
+    }
+}
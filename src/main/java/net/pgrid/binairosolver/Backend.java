@@ -0,0 +1,31 @@
+package net.pgrid.binairosolver;
+
+/**
+ * The method the Solver uses to finish a puzzle once propagation gets
+ * stuck.
+ * @author Patrick Kramer
+ * @see Solver#setBackend(Backend)
+ */
+public enum Backend {
+
+    /**
+     * Depth-first search over guesses, propagating after every guess with
+     * the Solver's Inference level and BranchingStrategy.
+     */
+    SEARCH,
+
+    /**
+     * Encodes the board as a formula in conjunctive normal form and solves
+     * it with a conflict-driven clause learning SAT solver, which learns
+     * from every contradiction instead of backtracking chronologically.
+     */
+    SAT,
+
+    /**
+     * Searches as {@code SEARCH} does, and switches to {@code SAT} once the
+     * search has backtracked more often than the Solver's backtrack budget.
+     * Boards with lines longer than {@code Solver.MAX_SAT_LENGTH} cells are
+     * only searched.
+     */
+    AUTO
+}
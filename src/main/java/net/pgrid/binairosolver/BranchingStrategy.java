@@ -0,0 +1,252 @@
+package net.pgrid.binairosolver;
+
+import net.pgrid.binairosolver.Game.State;
+
+/**
+ * Strategies for picking the cell and value to guess when the rules get stuck.
+ * @author Patrick Kramer
+ */
+public enum BranchingStrategy {
+
+    /**
+     * Guesses the first empty cell in column-major order, trying
+     * {@code ZERO} first.
+     */
+    FIRST_EMPTY {
+        @Override
+        int select(Propagator propagator) {
+            Game game = propagator.game();
+            for (int x = 0; x < game.getWidth(); x++) {
+                for (int y = 0; y < game.getHeight(); y++) {
+                    if (game.get(x, y) == State.EMPTY) {
+                        return choice(game, x, y, State.ZERO);
+                    }
+                }
+            }
+            return -1;
+        }
+    },
+
+    /**
+     * Guesses a cell in the row or column with the fewest empty cells,
+     * preferring the cell whose crossing line has the fewest empty cells as
+     * well. The value that the row and column of the cell still need more of
+     * is tried first.
+     */
+    MOST_CONSTRAINED {
+        @Override
+        int select(Propagator propagator) {
+            Game game = propagator.game();
+            int best = -1, bestEmpty = Integer.MAX_VALUE;
+            for (int l = 0; l < game.lines(); l++) {
+                int empty = empty(game, l);
+                if (empty > 0 && empty < bestEmpty) {
+                    best = l;
+                    bestEmpty = empty;
+                }
+            }
+            if (best < 0) {
+                return -1;
+            }
+            int height = game.getHeight(), cell = -1;
+            bestEmpty = Integer.MAX_VALUE;
+            for (int i = 0; i < game.lineLength(best); i++) {
+                int x = best < height ? i : best - height;
+                int y = best < height ? best : i;
+                if (game.get(x, y) == State.EMPTY) {
+                    int empty = empty(game, best < height ? height + x : y);
+                    if (empty < bestEmpty) {
+                        cell = y * game.getWidth() + x;
+                        bestEmpty = empty;
+                    }
+                }
+            }
+            int x = cell % game.getWidth(), y = cell / game.getWidth();
+            return choice(game, x, y, preferredValue(game, x, y));
+        }
+    },
+
+    /**
+     * Guesses like {@code MOST_CONSTRAINED}, but weighs the empty cells of
+     * each line against the contradictions found on it so far, so that the
+     * search turns to the lines that keep failing.
+     *
+     * On large boards, a wrong guess can stay unnoticed while the search
+     * explores unrelated parts of the board; the weights move the next
+     * guesses to where the contradictions are, which finds the wrong guess
+     * much sooner.
+     */
+    MOST_FAILED {
+        @Override
+        int select(Propagator propagator) {
+            Game game = propagator.game();
+            int best = -1;
+            double bestScore = 0;
+            for (int l = 0; l < game.lines(); l++) {
+                int empty = empty(game, l);
+                double score = (propagator.weight(l) + 1) / empty;
+                if (empty > 0 && score > bestScore) {
+                    best = l;
+                    bestScore = score;
+                }
+            }
+            if (best < 0) {
+                return -1;
+            }
+            int height = game.getHeight(), cell = -1;
+            bestScore = 0;
+            for (int i = 0; i < game.lineLength(best); i++) {
+                int x = best < height ? i : best - height;
+                int y = best < height ? best : i;
+                if (game.get(x, y) == State.EMPTY) {
+                    int crossing = best < height ? height + x : y;
+                    double score = (propagator.weight(crossing) + 1) / empty(game, crossing);
+                    if (score > bestScore) {
+                        cell = y * game.getWidth() + x;
+                        bestScore = score;
+                    }
+                }
+            }
+            int x = cell % game.getWidth(), y = cell / game.getWidth();
+            return choice(game, x, y, preferredValue(game, x, y));
+        }
+
+        @Override
+        boolean restarts() {
+            return true;
+        }
+    },
+
+    /**
+     * Guesses the cell for which both values fill the most other cells when
+     * propagated, trying the value that fills the most cells first.
+     *
+     * Every empty cell is probed with both values, which makes this strategy
+     * expensive per guess but tends to need the fewest guesses. A cell for
+     * which one value leads to a contradiction is picked immediately, with
+     * the other value first.
+     */
+    MOST_CONSEQUENCES {
+        @Override
+        int select(Propagator propagator) {
+            Game game = propagator.game();
+            int best = -1;
+            long bestScore = -1;
+            for (int y = 0; y < game.getHeight(); y++) {
+                for (int x = 0; x < game.getWidth(); x++) {
+                    if (game.get(x, y) != State.EMPTY) {
+                        continue;
+                    }
+                    int zeros = probe(propagator, x, y, State.ZERO);
+                    if (zeros < 0) {
+                        return choice(game, x, y, State.ONE);
+                    }
+                    int ones = probe(propagator, x, y, State.ONE);
+                    if (ones < 0) {
+                        return choice(game, x, y, State.ZERO);
+                    }
+                    long score = (long) (zeros + 1) * (ones + 1);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        best = choice(game, x, y, ones > zeros ? State.ONE : State.ZERO);
+                    }
+                }
+            }
+            return best;
+        }
+    };
+
+    /**
+     * Selects the cell and value to guess on the board of the Propagator.
+     *
+     * The board must be fully propagated. Implementations may change the
+     * board while selecting, but must restore it before returning.
+     * @param propagator The Propagator holding the Game.
+     * @return           The choice, encoded as {@code cell << 1 | value}
+     *                   where the value bit is set for {@code ONE}, or -1 if
+     *                   there is no empty cell.
+     */
+    abstract int select(Propagator propagator);
+
+    /**
+     * Returns whether the strategy learns from the contradictions of a 
+     * search, so that restarting the search makes different guesses.
+     * @return True if the search should restart now and then.
+     */
+    boolean restarts() {
+        return false;
+    }
+
+    /**
+     * Encodes a choice of cell and value.
+     * @param game  The Game.
+     * @param x     The x coordinate.
+     * @param y     The y coordinate.
+     * @param value The value to try first, not EMPTY.
+     * @return      The encoded choice.
+     */
+    static int choice(Game game, int x, int y, State value) {
+        return (y * game.getWidth() + x) << 1 | (value == State.ONE ? 1 : 0);
+    }
+
+    /**
+     * Returns the value a cell's row and column still need more of.
+     * @param game The Game.
+     * @param x    The x coordinate.
+     * @param y    The y coordinate.
+     * @return     {@code ONE} if the lines need more ones than zeros,
+     *             {@code ZERO} otherwise.
+     */
+    static State preferredValue(Game game, int x, int y) {
+        int row = y, column = game.getHeight() + x;
+        int needOnes  = game.getWidth() / 2 - count(game, row, 0)
+                      + game.getHeight() / 2 - count(game, column, 0);
+        int needZeros = game.getWidth() / 2 - count(game, row, 1)
+                      + game.getHeight() / 2 - count(game, column, 1);
+        return needOnes > needZeros ? State.ONE : State.ZERO;
+    }
+
+    /**
+     * Counts the empty cells of a line.
+     * @param game The Game.
+     * @param line The line index.
+     * @return     The number of empty cells in the line.
+     */
+    static int empty(Game game, int line) {
+        return game.lineLength(line) - count(game, line, 0) - count(game, line, 1);
+    }
+
+    /**
+     * Counts the cells of a line that hold one value.
+     * @param game   The Game.
+     * @param line   The line index.
+     * @param bitset 0 to count {@code ONE} cells, 1 to count {@code ZERO}
+     *               cells.
+     * @return       The number of cells.
+     */
+    private static int count(Game game, int line, int bitset) {
+        long[] bits = game.bits();
+        int words = game.words(), off = game.offset(line) + bitset * words, count = 0;
+        for (int w = 0; w < words; w++) {
+            count += Long.bitCount(bits[off + w]);
+        }
+        return count;
+    }
+
+    /**
+     * Tentatively sets a cell, propagates, and rolls the board back.
+     * @param propagator The Propagator holding the Game.
+     * @param x          The x coordinate.
+     * @param y          The y coordinate.
+     * @param value      The value to try.
+     * @return           The number of cells filled, or -1 if propagation
+     *                   led to a contradiction.
+     */
+    static int probe(Propagator propagator, int x, int y, State value) {
+        int mark = propagator.mark(), before = propagator.filled();
+        propagator.assign(x, y, value);
+        int filled = propagator.propagateLines() ? propagator.filled() - before : -1;
+        propagator.undo(mark);
+        return filled;
+    }
+}
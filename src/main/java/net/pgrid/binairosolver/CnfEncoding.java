@@ -0,0 +1,243 @@
+package net.pgrid.binairosolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.pgrid.binairosolver.Game.State;
+
+/**
+ * Encodes a puzzle as a formula in conjunctive normal form, and solves it
+ * with a SatSolver.
+ *
+ * Cell {@code (x, y)} is variable {@code y * width + x + 1}, which is true
+ * if the cell is {@code ONE}. Every three adjacent cells of a line get a
+ * clause forbidding three ones and a clause forbidding three zeros, and
+ * every line gets two sequential counters that allow at most half of its
+ * cells to be ones and at most half to be zeros. The filled cells of the
+ * puzzle are unit clauses.
+ *
+ * Requiring every pair of lines to differ would take a number of clauses
+ * cubic in the size of the board, while only a few pairs ever come out
+ * equal. Uniqueness is therefore added lazily: whenever a model has two
+ * equal rows or columns, the pair is required to differ in some cell and
+ * the formula is solved again, keeping what the solver has learned.
+ * @author Patrick Kramer
+ */
+final class CnfEncoding {
+
+    private final Game game;
+    private final int width, height;
+    private final SatSolver sat = new SatSolver();
+    private int pairs;
+
+    /**
+     * Encodes a puzzle.
+     * @param game The puzzle, not null.
+     */
+    CnfEncoding(Game game) {
+        assert game != null;
+        this.game   = game;
+        this.width  = game.getWidth();
+        this.height = game.getHeight();
+        for (int cell = 0; cell < width * height; cell++) {
+            sat.newVariable();
+        }
+        boolean consistent = true;
+        for (int y = 0; y < height && consistent; y++) {
+            for (int x = 0; x < width && consistent; x++) {
+                State s = game.get(x, y);
+                if (s != State.EMPTY) {
+                    consistent = sat.addClause(s == State.ONE ? cell(x, y) : -cell(x, y));
+                }
+            }
+        }
+        int[] line = new int[Math.max(width, height)];
+        for (int l = 0; l < game.lines() && consistent; l++) {
+            int length = literals(l, line, 1);
+            for (int i = 2; i < length && consistent; i++) {
+                consistent = sat.addClause(line[i - 2], line[i - 1], line[i])
+                        && sat.addClause(-line[i - 2], -line[i - 1], -line[i]);
+            }
+            consistent = consistent && atMost(line, length, length / 2);
+            if (consistent) {
+                literals(l, line, -1);
+                consistent = atMost(line, length, length / 2);
+            }
+        }
+    }
+
+    /**
+     * Returns the SatSolver holding the formula.
+     * @return The SatSolver.
+     */
+    SatSolver solver() {
+        return sat;
+    }
+
+    /**
+     * Returns the number of pairs of lines that were required to differ.
+     * @return The number of lazily added uniqueness constraints.
+     */
+    int pairs() {
+        return pairs;
+    }
+
+    /**
+     * Solves the formula, and fills the empty cells of the puzzle with the
+     * solution.
+     *
+     * The puzzle is left unchanged if it has no solution.
+     * @return True if the puzzle was solved, false otherwise.
+     */
+    boolean solve() {
+        int[] a = new int[Math.max(width, height)], b = new int[a.length];
+        List<int[]> equal = new ArrayList<>();
+        while (sat.solve()) {
+            // Adding a clause discards the model, so the pairs are collected
+            // before any of them is added.
+            for (int l = 0; l < game.lines(); l++) {
+                int end = l < height ? height : game.lines();
+                for (int k = l + 1; k < end; k++) {
+                    if (equal(l, k, a, b)) {
+                        equal.add(new int[] {l, k});
+                    }
+                }
+            }
+            if (equal.isEmpty()) {
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        game.set(x, y, sat.value(cell(x, y)) ? State.ONE : State.ZERO);
+                    }
+                }
+                return true;
+            }
+            for (int[] pair : equal) {
+                if (!differ(pair[0], pair[1], a, b)) {
+                    return false;
+                }
+            }
+            equal.clear();
+        }
+        return false;
+    }
+
+    /**
+     * Returns the variable of a cell.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return  The variable.
+     */
+    private int cell(int x, int y) {
+        return y * width + x + 1;
+    }
+
+    /**
+     * Writes the literals of the cells of a line.
+     * @param l    The line index, as in {@code Game.lines()}.
+     * @param dst  The array receiving the literals.
+     * @param sign 1 for the literals that are true if a cell is
+     *             {@code ONE}, -1 for those that are true if it is
+     *             {@code ZERO}.
+     * @return     The length of the line.
+     */
+    private int literals(int l, int[] dst, int sign) {
+        int length = game.lineLength(l);
+        for (int i = 0; i < length; i++) {
+            dst[i] = sign * (l < height ? cell(i, l) : cell(l - height, i));
+        }
+        return length;
+    }
+
+    /**
+     * Returns whether two lines are equal in the current model.
+     * @param l The first line index.
+     * @param k The second line index, of a line with the same length.
+     * @param a Scratch space for the literals of the first line.
+     * @param b Scratch space for the literals of the second line.
+     * @return  True if the lines are equal, false otherwise.
+     */
+    private boolean equal(int l, int k, int[] a, int[] b) {
+        int length = literals(l, a, 1);
+        literals(k, b, 1);
+        for (int i = 0; i < length; i++) {
+            if (sat.value(a[i]) != sat.value(b[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Requires two lines to differ in at least one cell.
+     *
+     * Every cell gets a variable that implies the lines differ there, and
+     * one of those variables must be true.
+     * @param l The first line index.
+     * @param k The second line index, of a line with the same length.
+     * @param a Scratch space for the literals of the first line.
+     * @param b Scratch space for the literals of the second line.
+     * @return  False if the formula has become unsatisfiable, true
+     *          otherwise.
+     */
+    private boolean differ(int l, int k, int[] a, int[] b) {
+        pairs++;
+        int length = literals(l, a, 1);
+        literals(k, b, 1);
+        int[] any = new int[length];
+        for (int i = 0; i < length; i++) {
+            int d = any[i] = sat.newVariable();
+            if (!sat.addClause(-d, a[i], b[i]) || !sat.addClause(-d, -a[i], -b[i])) {
+                return false;
+            }
+        }
+        return sat.addClause(any);
+    }
+
+    /**
+     * Adds a sequential counter that allows at most {@code k} of the given
+     * literals to be true.
+     *
+     * Auxiliary variable {@code s(i, j)} is true if at least {@code j} of
+     * the first {@code i} literals are true.
+     * @param lits  The literals.
+     * @param count The number of literals.
+     * @param k     The maximum number of true literals.
+     * @return      False if the formula has become unsatisfiable, true
+     *              otherwise.
+     */
+    private boolean atMost(int[] lits, int count, int k) {
+        if (k >= count) {
+            return true;
+        }
+        if (k == 0) {
+            for (int i = 0; i < count; i++) {
+                if (!sat.addClause(-lits[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        int[] prev = new int[k + 1], next = new int[k + 1];
+        boolean consistent = true;
+        for (int i = 0; i < count - 1 && consistent; i++) {
+            for (int j = 1; j <= k; j++) {
+                next[j] = sat.newVariable();
+            }
+            consistent = sat.addClause(-lits[i], next[1]);
+            for (int j = 1; j <= k && consistent; j++) {
+                if (i > 0) {
+                    consistent = sat.addClause(-prev[j], next[j])
+                            && (j == 1 || sat.addClause(-lits[i], -prev[j - 1], next[j]));
+                } else if (j > 1) {
+                    consistent = sat.addClause(-next[j]);
+                }
+            }
+            if (i > 0 && consistent) {
+                consistent = sat.addClause(-lits[i], -prev[k]);
+            }
+            int[] swap = prev;
+            prev = next;
+            next = swap;
+        }
+        return consistent && sat.addClause(-lits[count - 1], -prev[k]);
+    }
+}
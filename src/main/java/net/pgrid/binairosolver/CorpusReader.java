@@ -0,0 +1,160 @@
+package net.pgrid.binairosolver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads puzzles from a corpus file through a memory-mapped buffer.
+ *
+ * A corpus file holds one puzzle per line, in the form
+ * {@code <width>x<height>:<cells>}, where the cells are listed row by row as
+ * {@code 0}, {@code 1} or {@code .} for an empty cell. Empty lines and lines
+ * starting with {@code #} are skipped. For example, a 4x2 puzzle:
+ * <pre>
+ * 4x2:01..1..0
+ * </pre>
+ *
+ * The file is mapped in chunks, so files larger than 2 GB can be read. The
+ * puzzles are parsed straight from the mapped bytes by
+ * {@link GameFormat#parseLine(ByteBuffer, Game)}, without creating a String
+ * per line.
+ * @author Patrick Kramer
+ * @see CorpusWriter
+ */
+public class CorpusReader implements Iterator<Game>, Closeable {
+
+    /**
+     * The number of bytes mapped at once.
+     */
+    static final int CHUNK_SIZE = 64 << 20;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int chunkSize;
+    private MappedByteBuffer buffer;
+    private long bufferStart;
+    private Game next;
+
+    /**
+     * Opens a corpus file for reading.
+     * @param path The path of the file, not null.
+     * @throws IOException - If the file could not be opened.
+     */
+    public CorpusReader(Path path) throws IOException {
+        this(path, CHUNK_SIZE);
+    }
+
+    /**
+     * Opens a corpus file for reading, mapping it in chunks of the given size.
+     * @param path      The path of the file, not null.
+     * @param chunkSize The number of bytes mapped at once, which must be
+     *                  larger than the longest line in the file.
+     * @throws IOException - If the file could not be opened.
+     */
+    CorpusReader(Path path, int chunkSize) throws IOException {
+        this.channel   = FileChannel.open(path, READ);
+        this.size      = channel.size();
+        this.chunkSize = chunkSize;
+        map(0);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = parse();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Game next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Game result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Maps the chunk of the file starting at the given position.
+     * @param start The position in the file.
+     * @throws IOException - If the file could not be mapped.
+     */
+    private void map(long start) throws IOException {
+        bufferStart = start;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+    }
+
+    /**
+     * Parses the next puzzle in the file.
+     * @return The puzzle, or null at the end of the file.
+     * @throws IllegalArgumentException - If the file is malformed.
+     */
+    private Game parse() {
+        try {
+            while (true) {
+                int start = buffer.position();
+                int end = lineEnd(start);
+                if (end < 0) {
+                    if (bufferStart + buffer.limit() < size) {
+                        if (start == 0) {
+                            throw new IllegalArgumentException("Line at byte " + bufferStart + " exceeds the chunk size");
+                        }
+                        // The line continues in the next chunk.
+                        map(bufferStart + start);
+                        continue;
+                    }
+                    end = buffer.limit();
+                }
+                buffer.position(Math.min(end + 1, buffer.limit()));
+                if (end > start && buffer.get(end - 1) == '\r') {
+                    end--;
+                }
+                if (end == start || buffer.get(start) == '#') {
+                    if (end == buffer.limit() && bufferStart + buffer.limit() >= size) {
+                        return null;
+                    }
+                    continue;
+                }
+                ByteBuffer line = buffer.duplicate();
+                line.limit(end).position(start);
+                try {
+                    return GameFormat.parseLine(line, null);
+                } catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException("Malformed puzzle at byte " + (bufferStart + start), ex);
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to map corpus file", ex);
+        }
+    }
+
+    /**
+     * Returns the position of the next line break in the buffer.
+     * @param from The position to start searching at.
+     * @return     The position of the line break, or -1 if the buffer has no
+     *             further line break.
+     */
+    private int lineEnd(int from) {
+        for (int i = from; i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
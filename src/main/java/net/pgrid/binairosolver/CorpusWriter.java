@@ -0,0 +1,77 @@
+package net.pgrid.binairosolver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes puzzles to a corpus file, in the format read by
+ * {@link CorpusReader}.
+ *
+ * The puzzles are encoded into a reused direct buffer, which is written to
+ * the file channel whenever it fills up.
+ * @author Patrick Kramer
+ * @see CorpusReader
+ */
+public class CorpusWriter implements Closeable {
+
+    /**
+     * The size of the write buffer in bytes.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * Creates a corpus file, replacing an existing file.
+     * @param path The path of the file, not null.
+     * @throws IOException - If the file could not be created.
+     */
+    public CorpusWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, WRITE, CREATE, TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Appends a puzzle to the file.
+     * @param game The puzzle, not null.
+     * @throws IOException - If writing to the file failed.
+     */
+    public void write(Game game) throws IOException {
+        int length = GameFormat.lineLength(game);
+        if (buffer.remaining() < length) {
+            flush();
+            if (buffer.capacity() < length) {
+                buffer = ByteBuffer.allocateDirect(length);
+            }
+        }
+        GameFormat.writeLine(game, buffer);
+    }
+
+    /**
+     * Writes the buffered puzzles to the file.
+     * @throws IOException - If writing to the file failed.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package net.pgrid.binairosolver;
+
+/**
+ * The difficulty of a puzzle, rated by the reasoning needed to solve it.
+ * @author Patrick Kramer
+ * @see Generator#rate(Game)
+ */
+public enum Difficulty {
+
+    /**
+     * Solvable with the double, gap, count and uniqueness rules alone.
+     */
+    EASY,
+
+    /**
+     * Solvable without guessing, but only by reasoning over all valid lines
+     * of a row or column, as {@code Inference.PATTERNS} does.
+     */
+    MEDIUM,
+
+    /**
+     * Has a unique solution, but cannot be solved without guessing.
+     */
+    HARD
+}
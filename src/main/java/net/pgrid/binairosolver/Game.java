@@ -1,8 +1,8 @@
 package net.pgrid.binairosolver;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -54,8 +54,19 @@ public class Game {
         }
     }
     
-    private final State[][] values;
-    private final int width, height;
+    private final int width, height, words;
+    
+    /**
+     * The packed cell values of the board.
+     * 
+     * Every row and every column is stored as a line of two bitsets: the 
+     * cells known to be {@code ONE} followed by the cells known to be 
+     * {@code ZERO}. Each bitset spans {@code words} longs, where bit {@code i} 
+     * corresponds to cell {@code i} of the line. The rows come first, 
+     * followed by the columns, so every cell is stored twice.
+     */
+    private final long[] bits;
+    private long zobrist;
     
     /**
      * Creates a new game with the given dimensions.
@@ -66,7 +77,8 @@ public class Game {
         assert width > 0 && height > 0;
         this.width  = width;
         this.height = height;
-        this.values = new State[width][height];
+        this.words  = (Math.max(width, height) + 63) >>> 6;
+        this.bits   = new long[2 * words * (width + height)];
     }
     
     /**
@@ -74,16 +86,47 @@ public class Game {
      * @param set The State array, not null and not empty.
      */
     public Game(State[][] set) {
-        assert set != null;
-        assert set.length > 0 && set[0].length > 0;
-        this.width  = set.length;
-        this.height = set[0].length;
-        this.values = new State[width][height];
-        for (int i=0; i<set.length; i++) {
-            assert set[i].length == height;
-            System.arraycopy(set[i], 0, values[i], 0, height);
+        this(set.length, set[0].length);
+        for (int x=0; x<width; x++) {
+            assert set[x].length == height;
+            for (int y=0; y<height; y++) {
+                if (set[x][y] != null) {
+                    set(x, y, set[x][y]);
+                }
+            }
         }
     }
+    
+    /**
+     * Creates a copy of the provided Game.
+     * @param other The Game to copy, not null.
+     */
+    private Game(Game other) {
+        this.width  = other.width;
+        this.height = other.height;
+        this.words  = other.words;
+        this.bits   = other.bits.clone();
+        this.zobrist = other.zobrist;
+    }
+
+    /**
+     * Overwrites the cells of this Game with the cells of another Game.
+     * @param other The Game to copy the cells from, not null, with the same 
+     *              dimensions as this Game.
+     */
+    void load(Game other) {
+        assert other.width == width && other.height == height;
+        System.arraycopy(other.bits, 0, bits, 0, bits.length);
+        zobrist = other.zobrist;
+    }
+
+    /**
+     * Empties every cell of this Game.
+     */
+    void clear() {
+        Arrays.fill(bits, 0L);
+        zobrist = 0;
+    }
 
     /**
      * Returns the height of the board.
@@ -106,19 +149,24 @@ public class Game {
      * @return The created copy.
      */
     public Game copy() {
-        return new Game(values);
+        return new Game(this);
     }
     
     /**
-     * Returns the internal two-dimensional State array.
+     * Returns a two-dimensional State array with the contents of this Game.
      * 
-     * The array is not copied, so changes to the returned State array are 
-     * reflected in this Game instance.
+     * The array is a snapshot, so changes to the returned State array are 
+     * not reflected in this Game instance.
      * 
-     * @return The internal State array.
+     * @return The State array, indexed as {@code [x][y]}.
      */
-    @SuppressWarnings("ReturnOfCollectionOrArrayField")
     protected State[][] values() {
+        State[][] values = new State[width][height];
+        for (int x=0; x<width; x++) {
+            for (int y=0; y<height; y++) {
+                values[x][y] = get(x, y);
+            }
+        }
         return values;
     }
     
@@ -127,11 +175,34 @@ public class Game {
      * @param x     The x coordinate, must be between 0 and {@code width()}.
      * @param y     The y coordinate, must be between 0 and {@code height()}.
      * @param value The new value of the cell, not null.
+     * @throws ArrayIndexOutOfBoundsException - If the cell is not on the board.
      */
     public void set(int x, int y, State value) {
         assert value != null;
-        assert isValidCell(x, y) : "Cell coordinates out of range";
-        values[x][y] = value;
+        checkCell(x, y);
+        int  r  = offset(y) + (x >>> 6), c = offset(height + x) + (y >>> 6);
+        long rb = 1L << x, cb = 1L << y;
+        int cell = y * width + x;
+        if ((bits[r] & rb) != 0) {
+            zobrist ^= zobrist(cell, ONE);
+        } else if ((bits[r + words] & rb) != 0) {
+            zobrist ^= zobrist(cell, ZERO);
+        }
+        switch (value) {
+            case ONE:
+                bits[r] |= rb;  bits[r + words] &= ~rb;
+                bits[c] |= cb;  bits[c + words] &= ~cb;
+                zobrist ^= zobrist(cell, ONE);
+                break;
+            case ZERO:
+                bits[r] &= ~rb; bits[r + words] |= rb;
+                bits[c] &= ~cb; bits[c + words] |= cb;
+                zobrist ^= zobrist(cell, ZERO);
+                break;
+            default:
+                bits[r] &= ~rb; bits[r + words] &= ~rb;
+                bits[c] &= ~cb; bits[c + words] &= ~cb;
+        }
     }
     
     /**
@@ -139,10 +210,18 @@ public class Game {
      * @param x The x coordinate, must be between 0 and {@code width()}.
      * @param y The y coordinate, must be between 0 and {@code height()}.
      * @return  The State at the given coordinates.
+     * @throws ArrayIndexOutOfBoundsException - If the cell is not on the board.
      */
     public State get(int x, int y) {
-        assert isValidCell(x, y) : "Cell coordinates out of range";
-        return values[x][y];
+        checkCell(x, y);
+        int  r  = offset(y) + (x >>> 6);
+        long rb = 1L << x;
+        if ((bits[r] & rb) != 0) {
+            return ONE;
+        } else if ((bits[r + words] & rb) != 0) {
+            return ZERO;
+        }
+        return EMPTY;
     }
     
     /**
@@ -161,26 +240,207 @@ public class Game {
             && y >= 0 && y < getHeight();
     }
     
+    /**
+     * Checks that the given coordinates correspond to a valid cell. The 
+     * packed lines have padding bits past the last cell, so an invalid 
+     * cell would otherwise read or write another cell.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @throws ArrayIndexOutOfBoundsException - If the cell is not on the board.
+     */
+    private void checkCell(int x, int y) {
+        if (!isValidCell(x, y)) {
+            throw new ArrayIndexOutOfBoundsException("Cell coordinates out of range: " + x + "," + y);
+        }
+    }
+    
     /**
      * Returns whether the board is completely filled.
      * @return True if the board is completely filled, false otherwise.
      */
     public boolean isComplete() {
-        return Arrays.stream(values)
-                .flatMap(Arrays::stream)
-                .noneMatch(s -> s == EMPTY);
+        for (int y=0; y<height; y++) {
+            int off = offset(y);
+            for (int w=0; w<words; w++) {
+                if ((bits[off + w] | bits[off + words + w]) != wordMask(width, w)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the number of longs used by each bitset of a line.
+     * @return The number of words per bitset.
+     */
+    int words() {
+        return words;
+    }
+    
+    /**
+     * Returns the number of lines on the board.
+     * 
+     * Lines {@code 0} to {@code height - 1} are the rows, lines 
+     * {@code height} to {@code height + width - 1} are the columns.
+     * @return The number of rows plus the number of columns.
+     */
+    int lines() {
+        return height + width;
+    }
+    
+    /**
+     * Returns the number of cells in the given line.
+     * @param line The line index, between 0 and {@code lines()}.
+     * @return     The length of the line.
+     */
+    int lineLength(int line) {
+        return line < height ? width : height;
+    }
+    
+    /**
+     * Returns the offset of the given line in the {@code bits()} array.
+     * 
+     * The {@code ONE} bitset of the line starts at the returned offset, the 
+     * {@code ZERO} bitset starts {@code words()} longs later.
+     * @param line The line index, between 0 and {@code lines()}.
+     * @return     The offset of the line.
+     */
+    int offset(int line) {
+        return 2 * words * line;
+    }
+    
+    /**
+     * Fills the empty cells of a line that are set in the provided bitsets.
+     * 
+     * The bitsets use the same layout as a line in {@code bits()}, and must 
+     * not conflict with the cells that are already filled.
+     * @param line The line index, between 0 and {@code lines()}.
+     * @param src  The new {@code ONE} and {@code ZERO} bitsets of the line.
+     * @return     The number of cells that were filled.
+     */
+    int assign(int line, long[] src) {
+        int off = offset(line), filled = 0;
+        for (int w=0; w<words; w++) {
+            long ones  = src[w]         & ~bits[off + w];
+            long zeros = src[words + w] & ~bits[off + words + w];
+            filled += Long.bitCount(ones | zeros);
+            for (; ones != 0; ones &= ones - 1) {
+                setLineCell(line, (w << 6) + Long.numberOfTrailingZeros(ones), ONE);
+            }
+            for (; zeros != 0; zeros &= zeros - 1) {
+                setLineCell(line, (w << 6) + Long.numberOfTrailingZeros(zeros), ZERO);
+            }
+        }
+        return filled;
+    }
+    
+    /**
+     * Fills empty cells of a row from one word of bitsets.
+     * 
+     * This sets a word of cells at once, for reading boards quickly; the 
+     * cells must be empty.
+     * @param y     The y coordinate of the row.
+     * @param word  The index of the word within the row bitset.
+     * @param ones  The cells of the word to set to {@code ONE}.
+     * @param zeros The cells of the word to set to {@code ZERO}, disjoint 
+     *              from {@code ones}.
+     */
+    void fillRow(int y, int word, long ones, long zeros) {
+        int r = offset(y) + word, c = y >>> 6;
+        long cb = 1L << y;
+        assert (ones & zeros) == 0 && ((ones | zeros) & (bits[r] | bits[r + words])) == 0;
+        bits[r] |= ones;
+        bits[r + words] |= zeros;
+        for (; ones != 0; ones &= ones - 1) {
+            int x = (word << 6) + Long.numberOfTrailingZeros(ones);
+            bits[offset(height + x) + c] |= cb;
+            zobrist ^= zobrist(y * width + x, ONE);
+        }
+        for (; zeros != 0; zeros &= zeros - 1) {
+            int x = (word << 6) + Long.numberOfTrailingZeros(zeros);
+            bits[offset(height + x) + words + c] |= cb;
+            zobrist ^= zobrist(y * width + x, ZERO);
+        }
+    }
+    
+    /**
+     * Sets a cell identified by its line and its index within that line.
+     * @param line  The line index, between 0 and {@code lines()}.
+     * @param index The index of the cell in the line.
+     * @param value The new value of the cell, not null.
+     */
+    void setLineCell(int line, int index, State value) {
+        if (line < height) {
+            set(index, line, value);
+        } else {
+            set(line - height, index, value);
+        }
+    }
+    
+    /**
+     * Returns the internal packed representation of the board.
+     * 
+     * The array is not copied, and must not be modified directly, since the 
+     * row and column bitsets have to be kept in sync. Use {@code set} instead.
+     * @return The internal bitsets.
+     */
+    @SuppressWarnings("ReturnOfCollectionOrArrayField")
+    long[] bits() {
+        return bits;
+    }
+    
+    /**
+     * Returns the Zobrist hash of the filled cells of the board.
+     * 
+     * The hash is the XOR of a pseudo-random key for the value of every 
+     * filled cell, and is kept up to date by {@code set}. Boards of the same 
+     * size with the same cells have the same hash.
+     * @return The hash.
+     */
+    long zobrist() {
+        return zobrist;
+    }
+    
+    /**
+     * Returns the Zobrist key of a filled cell.
+     * @param cell  The cell index, {@code y * width + x}.
+     * @param value The value of the cell, not EMPTY.
+     * @return      The key.
+     */
+    static long zobrist(int cell, State value) {
+        // The SplitMix64 finalizer spreads consecutive inputs over all bits.
+        long z = (2L * cell + (value == ONE ? 1 : 0) + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * Returns the mask of valid bits in a word of a line.
+     * @param length The length of the line.
+     * @param word   The index of the word within the line bitset.
+     * @return       The bits of the word that correspond to cells.
+     */
+    static long wordMask(int length, int word) {
+        int remaining = length - (word << 6);
+        if (remaining >= 64) {
+            return -1L;
+        }
+        return remaining <= 0 ? 0L : (1L << remaining) - 1;
     }
 
     @Override
     public int hashCode() {
-        return getClass().hashCode() ^ Arrays.deepHashCode(values);
+        return getClass().hashCode() ^ Arrays.hashCode(bits);
     }
     
     @Override
     public boolean equals(Object obj) {
         if (obj != null && obj.getClass() == this.getClass()) {
             Game that = (Game) obj;
-            return Arrays.deepEquals(this.values(), that.values());
+            return this.width == that.width && this.height == that.height
+                && Arrays.equals(this.bits, that.bits);
         }
         return false;
     }
@@ -190,7 +450,7 @@ public class Game {
         StringBuilder sb = new StringBuilder(width * height + height);
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                sb.append(values[x][y].getSymbol());
+                sb.append(get(x, y).getSymbol());
             }
             sb.append('\n');
         }
@@ -207,6 +467,28 @@ public class Game {
         return create(lines.collect(Collectors.toList()));
     }
     
+    /**
+     * Creates Games from a String representation holding several puzzles.
+     * 
+     * The puzzles are separated by one or more empty lines.
+     * @param lines The List of individual lines, not null.
+     * @return      The Games encoded in the List of Strings, in order.
+     */
+    public static List<Game> createAll(List<String> lines) {
+        assert lines != null;
+        List<Game> games = new ArrayList<>();
+        int start = 0;
+        for (int i=0; i<=lines.size(); i++) {
+            if (i == lines.size() || lines.get(i).isEmpty()) {
+                if (i > start) {
+                    games.add(create(lines.subList(start, i)));
+                }
+                start = i + 1;
+            }
+        }
+        return games;
+    }
+    
     /**
      * Creates a Game from the provided String representation.
      * @param lines The List of individual lines, not null.
@@ -219,25 +501,18 @@ public class Game {
         if (height == 0 || width == 0) {
             throw new IllegalArgumentException("Invalid board size: " + width + "x" + height);
         }
-        State[][] values = new State[width][height];
+        Game game = new Game(width, height);
         for (int y=0; y<height; y++) {
             String row = lines.get(y);
             for (int x=0; x<row.length(); x++) {
                 switch (row.charAt(x)) {
-                    case ' ': values[x][y] = EMPTY; break;
-                    case '1': values[x][y] = ONE;   break;
-                    case '0': values[x][y] = ZERO;  break;
+                    case ' ': break;
+                    case '1': game.set(x, y, ONE);  break;
+                    case '0': game.set(x, y, ZERO); break;
                     default:  throw new IllegalArgumentException("Unexpected symbol at " + x + "," + y + ": " + row.charAt(x));
                 }
             }
-            for (int x=row.length(); x<width; x++) {
-                values[x][y] = EMPTY;
-            }
         }
-        assert Arrays.stream(values)
-                .flatMap(Arrays::stream)
-                .noneMatch(Objects::isNull) : "Null State in result";
-        
-        return new Game(values);
+        return game;
     }
 }
@@ -0,0 +1,495 @@
+package net.pgrid.binairosolver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes boards as text, without intermediate Strings.
+ *
+ * Two formats are supported. The grid format, also used by
+ * {@link Game#create(java.util.List)} and {@link Game#toString()}, lists
+ * every row on its own line, with a space for an empty cell; several
+ * puzzles are separated by empty lines. The line format, used by
+ * {@link CorpusReader}, holds a puzzle on one line as
+ * {@code <width>x<height>:<cells>}, with a {@code .} for an empty cell.
+ *
+ * The parse methods read the text straight into the cells of the board,
+ * and can reuse a board of the same size instead of creating one. The
+ * write methods encode a board straight into bytes. Line breaks may be
+ * either {@code \n} or {@code \r\n}; written text uses {@code \n}.
+ * @author Patrick Kramer
+ */
+public final class GameFormat {
+
+    /**
+     * The write buffer of each thread, for {@code write(Game, OutputStream)}.
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[4096]);
+
+    private GameFormat() {
+    }
+
+    /**
+     * Parses a puzzle in the grid format.
+     * @param text The text, not null.
+     * @return     The puzzle.
+     * @throws IllegalArgumentException - If the text is malformed.
+     */
+    public static Game parse(CharSequence text) {
+        return parse(text, null);
+    }
+
+    /**
+     * Parses a puzzle in the grid format, reusing a board if it has the
+     * right size.
+     *
+     * Empty lines before the puzzle are skipped, and the puzzle ends at the
+     * first empty line after it. The width of the puzzle is the length of
+     * its longest row; shorter rows end in empty cells.
+     * @param text  The text, not null.
+     * @param board The board to reuse, or null to always create a new one.
+     * @return      The puzzle, which is {@code board} if that has the size
+     *              of the puzzle.
+     * @throws IllegalArgumentException - If the text is malformed.
+     */
+    public static Game parse(CharSequence text, Game board) {
+        int end = text.length(), start = 0;
+        while (start < end && (text.charAt(start) == '\n' || text.charAt(start) == '\r')) {
+            start++;
+        }
+        int width = 0, height = 0, pos = start;
+        while (pos < end) {
+            int lineEnd = pos;
+            while (lineEnd < end && text.charAt(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int length = lineEnd - pos;
+            if (length > 0 && text.charAt(lineEnd - 1) == '\r') {
+                length--;
+            }
+            if (length == 0) {
+                break;
+            }
+            width = Math.max(width, length);
+            height++;
+            pos = lineEnd + 1;
+        }
+        if (width == 0 || height == 0) {
+            throw new IllegalArgumentException("Invalid board size: " + width + "x" + height);
+        }
+        Game game = reuse(board, width, height);
+        pos = start;
+        for (int y = 0; y < height; y++, pos++) {
+            // The cells are collected a word at a time, and then filled in
+            // at once.
+            long ones = 0, zeros = 0;
+            int x = 0;
+            for (; pos < end && text.charAt(pos) != '\n'; x++, pos++) {
+                char c = text.charAt(pos);
+                switch (c) {
+                    case ' ': break;
+                    case '1': ones  |= 1L << x; break;
+                    case '0': zeros |= 1L << x; break;
+                    case '\r':
+                        // A carriage return only ends a line.
+                        if (pos + 1 < end && text.charAt(pos + 1) != '\n') {
+                            throw new IllegalArgumentException("Unexpected symbol at " + x + "," + y + ": " + c);
+                        }
+                        break;
+                    default:  throw new IllegalArgumentException("Unexpected symbol at " + x + "," + y + ": " + c);
+                }
+                if ((x & 63) == 63) {
+                    game.fillRow(y, x >>> 6, ones, zeros);
+                    ones = zeros = 0;
+                }
+            }
+            if ((ones | zeros) != 0) {
+                game.fillRow(y, (x - 1) >>> 6, ones, zeros);
+            }
+        }
+        return game;
+    }
+
+    /**
+     * Parses the next puzzle in the grid format from a buffer, reusing a
+     * board if it has the right size.
+     *
+     * The puzzle is read from the position of the buffer, skipping empty
+     * lines before it, and ends at the first empty line after it or at the
+     * limit. The position is moved past the puzzle, so that consecutive
+     * calls read consecutive puzzles.
+     * @param buffer The buffer, not null.
+     * @param board  The board to reuse, or null to always create a new one.
+     * @return       The puzzle, which is {@code board} if that has the size
+     *               of the puzzle, or null if only empty lines remain.
+     * @throws IllegalArgumentException - If the text is malformed.
+     */
+    public static Game parse(ByteBuffer buffer, Game board) {
+        int end = buffer.limit(), start = buffer.position();
+        while (start < end && (buffer.get(start) == '\n' || buffer.get(start) == '\r')) {
+            start++;
+        }
+        int width = 0, height = 0, pos = start;
+        while (pos < end) {
+            int lineEnd = pos;
+            while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int length = lineEnd - pos;
+            if (length > 0 && buffer.get(lineEnd - 1) == '\r') {
+                length--;
+            }
+            if (length == 0) {
+                break;
+            }
+            width = Math.max(width, length);
+            height++;
+            pos = lineEnd + 1;
+        }
+        if (height == 0) {
+            buffer.position(end);
+            return null;
+        }
+        Game game = reuse(board, width, height);
+        pos = start;
+        for (int y = 0; y < height; y++, pos++) {
+            // The cells are collected a word at a time, and then filled in
+            // at once.
+            long ones = 0, zeros = 0;
+            int x = 0;
+            for (; pos < end && buffer.get(pos) != '\n'; x++, pos++) {
+                byte c = buffer.get(pos);
+                switch (c) {
+                    case ' ': break;
+                    case '1': ones  |= 1L << x; break;
+                    case '0': zeros |= 1L << x; break;
+                    case '\r':
+                        // A carriage return only ends a line.
+                        if (pos + 1 < end && buffer.get(pos + 1) != '\n') {
+                            throw new IllegalArgumentException("Unexpected symbol at byte " + pos);
+                        }
+                        break;
+                    default:  throw new IllegalArgumentException("Unexpected symbol at byte " + pos);
+                }
+                if ((x & 63) == 63) {
+                    game.fillRow(y, x >>> 6, ones, zeros);
+                    ones = zeros = 0;
+                }
+            }
+            if ((ones | zeros) != 0) {
+                game.fillRow(y, (x - 1) >>> 6, ones, zeros);
+            }
+        }
+        buffer.position(Math.min(pos, end));
+        return game;
+    }
+
+    /**
+     * Parses the next puzzle in the grid format from an array.
+     * @param bytes The text, not null.
+     * @param board The board to reuse, or null to always create a new one.
+     * @return      The puzzle, which is {@code board} if that has the size
+     *              of the puzzle, or null if the text has no puzzle.
+     * @throws IllegalArgumentException - If the text is malformed.
+     * @see #parse(ByteBuffer, Game)
+     */
+    public static Game parse(byte[] bytes, Game board) {
+        return parse(ByteBuffer.wrap(bytes), board);
+    }
+
+    /**
+     * Parses a puzzle in the line format, reusing a board if it has the
+     * right size.
+     * @param line  The line, without line break, not null.
+     * @param board The board to reuse, or null to always create a new one.
+     * @return      The puzzle, which is {@code board} if that has the size
+     *              of the puzzle.
+     * @throws IllegalArgumentException - If the line is malformed.
+     */
+    public static Game parseLine(CharSequence line, Game board) {
+        int end = line.length(), pos = 0, width = 0, height = 0;
+        while (pos < end && line.charAt(pos) != 'x') {
+            width = 10 * width + digit(line.charAt(pos), pos++);
+        }
+        pos++;
+        while (pos < end && line.charAt(pos) != ':') {
+            height = 10 * height + digit(line.charAt(pos), pos++);
+        }
+        pos++;
+        if (width <= 0 || height <= 0 || end - pos != (long) width * height) {
+            throw new IllegalArgumentException("Malformed puzzle");
+        }
+        Game game = reuse(board, width, height);
+        for (int y = 0; y < height; y++) {
+            long ones = 0, zeros = 0;
+            for (int x = 0; x < width; x++, pos++) {
+                switch (line.charAt(pos)) {
+                    case '.': break;
+                    case '0': zeros |= 1L << x; break;
+                    case '1': ones  |= 1L << x; break;
+                    default:  throw new IllegalArgumentException("Unexpected symbol at " + pos);
+                }
+                if ((x & 63) == 63 || x == width - 1) {
+                    game.fillRow(y, x >>> 6, ones, zeros);
+                    ones = zeros = 0;
+                }
+            }
+        }
+        return game;
+    }
+
+    /**
+     * Parses the next puzzle in the line format from a buffer, reusing a
+     * board if it has the right size.
+     *
+     * Empty lines and lines starting with {@code #} are skipped. The
+     * position of the buffer is moved past the line of the puzzle.
+     * @param buffer The buffer, not null.
+     * @param board  The board to reuse, or null to always create a new one.
+     * @return       The puzzle, which is {@code board} if that has the size
+     *               of the puzzle, or null if no puzzle remains.
+     * @throws IllegalArgumentException - If the line is malformed.
+     */
+    public static Game parseLine(ByteBuffer buffer, Game board) {
+        int limit = buffer.limit();
+        while (buffer.hasRemaining()) {
+            int start = buffer.position(), end = start;
+            while (end < limit && buffer.get(end) != '\n') {
+                end++;
+            }
+            buffer.position(Math.min(end + 1, limit));
+            if (end > start && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            if (end == start || buffer.get(start) == '#') {
+                continue;
+            }
+            int pos = start, width = 0, height = 0;
+            while (pos < end && buffer.get(pos) != 'x') {
+                width = 10 * width + digit(buffer.get(pos), pos++);
+            }
+            pos++;
+            while (pos < end && buffer.get(pos) != ':') {
+                height = 10 * height + digit(buffer.get(pos), pos++);
+            }
+            pos++;
+            if (width <= 0 || height <= 0 || end - pos != (long) width * height) {
+                throw new IllegalArgumentException("Malformed puzzle at byte " + start);
+            }
+            Game game = reuse(board, width, height);
+            for (int y = 0; y < height; y++) {
+                long ones = 0, zeros = 0;
+                for (int x = 0; x < width; x++, pos++) {
+                    switch (buffer.get(pos)) {
+                        case '.': break;
+                        case '0': zeros |= 1L << x; break;
+                        case '1': ones  |= 1L << x; break;
+                        default:  throw new IllegalArgumentException("Unexpected symbol at byte " + pos);
+                    }
+                    if ((x & 63) == 63 || x == width - 1) {
+                        game.fillRow(y, x >>> 6, ones, zeros);
+                        ones = zeros = 0;
+                    }
+                }
+            }
+            return game;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of bytes a board takes in the grid format.
+     * @param game The board, not null.
+     * @return     The length, including the line break after every row.
+     */
+    public static int length(Game game) {
+        return (game.getWidth() + 1) * game.getHeight();
+    }
+
+    /**
+     * Writes a board in the grid format.
+     *
+     * The board is encoded into a buffer of the calling thread and written
+     * with a single call, so the stream need not be buffered.
+     * @param game The board, not null.
+     * @param out  The stream, not null.
+     * @throws IOException - If writing to the stream failed.
+     */
+    public static void write(Game game, OutputStream out) throws IOException {
+        int length = length(game);
+        byte[] bytes = SCRATCH.get();
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, 2 * bytes.length)];
+            SCRATCH.set(bytes);
+        }
+        int width = game.getWidth(), height = game.getHeight(), words = game.words(), pos = 0;
+        long[] bits = game.bits();
+        for (int y = 0; y < height; y++) {
+            int row = game.offset(y);
+            for (int x = 0; x < width; x++) {
+                bytes[pos++] = symbol(bits, row, words, x, (byte) ' ');
+            }
+            bytes[pos++] = '\n';
+        }
+        out.write(bytes, 0, length);
+    }
+
+    /**
+     * Writes a board in the grid format into a buffer.
+     * @param game   The board, not null.
+     * @param buffer The buffer, with at least {@code length(game)} bytes
+     *               remaining.
+     * @throws BufferOverflowException - If the buffer has too
+     *         little room; nothing is written then.
+     */
+    public static void write(Game game, ByteBuffer buffer) {
+        if (buffer.remaining() < length(game)) {
+            throw new BufferOverflowException();
+        }
+        int width = game.getWidth(), height = game.getHeight(), words = game.words();
+        long[] bits = game.bits();
+        for (int y = 0; y < height; y++) {
+            int row = game.offset(y);
+            for (int x = 0; x < width; x++) {
+                buffer.put(symbol(bits, row, words, x, (byte) ' '));
+            }
+            buffer.put((byte) '\n');
+        }
+    }
+
+    /**
+     * Returns the number of bytes a board takes in the line format.
+     * @param game The board, not null.
+     * @return     The length, including the line break.
+     */
+    public static int lineLength(Game game) {
+        return digits(game.getWidth()) + digits(game.getHeight()) + 3
+             + game.getWidth() * game.getHeight();
+    }
+
+    /**
+     * Writes a board in the line format into a buffer, followed by a line
+     * break.
+     * @param game   The board, not null.
+     * @param buffer The buffer, with at least {@code lineLength(game)} bytes
+     *               remaining.
+     * @throws BufferOverflowException - If the buffer has too
+     *         little room; nothing is written then.
+     */
+    public static void writeLine(Game game, ByteBuffer buffer) {
+        if (buffer.remaining() < lineLength(game)) {
+            throw new BufferOverflowException();
+        }
+        int width = game.getWidth(), height = game.getHeight(), words = game.words();
+        long[] bits = game.bits();
+        putInt(buffer, width);
+        buffer.put((byte) 'x');
+        putInt(buffer, height);
+        buffer.put((byte) ':');
+        for (int y = 0; y < height; y++) {
+            int row = game.offset(y);
+            for (int x = 0; x < width; x++) {
+                buffer.put(symbol(bits, row, words, x, (byte) '.'));
+            }
+        }
+        buffer.put((byte) '\n');
+    }
+
+    /**
+     * Appends a board in the line format, without line break.
+     * @param game The board, not null.
+     * @param out  The builder to append to, not null.
+     * @return     The builder.
+     */
+    public static StringBuilder appendLine(Game game, StringBuilder out) {
+        int width = game.getWidth(), height = game.getHeight(), words = game.words();
+        long[] bits = game.bits();
+        out.ensureCapacity(out.length() + lineLength(game));
+        out.append(width).append('x').append(height).append(':');
+        for (int y = 0; y < height; y++) {
+            int row = game.offset(y);
+            for (int x = 0; x < width; x++) {
+                out.append((char) symbol(bits, row, words, x, (byte) '.'));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns the symbol of a cell, read straight from the bitsets of its
+     * row.
+     * @param bits  The bitsets of the board.
+     * @param row   The offset of the row in the bitsets.
+     * @param words The number of words per bitset.
+     * @param x     The x coordinate of the cell.
+     * @param empty The symbol of an empty cell.
+     * @return      The symbol.
+     */
+    private static byte symbol(long[] bits, int row, int words, int x, byte empty) {
+        long bit = 1L << x;
+        if ((bits[row + (x >>> 6)] & bit) != 0) {
+            return '1';
+        }
+        return (bits[row + words + (x >>> 6)] & bit) != 0 ? (byte) '0' : empty;
+    }
+
+    /**
+     * Returns a board to parse a puzzle into.
+     * @param board  The board to reuse, or null.
+     * @param width  The width of the puzzle.
+     * @param height The height of the puzzle.
+     * @return       The cleared board if it has the given size, or a new
+     *               board otherwise.
+     */
+    private static Game reuse(Game board, int width, int height) {
+        if (board != null && board.getWidth() == width && board.getHeight() == height) {
+            board.clear();
+            return board;
+        }
+        return new Game(width, height);
+    }
+
+    /**
+     * Returns the value of a decimal digit.
+     * @param c   The character.
+     * @param pos The position of the character, for the error message.
+     * @return    The value of the digit.
+     * @throws IllegalArgumentException - If the character is not a digit.
+     */
+    private static int digit(int c, int pos) {
+        int d = c - '0';
+        if (d < 0 || d > 9) {
+            throw new IllegalArgumentException("Malformed puzzle size at " + pos);
+        }
+        return d;
+    }
+
+    /**
+     * Returns the number of decimal digits of a positive number.
+     * @param value The number.
+     * @return      The number of digits.
+     */
+    private static int digits(int value) {
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Puts a positive number into a buffer in decimal.
+     * @param buffer The buffer.
+     * @param value  The number.
+     */
+    private static void putInt(ByteBuffer buffer, int value) {
+        int end = buffer.position() + digits(value);
+        for (int i = end - 1; i >= buffer.position(); i--) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
+    }
+}
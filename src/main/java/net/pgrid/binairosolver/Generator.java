@@ -0,0 +1,417 @@
+package net.pgrid.binairosolver;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import net.pgrid.binairosolver.Game.State;
+
+/**
+ * Generates puzzles with a unique solution.
+ *
+ * A puzzle is made by sampling a random solved board, and then removing its
+ * clues one at a time in random order, putting a clue back whenever its
+ * removal would make the puzzle ambiguous or too difficult. The resulting
+ * puzzle has no clue that can be removed.
+ *
+ * Solved boards of up to {@code LinePatterns.MAX_LENGTH} columns are built
+ * row by row from the table of valid lines, picking a random line that fits
+ * the rows above it. Wider boards are filled by a randomized search.
+ *
+ * Each removal is checked on scratch state that a thread reuses for all its
+ * puzzles. For easy and medium puzzles, the puzzle must remain solvable by
+ * propagation alone at the matching Inference level. For hard puzzles, the
+ * puzzle must have no solution with the opposite value in the removed cell,
+ * which is checked by a search that shares a TranspositionTable across all
+ * checks of the thread.
+ * @author Patrick Kramer
+ */
+public class Generator {
+
+    /**
+     * The number of solved boards tried before giving up on a difficulty.
+     */
+    static final int MAX_ATTEMPTS = 100;
+
+    /**
+     * The number of rows tried while sampling a solved board before starting
+     * over from the first row.
+     */
+    static final int SAMPLE_BUDGET = 1000;
+
+    private final int width, height;
+    private final ThreadLocal<Worker> workers;
+
+    /**
+     * Creates a Generator for puzzles of the given size.
+     * @param width  The width of the puzzles, a positive even number.
+     * @param height The height of the puzzles, a positive even number.
+     * @throws IllegalArgumentException - If a dimension is not a positive
+     *                                    even number, or the board has more
+     *                                    rows or columns than there are 
+     *                                    valid lines to fill them with.
+     */
+    public Generator(int width, int height) {
+        if (width <= 0 || height <= 0 || width % 2 != 0 || height % 2 != 0) {
+            throw new IllegalArgumentException("Dimensions must be positive and even: " + width + "x" + height);
+        }
+        // Rows and columns must all differ, so a short line length leaves 
+        // too few valid lines for a long board.
+        long[] rows = LinePatterns.get(width), columns = LinePatterns.get(height);
+        if (rows != null && height > rows.length || columns != null && width > columns.length) {
+            throw new IllegalArgumentException("No valid board of size " + width + "x" + height);
+        }
+        this.width   = width;
+        this.height  = height;
+        this.workers = ThreadLocal.withInitial(Worker::new);
+    }
+
+    /**
+     * Generates puzzles from the command line, and writes them to a corpus
+     * file.
+     *
+     * Usage: {@code Generator <width>x<height> <difficulty> <count> <file>}.
+     * The throughput is reported on standard error.
+     * @param args The command-line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length != 4) {
+            System.err.println("Usage: Generator <width>x<height> <EASY|MEDIUM|HARD> <count> <file>");
+            return;
+        }
+        String[] size = args[0].split("x");
+        Generator generator = new Generator(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        Difficulty difficulty = Difficulty.valueOf(args[1]);
+        int count = Integer.parseInt(args[2]);
+        long start = System.nanoTime();
+        try (CorpusWriter writer = new CorpusWriter(Paths.get(args[3]))) {
+            for (Game puzzle : (Iterable<Game>) generator.generate(difficulty, count, start)::iterator) {
+                writer.write(puzzle);
+            }
+        } catch (IOException ex) {
+            System.err.println("I/O error: " + ex);
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Generated %d puzzles in %.3f s: %.1f puzzles/s%n", count, seconds, count / seconds);
+    }
+
+    /**
+     * Generates puzzles in parallel.
+     *
+     * Puzzle {@code i} is generated from a Random seeded with
+     * {@code seed + i}, so the puzzles depend only on the seed.
+     * @param difficulty The difficulty of the puzzles, not null.
+     * @param count      The number of puzzles.
+     * @param seed       The seed of the first puzzle.
+     * @return           The ordered, parallel Stream of puzzles.
+     */
+    public Stream<Game> generate(Difficulty difficulty, int count, long seed) {
+        assert difficulty != null;
+        return IntStream.range(0, count).parallel()
+                .mapToObj(i -> generate(difficulty, new Random(seed + i)));
+    }
+
+    /**
+     * Generates a puzzle of the given difficulty.
+     * @param difficulty The difficulty of the puzzle, not null.
+     * @param random     The source of randomness, not null.
+     * @return           The puzzle.
+     * @throws IllegalArgumentException - If no puzzle of the difficulty was
+     *                                    found, which happens for boards too
+     *                                    small to need the reasoning.
+     */
+    public Game generate(Difficulty difficulty, Random random) {
+        assert difficulty != null && random != null;
+        Worker worker = workers.get();
+        for (int attempt=0; attempt<MAX_ATTEMPTS; attempt++) {
+            Game puzzle = worker.reduce(grid(random), difficulty, random);
+            if (worker.rate(puzzle) == difficulty) {
+                return puzzle;
+            }
+        }
+        throw new IllegalArgumentException("No " + difficulty + " puzzle of size "
+                + width + "x" + height + " found in " + MAX_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * Generates a random solved board.
+     * @param random The source of randomness, not null.
+     * @return       The solved board.
+     */
+    public Game grid(Random random) {
+        Worker worker = workers.get();
+        long[] table = LinePatterns.get(width);
+        if (table != null) {
+            long[] rows = new long[height];
+            do {
+                worker.budget = SAMPLE_BUDGET;
+            } while (!sampleRows(table, rows, 0, random, worker));
+            Game game = new Game(width, height);
+            for (int y=0; y<height; y++) {
+                for (int x=0; x<width; x++) {
+                    game.set(x, y, (rows[y] >>> x & 1) != 0 ? State.ONE : State.ZERO);
+                }
+            }
+            return game;
+        }
+        Propagator propagator = worker.patterns;
+        propagator.reset(new Game(width, height));
+        propagator.enqueueAll();
+        if (!worker.fill(random)) {
+            throw new IllegalStateException("Empty board has no solution");
+        }
+        return propagator.game().copy();
+    }
+
+    /**
+     * Rates the difficulty of a puzzle of the size of this Generator.
+     * @param puzzle The puzzle, not null, with a unique solution.
+     * @return       The Difficulty.
+     */
+    public Difficulty rate(Game puzzle) {
+        return workers.get().rate(puzzle);
+    }
+
+    /**
+     * Fills the rows of a board from a row on, picking random valid lines
+     * that fit the rows above them, with backtracking.
+     *
+     * Deep dead ends can make the backtracking very slow, so it gives up
+     * once the budget of the worker is spent, and the caller starts over.
+     * @param table  The valid lines of the width of the board.
+     * @param rows   The rows, of which the rows above {@code y} are filled.
+     * @param y      The row to fill.
+     * @param random The source of randomness.
+     * @param worker The worker, of which the budget is decreased.
+     * @return       True if all rows were filled, false if no valid board
+     *               extends the rows above {@code y} or the budget ran out.
+     */
+    private boolean sampleRows(long[] table, long[] rows, int y, Random random, Worker worker) {
+        if (y == height) {
+            return uniqueColumns(rows);
+        }
+        long mask = Game.wordMask(width, 0);
+        // Columns that may not get another one or zero, because they already
+        // hold half of them, need all remaining rows for the other value, or
+        // end in two equal values.
+        long noOnes = 0, noZeros = 0;
+        int half = height / 2, left = height - y;
+        for (int x=0; x<width; x++) {
+            int ones = 0;
+            for (int r=0; r<y; r++) {
+                ones += (int) (rows[r] >>> x & 1);
+            }
+            int zeros = y - ones;
+            if (ones == half || half - zeros == left) {
+                noOnes |= 1L << x;
+            }
+            if (zeros == half || half - ones == left) {
+                noZeros |= 1L << x;
+            }
+        }
+        if (y >= 2) {
+            noOnes  |= rows[y - 1] & rows[y - 2];
+            noZeros |= mask & ~rows[y - 1] & ~rows[y - 2];
+        }
+        if ((noOnes & noZeros) != 0) {
+            return false;
+        }
+        int[] fits = new int[table.length];
+        int count = 0;
+        for (int i=0; i<table.length; i++) {
+            long p = table[i];
+            if ((p & noOnes) == 0 && (~p & noZeros & mask) == 0 && !contains(rows, y, p)) {
+                fits[count++] = i;
+            }
+        }
+        // Try the fitting lines in random order.
+        while (count > 0 && worker.budget-- > 0) {
+            int pick = random.nextInt(count);
+            rows[y] = table[fits[pick]];
+            if (sampleRows(table, rows, y + 1, random, worker)) {
+                return true;
+            }
+            fits[pick] = fits[--count];
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether a value occurs in the first elements of an array.
+     * @param a     The array.
+     * @param count The number of elements to search.
+     * @param value The value.
+     * @return      True if the value was found, false otherwise.
+     */
+    private static boolean contains(long[] a, int count, long value) {
+        for (int i=0; i<count; i++) {
+            if (a[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the columns of a board are all different.
+     * @param rows The rows of the board.
+     * @return     True if no two columns are equal.
+     */
+    private boolean uniqueColumns(long[] rows) {
+        long[] columns = new long[width];
+        for (int x=0; x<width; x++) {
+            for (int y=0; y<height; y++) {
+                columns[x] |= (rows[y] >>> x & 1) << y;
+            }
+            if (contains(columns, x, columns[x])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The scratch state of a thread.
+     */
+    private final class Worker {
+        final Propagator rules    = new Propagator(new Game(width, height), Inference.RULES);
+        final Propagator patterns = new Propagator(new Game(width, height), Inference.PATTERNS);
+        final TranspositionTable table = new TranspositionTable(1 << 20);
+        int budget;
+
+        /**
+         * Removes clues from a solved board for as long as the puzzle stays
+         * unique and no harder than the given difficulty.
+         * @param grid       The solved board, which is modified.
+         * @param difficulty The difficulty.
+         * @param random     The source of randomness.
+         * @return           The puzzle.
+         */
+        Game reduce(Game grid, Difficulty difficulty, Random random) {
+            int cells = width * height;
+            int[] order = new int[cells];
+            for (int i=0; i<cells; i++) {
+                int j = random.nextInt(i + 1);
+                order[i] = order[j];
+                order[j] = i;
+            }
+            for (int cell : order) {
+                int x = cell % width, y = cell / width;
+                State value = grid.get(x, y);
+                grid.set(x, y, State.EMPTY);
+                if (!acceptable(grid, x, y, value, difficulty)) {
+                    grid.set(x, y, value);
+                }
+            }
+            return grid;
+        }
+
+        /**
+         * Checks whether a puzzle with one cell just removed is still unique
+         * and no harder than the given difficulty.
+         * @param puzzle     The puzzle, which was unique before the removal.
+         * @param x          The x coordinate of the removed cell.
+         * @param y          The y coordinate of the removed cell.
+         * @param value      The value of the removed cell.
+         * @param difficulty The difficulty.
+         * @return           True if the removal is acceptable.
+         */
+        boolean acceptable(Game puzzle, int x, int y, State value, Difficulty difficulty) {
+            if (difficulty == Difficulty.EASY) {
+                return propagates(rules, puzzle);
+            }
+            if (propagates(patterns, puzzle) || difficulty == Difficulty.MEDIUM) {
+                return patterns.game().isComplete();
+            }
+            Game game = patterns.game();
+            if (game.get(x, y) != State.EMPTY) {
+                // Propagation forced the removed value back.
+                return true;
+            }
+            // The puzzle was unique with the cell, so it is unique without it
+            // if no solution has the opposite value there.
+            patterns.assign(x, y, value == State.ONE ? State.ZERO : State.ONE);
+            return !new Search(patterns, BranchingStrategy.MOST_FAILED, null, 0, table).solve();
+        }
+
+        /**
+         * Loads a puzzle into a Propagator and propagates all lines.
+         * @param propagator The Propagator.
+         * @param puzzle     The puzzle.
+         * @return           True if propagation completed the board.
+         */
+        boolean propagates(Propagator propagator, Game puzzle) {
+            propagator.reset(puzzle);
+            propagator.enqueueAll();
+            return propagator.propagate() && propagator.game().isComplete();
+        }
+
+        /**
+         * Rates the difficulty of a puzzle.
+         * @param puzzle The puzzle.
+         * @return       The Difficulty.
+         */
+        Difficulty rate(Game puzzle) {
+            if (propagates(rules, puzzle)) {
+                return Difficulty.EASY;
+            }
+            return propagates(patterns, puzzle) ? Difficulty.MEDIUM : Difficulty.HARD;
+        }
+
+        /**
+         * Fills the board of the patterns Propagator by a search that guesses
+         * random values.
+         *
+         * The guesses are kept on arrays rather than the call stack, since
+         * large boards need many nested guesses.
+         * @param random The source of randomness.
+         * @return       True if the board was filled.
+         */
+        boolean fill(Random random) {
+            Game game = patterns.game();
+            int cells = width * height, levels = 0;
+            int[] marks = new int[cells], choices = new int[cells];
+            boolean[] second = new boolean[cells];
+            boolean descend = true;
+            while (true) {
+                if (descend && patterns.propagate()) {
+                    if (game.isComplete()) {
+                        return true;
+                    }
+                    int choice = BranchingStrategy.MOST_FAILED.select(patterns) & ~1;
+                    marks[levels]   = patterns.mark();
+                    choices[levels] = choice | (random.nextBoolean() ? 1 : 0);
+                    second[levels]  = false;
+                    place(choices[levels++]);
+                    continue;
+                }
+                descend = false;
+                while (levels > 0 && !descend) {
+                    int top = levels - 1;
+                    patterns.undo(marks[top]);
+                    if (second[top]) {
+                        levels--;
+                    } else {
+                        second[top] = descend = true;
+                        place(choices[top] ^= 1);
+                    }
+                }
+                if (!descend) {
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * Sets the cell of a choice on the board of the patterns Propagator.
+         * @param choice The choice, encoded as by
+         *               {@code BranchingStrategy.choice}.
+         */
+        void place(int choice) {
+            int cell = choice >>> 1;
+            patterns.assign(cell % width, cell / width, (choice & 1) != 0 ? State.ONE : State.ZERO);
+        }
+    }
+}
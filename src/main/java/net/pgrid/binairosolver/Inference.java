@@ -0,0 +1,37 @@
+package net.pgrid.binairosolver;
+
+/**
+ * The amount of reasoning the Solver applies before it guesses a cell.
+ * 
+ * Each level includes the reasoning of the levels before it.
+ * @author Patrick Kramer
+ */
+public enum Inference {
+    
+    /**
+     * Applies the double, gap, count and uniqueness rules to each line.
+     */
+    RULES,
+    
+    /**
+     * Additionally keeps the set of valid lines that each row and column can 
+     * still become, and fills the cells on which all of them agree.
+     * 
+     * Lines longer than {@code LinePatterns.MAX_LENGTH} cells have no table; 
+     * for them, the cells are filled whose other value leaves no way to 
+     * balance the line.
+     */
+    PATTERNS,
+    
+    /**
+     * Additionally probes every empty cell once the lines are propagated: 
+     * each value of the cell is tried and propagated, and a value that leads 
+     * to a contradiction forces the other one.
+     * 
+     * Probing finds cells that no single line implies, so the search needs 
+     * far fewer guesses, but every probe costs a propagation. The search 
+     * therefore only probes near the root, once the puzzle has proven hard 
+     * by failing a number of guesses; this pays off on large, hard puzzles.
+     */
+    PROBING
+}
@@ -0,0 +1,109 @@
+package net.pgrid.binairosolver;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies, for reporting percentiles.
+ *
+ * Values are counted in log-linear buckets: every power of two is split
+ * into {@code SUB_BUCKETS} equal buckets, so a percentile is reported
+ * within about 6% of the true value at any magnitude. Values below
+ * {@code SUB_BUCKETS} are counted exactly. Recording a value takes one
+ * atomic increment, and the histogram never allocates after it is created.
+ * @author Patrick Kramer
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value.
+     * @param value The value, at least 0.
+     */
+    void record(long value) {
+        assert value >= 0;
+        counts.incrementAndGet(index(value));
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * @return The count.
+     */
+    long count() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     * @return The maximum, or 0 if no value was recorded.
+     */
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns a value that the given fraction of the recorded values does
+     * not exceed.
+     *
+     * The value is the upper bound of the bucket holding the percentile,
+     * capped at the maximum, so it never understates the latency.
+     * @param fraction The percentile as a fraction, between 0 and 1.
+     * @return         The value, or 0 if no value was recorded.
+     */
+    long percentile(double fraction) {
+        assert fraction >= 0 && fraction <= 1;
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total)), seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max());
+            }
+        }
+        return max();
+    }
+
+    /**
+     * Returns the bucket of a value.
+     * @param value The value, at least 0.
+     * @return      The bucket index.
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - SUB_BITS));
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + mantissa - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the largest value that falls into a bucket.
+     * @param index The bucket index.
+     * @return      The upper bound of the bucket.
+     */
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long mantissa = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,106 @@
+package net.pgrid.binairosolver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the SolveBudget of one solve.
+ *
+ * The search calls {@code node} for every node it visits. To keep that
+ * cheap, nodes are counted locally and the limits are only checked every
+ * {@code CHECK_INTERVAL} nodes: the shared node count, the cancellation
+ * flag and the clock are not touched in between. Tasks of a parallel solve
+ * each use their own {@code fork} of the Limits, which shares the node
+ * count and the deadline; once one fork finds the budget exhausted, all of
+ * them report it.
+ * @author Patrick Kramer
+ */
+final class Limits {
+
+    /**
+     * The number of nodes between two checks of the limits.
+     */
+    static final int CHECK_INTERVAL = 16;
+
+    private final SolveBudget budget;
+    private final long deadline;
+    private final boolean timed;
+    private final AtomicLong nodes;
+    private final AtomicBoolean spent;
+    private int pending;
+    private boolean exceeded;
+
+    /**
+     * Starts tracking a budget.
+     * @param budget The budget, not null.
+     */
+    Limits(SolveBudget budget) {
+        assert budget != null;
+        long timeout = budget.getTimeout(TimeUnit.NANOSECONDS);
+        this.budget   = budget;
+        // Timeouts of centuries are treated as none, so the deadline cannot 
+        // overflow.
+        this.timed    = timeout < Long.MAX_VALUE / 2;
+        this.deadline = timed ? System.nanoTime() + timeout : 0;
+        this.nodes    = new AtomicLong();
+        this.spent    = new AtomicBoolean(budget.isCancelled());
+        this.exceeded = spent.get();
+    }
+
+    /**
+     * Creates a Limits that shares the node count and deadline of another.
+     * @param parent The Limits to share with.
+     */
+    private Limits(Limits parent) {
+        this.budget   = parent.budget;
+        this.timed    = parent.timed;
+        this.deadline = parent.deadline;
+        this.nodes    = parent.nodes;
+        this.spent    = parent.spent;
+        this.exceeded = spent.get();
+    }
+
+    /**
+     * Returns a Limits for another thread of the same solve.
+     * @return The fork.
+     */
+    Limits fork() {
+        return new Limits(this);
+    }
+
+    /**
+     * Counts a node of the search.
+     * @return True if the budget has run out and the search must stop,
+     *         false otherwise.
+     */
+    boolean node() {
+        if (++pending >= CHECK_INTERVAL && !exceeded) {
+            check();
+        }
+        return exceeded;
+    }
+
+    /**
+     * Returns whether this Limits or one of its forks found the budget 
+     * exhausted.
+     * @return True if the budget has run out, false otherwise.
+     */
+    boolean exceeded() {
+        return exceeded || spent.get();
+    }
+
+    /**
+     * Adds the locally counted nodes to the shared count, and checks the
+     * limits.
+     */
+    private void check() {
+        long total = nodes.addAndGet(pending);
+        pending  = 0;
+        exceeded = spent.get() || total > budget.getNodeLimit() || budget.isCancelled()
+                || timed && System.nanoTime() - deadline >= 0;
+        if (exceeded) {
+            spent.set(true);
+        }
+    }
+}
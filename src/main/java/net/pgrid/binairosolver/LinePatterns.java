@@ -0,0 +1,97 @@
+package net.pgrid.binairosolver;
+
+/**
+ * Tables of all valid lines of a given length.
+ *
+ * A line is valid if it holds as many ones as zeros and never has three
+ * equal values next to each other. Each line is stored as the bitset of its
+ * {@code ONE} cells. The tables are computed on first use and shared by all
+ * threads.
+ * @author Patrick Kramer
+ */
+final class LinePatterns {
+
+    /**
+     * The longest line for which a table is built.
+     *
+     * The number of valid lines grows by roughly a factor 2.5 per two cells:
+     * there are 8196 valid lines of length 20 and 52404 of length 24.
+     */
+    static final int MAX_LENGTH = 20;
+
+    private static final long[][] TABLES = new long[MAX_LENGTH + 1][];
+
+    private LinePatterns() {
+    }
+
+    /**
+     * Returns the valid lines of the given length.
+     * @param length The length of the lines.
+     * @return       The valid lines, or null if the length
+     *               is odd or larger than {@code MAX_LENGTH}. The array must
+     *               not be modified.
+     */
+    static synchronized long[] get(int length) {
+        if (length <= 0 || length > MAX_LENGTH || length % 2 != 0) {
+            return null;
+        }
+        if (TABLES[length] == null) {
+            long[] table = new long[count(length, 0, 0, 0, 0)];
+            fill(length, 0, 0, 0, 0, table, 0);
+            TABLES[length] = table;
+        }
+        return TABLES[length];
+    }
+
+    /**
+     * Counts the valid completions of a partial line.
+     * @param length The length of the line.
+     * @param i      The number of cells filled so far.
+     * @param ones   The number of ones filled so far.
+     * @param bits   The bitset of the ones filled so far.
+     * @param run    The number of equal values at the end of the partial
+     *               line.
+     * @return       The number of valid completions.
+     */
+    private static int count(int length, int i, int ones, long bits, int run) {
+        if (i == length) {
+            return 1;
+        }
+        int result = 0;
+        for (int v = 0; v <= 1; v++) {
+            int newRun = i > 0 && ((bits >>> (i - 1)) & 1) == v ? run + 1 : 1;
+            int newOnes = ones + v;
+            if (newRun <= 2 && newOnes <= length / 2 && i + 1 - newOnes <= length / 2) {
+                result += count(length, i + 1, newOnes, bits | (long) v << i, newRun);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the valid completions of a partial line to the table.
+     * @param length The length of the line.
+     * @param i      The number of cells filled so far.
+     * @param ones   The number of ones filled so far.
+     * @param bits   The bitset of the ones filled so far.
+     * @param run    The number of equal values at the end of the partial
+     *               line.
+     * @param table  The table to fill.
+     * @param pos    The first free position in the table.
+     * @return       The first free position after writing the completions.
+     */
+    private static int fill(int length, int i, int ones, long bits, int run, long[] table, int pos) {
+        if (i == length) {
+            table[pos] = bits;
+            return pos + 1;
+        }
+        for (int v = 0; v <= 1; v++) {
+            int newRun = i > 0 && ((bits >>> (i - 1)) & 1) == v ? run + 1 : 1;
+            int newOnes = ones + v;
+            if (newRun <= 2 && newOnes <= length / 2 && i + 1 - newOnes <= length / 2) {
+                pos = fill(length, i + 1, newOnes, bits | (long) v << i, newRun, table, pos);
+            }
+        }
+        return pos;
+    }
+}
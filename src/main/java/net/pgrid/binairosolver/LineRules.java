@@ -0,0 +1,345 @@
+package net.pgrid.binairosolver;
+
+import net.pgrid.binairosolver.SolverStatistics.Rule;
+
+/**
+ * Applies the simple rules to a complete row or column at once.
+ *
+ * The rules work on the packed line representation used by {@link Game}:
+ * a {@code ONE} bitset followed by a {@code ZERO} bitset, each spanning
+ * {@code words} longs. Every rule is evaluated for a whole word at a time
+ * using shifts and masks, and collisions show up as cells that are present
+ * in both bitsets.
+ * @author Patrick Kramer
+ */
+final class LineRules {
+
+    /**
+     * Fills {@code _11_} and {@code _00_} patterns.
+     */
+    static final int DOUBLE = 1;
+
+    /**
+     * Fills {@code 1_1} and {@code 0_0} patterns.
+     */
+    static final int GAP    = 2;
+
+    /**
+     * Fills the remaining cells once a line holds half of one value.
+     */
+    static final int COUNT  = 4;
+
+    /**
+     * All of the simple rules.
+     */
+    static final int ALL    = DOUBLE | GAP | COUNT;
+
+    private LineRules() {
+    }
+
+    /**
+     * Applies the selected rules to a line until they make no more progress.
+     *
+     * The line is read from {@code src} at {@code off} and the result is
+     * written to the first {@code 2 * words} elements of {@code line}, using
+     * the same layout. The source line is not modified.
+     *
+     * @param src    The array holding the line, not null.
+     * @param off    The offset of the line in {@code src}.
+     * @param words  The number of words per bitset.
+     * @param length The number of cells in the line.
+     * @param rules  The rules to apply, a combination of the rule flags.
+     * @param line   The array receiving the result, not null.
+     * @return       False if the line contains a collision, true otherwise.
+     */
+    static boolean propagate(long[] src, int off, int words, int length, int rules, long[] line) {
+        return propagate(src, off, words, length, rules, line, null);
+    }
+
+    /**
+     * Applies the selected rules to a line until they make no more progress,
+     * counting the cells filled by each rule.
+     * @param src    The array holding the line, not null.
+     * @param off    The offset of the line in {@code src}.
+     * @param words  The number of words per bitset.
+     * @param length The number of cells in the line.
+     * @param rules  The rules to apply, a combination of the rule flags.
+     * @param line   The array receiving the result, not null.
+     * @param stats  The statistics receiving the counts, or null.
+     * @return       False if the line contains a collision, true otherwise.
+     */
+    static boolean propagate(long[] src, int off, int words, int length, int rules, long[] line, 
+            SolverStatistics stats) {
+        System.arraycopy(src, off, line, 0, 2 * words);
+        boolean changed;
+        do {
+            changed = false;
+            int ones = 0, zeros = 0;
+            for (int w=0; w<words; w++) {
+                ones  += Long.bitCount(line[w]);
+                zeros += Long.bitCount(line[words + w]);
+            }
+            if (2 * ones > length || 2 * zeros > length) {
+                return false;
+            }
+            boolean fillZeros = (rules & COUNT) != 0 && 2 * ones  == length;
+            boolean fillOnes  = (rules & COUNT) != 0 && 2 * zeros == length;
+            for (int w=0; w<words; w++) {
+                long mask = Game.wordMask(length, w);
+                long newOnes = 0, newZeros = 0;
+                if ((rules & DOUBLE) != 0) {
+                    newOnes  |= doubles(line, words, words, w);
+                    newZeros |= doubles(line, 0,     words, w);
+                }
+                if ((rules & GAP) != 0) {
+                    newOnes  |= gaps(line, words, words, w);
+                    newZeros |= gaps(line, 0,     words, w);
+                }
+                if (fillOnes) {
+                    newOnes  |= ~line[words + w];
+                }
+                if (fillZeros) {
+                    newZeros |= ~line[w];
+                }
+                newOnes  &= mask & ~line[w];
+                newZeros &= mask & ~line[words + w];
+                if ((newOnes | newZeros) != 0) {
+                    if (stats != null) {
+                        count(stats, line, words, w, rules, newOnes | newZeros);
+                    }
+                    changed = true;
+                    line[w]         |= newOnes;
+                    line[words + w] |= newZeros;
+                }
+                if ((line[w] & line[words + w]) != 0) {
+                    return false;
+                }
+            }
+        } while (changed);
+        return true;
+    }
+
+    /**
+     * The number of states a line can end in while it is scanned: one zero,
+     * two zeros, one one or two ones.
+     */
+    static final int STATES = 4;
+
+    /**
+     * The bound of a state that no valid filling reaches. It stays out of
+     * range when ones are added to it.
+     */
+    private static final int UNREACHABLE = 1 << 20;
+
+    /**
+     * Fills the cells of a line whose value is forced by the balance of the
+     * line, for lines that are too long for a table of valid lines.
+     *
+     * The line is scanned forwards and backwards, keeping for every cell and
+     * every state the least and the most ones that a valid filling of the
+     * cells before (or after) it can hold. A value of a cell is possible
+     * only if some filling through it can hold exactly half ones, so the
+     * other value is filled in if it has no such filling. This subsumes the
+     * simple rules, and catches lines that cannot be balanced anymore long
+     * before the count rule would. The bounds are ranges rather than exact
+     * sets of counts, so not every forced cell is found.
+     *
+     * The scan starts as if the line were preceded by both a single zero
+     * and a single one, which allows exactly the valid fillings.
+     * @param line   The array holding the line at offset 0, which receives
+     *               the filled cells, not null.
+     * @param words  The number of words per bitset.
+     * @param length The number of cells in the line.
+     * @param lo     Scratch space for the lower bounds, of at least
+     *               {@code 2 * STATES * (length + 1)} elements.
+     * @param hi     Scratch space for the upper bounds, of the same size.
+     * @return       False if the line cannot be completed, true otherwise.
+     */
+    static boolean balance(long[] line, int words, int length, int[] lo, int[] hi) {
+        final int half = length / 2, back = STATES * (length + 1);
+        // Forward bounds at [i * STATES + s] cover the cells before cell i 
+        // ending in state s, backward bounds at [back + i * STATES + s] the 
+        // cells from cell i on, following state s.
+        lo[0] = hi[0] = lo[2] = hi[2] = 0;
+        lo[1] = lo[3] = UNREACHABLE;
+        hi[1] = hi[3] = -UNREACHABLE;
+        for (int i=0, f=0; i<length; i++, f+=STATES) {
+            boolean zero = (line[i >>> 6] >>> i & 1) == 0;
+            boolean one  = (line[words + (i >>> 6)] >>> i & 1) == 0;
+            int t = f + STATES;
+            lo[t]     = zero ? Math.min(lo[f + 2], lo[f + 3]) : UNREACHABLE;
+            hi[t]     = zero ? Math.max(hi[f + 2], hi[f + 3]) : -UNREACHABLE;
+            lo[t + 1] = zero ? lo[f]     : UNREACHABLE;
+            hi[t + 1] = zero ? hi[f]     : -UNREACHABLE;
+            lo[t + 2] = one  ? Math.min(lo[f], lo[f + 1]) + 1 : UNREACHABLE;
+            hi[t + 2] = one  ? Math.max(hi[f], hi[f + 1]) + 1 : -UNREACHABLE;
+            lo[t + 3] = one  ? lo[f + 2] + 1 : UNREACHABLE;
+            hi[t + 3] = one  ? hi[f + 2] + 1 : -UNREACHABLE;
+        }
+        int end = back + length * STATES;
+        for (int s=0; s<STATES; s++) {
+            lo[end + s] = hi[end + s] = 0;
+        }
+        for (int i=length - 1, b=end - STATES; i>=0; i--, b-=STATES) {
+            boolean zero = (line[i >>> 6] >>> i & 1) == 0;
+            boolean one  = (line[words + (i >>> 6)] >>> i & 1) == 0;
+            int n = b + STATES;
+            // The bounds after appending a zero or a one to each state.
+            int lo0 = zero ? lo[n]     : UNREACHABLE, hi0 = zero ? hi[n]     : -UNREACHABLE;
+            int lo1 = zero ? lo[n + 1] : UNREACHABLE, hi1 = zero ? hi[n + 1] : -UNREACHABLE;
+            int lo2 = one  ? lo[n + 2] + 1 : UNREACHABLE, hi2 = one ? hi[n + 2] + 1 : -UNREACHABLE;
+            int lo3 = one  ? lo[n + 3] + 1 : UNREACHABLE, hi3 = one ? hi[n + 3] + 1 : -UNREACHABLE;
+            lo[b]     = Math.min(lo1, lo2);
+            hi[b]     = Math.max(hi1, hi2);
+            lo[b + 1] = lo2;
+            hi[b + 1] = hi2;
+            lo[b + 2] = Math.min(lo0, lo3);
+            hi[b + 2] = Math.max(hi0, hi3);
+            lo[b + 3] = lo0;
+            hi[b + 3] = hi0;
+        }
+        if (!(within(lo[back], hi[back], half) || within(lo[back + 2], hi[back + 2], half))) {
+            return false;
+        }
+        for (int i=0, f=0; i<length; i++, f+=STATES) {
+            if (((line[i >>> 6] | line[words + (i >>> 6)]) >>> i & 1) != 0) {
+                // Only empty cells can be forced.
+                continue;
+            }
+            int n = back + f + STATES;
+            boolean zero = (
+                   within(lo[f + 2] + lo[n],     hi[f + 2] + hi[n],     half)
+                || within(lo[f + 3] + lo[n],     hi[f + 3] + hi[n],     half)
+                || within(lo[f]     + lo[n + 1], hi[f]     + hi[n + 1], half));
+            boolean one  = (
+                   within(lo[f]     + lo[n + 2] + 1, hi[f]     + hi[n + 2] + 1, half)
+                || within(lo[f + 1] + lo[n + 2] + 1, hi[f + 1] + hi[n + 2] + 1, half)
+                || within(lo[f + 2] + lo[n + 3] + 1, hi[f + 2] + hi[n + 3] + 1, half));
+            if (!zero && !one) {
+                return false;
+            }
+            if (zero != one) {
+                line[(one ? 0 : words) + (i >>> 6)] |= 1L << i;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether a number lies within bounds.
+     * @param lo    The lower bound.
+     * @param hi    The upper bound.
+     * @param value The number.
+     * @return      True if {@code lo <= value <= hi}.
+     */
+    private static boolean within(int lo, int hi, int value) {
+        return lo <= value && value <= hi;
+    }
+
+    /**
+     * Attributes newly filled cells to the rules that fill them, preferring 
+     * the double rule over the gap rule over the count rule.
+     * @param stats  The statistics receiving the counts.
+     * @param line   The line, before the new cells are filled.
+     * @param words  The number of words per bitset.
+     * @param w      The word index.
+     * @param rules  The rules that were applied.
+     * @param filled The newly filled cells of the word.
+     */
+    private static void count(SolverStatistics stats, long[] line, int words, int w, int rules, long filled) {
+        long byDouble = (rules & DOUBLE) == 0 ? 0 
+                : filled & (doubles(line, words, words, w) | doubles(line, 0, words, w));
+        long byGap    = (rules & GAP) == 0 ? 0 
+                : filled & ~byDouble & (gaps(line, words, words, w) | gaps(line, 0, words, w));
+        stats.filled(Rule.DOUBLE, Long.bitCount(byDouble));
+        stats.filled(Rule.GAP,    Long.bitCount(byGap));
+        stats.filled(Rule.COUNT,  Long.bitCount(filled & ~byDouble & ~byGap));
+    }
+
+    /**
+     * Returns the word of a bitset, or zero if the word lies outside of it.
+     * @param a     The array holding the bitset.
+     * @param off   The offset of the bitset.
+     * @param words The number of words in the bitset.
+     * @param w     The word index.
+     * @return      The word.
+     */
+    private static long word(long[] a, int off, int words, int w) {
+        return w >= 0 && w < words ? a[off + w] : 0L;
+    }
+
+    /**
+     * Returns the word of a bitset shifted towards lower cell indices.
+     *
+     * Bit {@code i} of the result holds cell {@code i + k}.
+     * @param a     The array holding the bitset.
+     * @param off   The offset of the bitset.
+     * @param words The number of words in the bitset.
+     * @param w     The word index.
+     * @param k     The shift distance, between 1 and 63.
+     * @return      The shifted word.
+     */
+    private static long down(long[] a, int off, int words, int w, int k) {
+        return (word(a, off, words, w) >>> k) | (word(a, off, words, w + 1) << (64 - k));
+    }
+
+    /**
+     * Returns the cells that start a pair of equal values.
+     *
+     * Bit {@code i} of the result is set if cells {@code i} and
+     * {@code i + 1} are both present in the bitset.
+     * @param a     The array holding the bitset.
+     * @param off   The offset of the bitset.
+     * @param words The number of words in the bitset.
+     * @param w     The word index.
+     * @return      The word of pair starts.
+     */
+    private static long pairs(long[] a, int off, int words, int w) {
+        return word(a, off, words, w) & down(a, off, words, w, 1);
+    }
+
+    /**
+     * Returns the cells that start a gap between two equal values.
+     *
+     * Bit {@code i} of the result is set if cells {@code i} and
+     * {@code i + 2} are both present in the bitset.
+     * @param a     The array holding the bitset.
+     * @param off   The offset of the bitset.
+     * @param words The number of words in the bitset.
+     * @param w     The word index.
+     * @return      The word of gap starts.
+     */
+    private static long gapStarts(long[] a, int off, int words, int w) {
+        return word(a, off, words, w) & down(a, off, words, w, 2);
+    }
+
+    /**
+     * Returns the cells next to a pair of equal values.
+     *
+     * These cells must hold the opposite value.
+     * @param a     The array holding the bitset.
+     * @param off   The offset of the bitset.
+     * @param words The number of words in the bitset.
+     * @param w     The word index.
+     * @return      The word of cells to fill with the opposite value.
+     */
+    static long doubles(long[] a, int off, int words, int w) {
+        long p = pairs(a, off, words, w);
+        return (p >>> 1) | (pairs(a, off, words, w + 1) << 63)
+             | (p <<  2) | (pairs(a, off, words, w - 1) >>> 62);
+    }
+
+    /**
+     * Returns the cells between two equal values.
+     *
+     * These cells must hold the opposite value.
+     * @param a     The array holding the bitset.
+     * @param off   The offset of the bitset.
+     * @param words The number of words in the bitset.
+     * @param w     The word index.
+     * @return      The word of cells to fill with the opposite value.
+     */
+    static long gaps(long[] a, int off, int words, int w) {
+        return (gapStarts(a, off, words, w) << 1) | (gapStarts(a, off, words, w - 1) >>> 63);
+    }
+}
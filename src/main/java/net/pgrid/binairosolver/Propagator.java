@@ -0,0 +1,670 @@
+package net.pgrid.binairosolver;
+
+import java.util.Arrays;
+
+/**
+ * Applies the rules to a Game until no rule makes progress.
+ *
+ * Only lines that are marked dirty are examined. Whenever a line fills a
+ * cell, the line crossing it at that cell is marked dirty, so each pass
+ * only touches the rows and columns affected by the last changes.
+ * 
+ * Besides the simple rules, the Propagator enforces that every row and 
+ * every column is unique: a complete line may not equal another complete 
+ * line, and a line with two empty cells left is completed the other way 
+ * if one way would duplicate a complete line.
+ * 
+ * With {@code Inference.PATTERNS}, the Propagator also keeps, for every row 
+ * and column, the set of valid lines from {@link LinePatterns} that agree 
+ * with its known cells and do not duplicate a complete line. Cells on which 
+ * all remaining candidates agree are filled, and an empty candidate set is a 
+ * contradiction. The candidates of a line are kept in the front of an array; 
+ * removing a candidate swaps it behind the others, so restoring the previous 
+ * size of the set restores its contents. Lines too long for a table are 
+ * reasoned about with {@code LineRules.balance} instead, which needs no 
+ * state between visits but ignores the uniqueness of lines.
+ * 
+ * Every filled cell and every reduction of a candidate set is recorded on a 
+ * {@link Trail}, so that the search can roll the Game back to an earlier 
+ * mark.
+ * @author Patrick Kramer
+ */
+final class Propagator {
+
+    /**
+     * The factor by which the weight of a contradiction grows with every 
+     * contradiction.
+     */
+    static final double WEIGHT_GROWTH = 1.05;
+
+    /**
+     * The values tried by a probe, in order.
+     */
+    private static final Game.State[] PROBES = {Game.State.ZERO, Game.State.ONE};
+
+    private final Game game;
+    private final Trail trail;
+    private final int[] queue;
+    private final boolean[] queued;
+    private final long[] line;
+    private final long[] rowPatterns, columnPatterns;
+    private final char[][] candidates;
+    private final int[] counts;
+    private final long[] complete;
+    private final int[] lo, hi;
+    private final double[] weights;
+    private double bump;
+    private final Inference inference;
+    private final boolean probe;
+    private boolean probing;
+    private final long[] implied;
+    private boolean probes;
+    private int probed = -1;
+    private int head, size;
+    private int failedLine = -1;
+    private SolverStatistics stats;
+
+    /**
+     * Creates a Propagator for the given Game that only uses the rules.
+     * @param game The Game to propagate on, not null.
+     */
+    Propagator(Game game) {
+        this(game, Inference.RULES);
+    }
+
+    /**
+     * Creates a Propagator for the given Game.
+     * @param game      The Game to propagate on, not null.
+     * @param inference The Inference level, not null.
+     */
+    Propagator(Game game, Inference inference) {
+        assert game != null && inference != null;
+        boolean patterns    = inference.compareTo(Inference.PATTERNS) >= 0;
+        this.game           = game;
+        this.inference      = inference;
+        this.probe          = inference.compareTo(Inference.PROBING) >= 0;
+        this.implied        = probe ? new long[(2 * game.getWidth() * game.getHeight() + 63) >>> 6] : null;
+        this.trail          = new Trail(game);
+        this.queue          = new int[game.lines()];
+        this.queued         = new boolean[game.lines()];
+        this.line           = new long[2 * game.words()];
+        this.rowPatterns    = patterns ? LinePatterns.get(game.getWidth())  : null;
+        this.columnPatterns = patterns ? LinePatterns.get(game.getHeight()) : null;
+        this.candidates     = new char[game.lines()][];
+        this.counts         = new int[game.lines()];
+        this.weights        = new double[game.lines()];
+        this.bump           = 1;
+        this.complete       = new long[Math.max(game.getWidth(), game.getHeight())];
+        int bounds          = 2 * LineRules.STATES * (Math.max(game.getWidth(), game.getHeight()) + 1);
+        this.lo             = patterns ? new int[bounds] : null;
+        this.hi             = patterns ? new int[bounds] : null;
+    }
+
+    /**
+     * Loads a new puzzle into the Game of this Propagator, so that the 
+     * Propagator and its scratch state can be reused.
+     * 
+     * The queue, the trail and the candidate sets are reset. No lines are 
+     * marked dirty.
+     * @param puzzle The puzzle, not null, with the same dimensions as the 
+     *               Game of this Propagator.
+     */
+    void reset(Game puzzle) {
+        clear();
+        game.load(puzzle);
+        trail.reset();
+        failedLine = -1;
+        probes = false;
+        probed = -1;
+        Arrays.fill(weights, 0);
+        bump = 1;
+        for (int l=0; l<counts.length; l++) {
+            if (candidates[l] != null) {
+                counts[l] = candidates[l].length;
+            }
+        }
+    }
+
+    /**
+     * Returns whether this Propagator can be reused for a puzzle.
+     * @param puzzle    The puzzle, not null.
+     * @param inference The Inference level, not null.
+     * @return          True if the dimensions and Inference level match.
+     */
+    boolean accepts(Game puzzle, Inference inference) {
+        return puzzle.getWidth() == game.getWidth() 
+            && puzzle.getHeight() == game.getHeight()
+            && inference == this.inference;
+    }
+
+    /**
+     * Returns the Game this Propagator works on.
+     * @return The Game.
+     */
+    Game game() {
+        return game;
+    }
+
+    /**
+     * Sets an empty cell and marks its row and column as dirty.
+     * @param x     The x coordinate.
+     * @param y     The y coordinate.
+     * @param value The new value of the cell, not EMPTY.
+     */
+    void assign(int x, int y, Game.State value) {
+        assert game.get(x, y) == Game.State.EMPTY;
+        game.set(x, y, value);
+        trail.push(y * game.getWidth() + x);
+        enqueueCell(x, y);
+    }
+
+    /**
+     * Returns a mark that {@code undo} can roll the Game back to.
+     * @return The mark.
+     */
+    int mark() {
+        return trail.mark();
+    }
+
+    /**
+     * Returns the number of cells filled through this Propagator that have 
+     * not been undone.
+     * @return The number of filled cells.
+     */
+    int filled() {
+        return trail.cells();
+    }
+
+    /**
+     * Undoes every change made since the mark was taken, and clears the 
+     * queue of dirty lines.
+     * @param mark The mark returned by {@code mark()}.
+     */
+    void undo(int mark) {
+        clear();
+        trail.undo(game, counts, mark);
+        if (filled() < probed) {
+            probed = -1;
+        }
+    }
+
+    /**
+     * Marks a line as dirty.
+     * @param l The line index.
+     */
+    void enqueue(int l) {
+        if (!queued[l]) {
+            queued[l] = true;
+            queue[(head + size++) % queue.length] = l;
+        }
+    }
+
+    /**
+     * Marks every line of the board as dirty.
+     */
+    void enqueueAll() {
+        for (int l=0; l<queue.length; l++) {
+            enqueue(l);
+        }
+    }
+
+    /**
+     * Marks the row and column of a cell as dirty.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     */
+    void enqueueCell(int x, int y) {
+        enqueue(y);
+        enqueue(game.getHeight() + x);
+    }
+
+    /**
+     * Removes all lines from the queue.
+     */
+    void clear() {
+        while (size > 0) {
+            queued[poll()] = false;
+        }
+    }
+
+    /**
+     * Sets the statistics that propagation and search are counted in.
+     * @param stats The statistics, or null to stop counting.
+     */
+    void statistics(SolverStatistics stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Returns the statistics that propagation and search are counted in.
+     * @return The statistics, or null if nothing is counted.
+     */
+    SolverStatistics statistics() {
+        return stats;
+    }
+
+    /**
+     * Returns the line on which the last contradiction was found.
+     * @return The line index, or -1 if no contradiction was found.
+     */
+    int failedLine() {
+        return failedLine;
+    }
+
+    /**
+     * Returns the weight of the contradictions found on a line since the 
+     * last puzzle was loaded.
+     * 
+     * Every contradiction adds to the weight of its line, and later 
+     * contradictions add more than earlier ones, so that the weights favor 
+     * the lines that failed recently.
+     * @param l The line index.
+     * @return  The weight, 0 if the line never failed.
+     */
+    double weight(int l) {
+        return weights[l];
+    }
+
+    /**
+     * Adds a contradiction to the weight of a line.
+     * @param l The line index.
+     */
+    private void fail(int l) {
+        weights[l] += bump;
+        bump *= WEIGHT_GROWTH;
+        if (bump > 1e100) {
+            for (int m=0; m<weights.length; m++) {
+                weights[m] *= 1e-100;
+            }
+            bump *= 1e-100;
+        }
+    }
+
+    /**
+     * Enables or disables probing in {@code propagate}. Probing is disabled 
+     * by default, and only has an effect with {@code Inference.PROBING}; the 
+     * Search enables it for the boards where probing pays off.
+     * @param enabled True to probe, false to only apply the rules.
+     */
+    void probes(boolean enabled) {
+        probes = enabled;
+    }
+
+    /**
+     * Applies the rules to the dirty lines until the queue is empty, and 
+     * probes the empty cells if probing is enabled.
+     *
+     * On a contradiction the queue is cleared and the Game is left in the
+     * partially propagated state.
+     * @return False if a contradiction was found, true otherwise.
+     */
+    boolean propagate() {
+        return propagateLines() && (!probe || !probes || filled() == probed || probe());
+    }
+
+    /**
+     * Probes every empty cell, until no probe fills a cell.
+     * 
+     * A probe sets a cell to one value and propagates it. If that leads to a 
+     * contradiction, the cell must hold the other value, which is then 
+     * propagated for real; if both values do, the board has no solution. 
+     * 
+     * When a probe succeeds, every cell it filled would succeed as a probe 
+     * too, since propagating that cell only finds a part of what the probe 
+     * found. Those cells are not probed with the same value again in the 
+     * same pass, which about halves the number of probes.
+     * @return False if a contradiction was found, true otherwise.
+     */
+    private boolean probe() {
+        long[] bits = game.bits();
+        int words = game.words(), width = game.getWidth(), height = game.getHeight();
+        boolean filled = true;
+        while (filled) {
+            filled = false;
+            Arrays.fill(implied, 0);
+            for (int y = 0; y < height; y++) {
+                int off = game.offset(y);
+                for (int w = 0; w < words; w++) {
+                    long empty = ~(bits[off + w] | bits[off + words + w]) & Game.wordMask(width, w);
+                    for (; empty != 0; empty &= empty - 1) {
+                        int x = (w << 6) + Long.numberOfTrailingZeros(empty);
+                        if (game.get(x, y) != Game.State.EMPTY) {
+                            // Filled by an earlier probe in this pass.
+                            continue;
+                        }
+                        int outcome = probe(x, y);
+                        if (outcome < 0) {
+                            return false;
+                        }
+                        filled |= outcome > 0;
+                    }
+                }
+            }
+        }
+        probed = filled();
+        return true;
+    }
+
+    /**
+     * Probes both values of an empty cell.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return  1 if the cell was filled, 0 if both values are possible, or 
+     *          -1 if neither is.
+     */
+    private int probe(int x, int y) {
+        for (Game.State value : PROBES) {
+            int literal = (y * game.getWidth() + x) << 1 | (value == Game.State.ONE ? 1 : 0);
+            if ((implied[literal >>> 6] & 1L << literal) != 0) {
+                continue;
+            }
+            if (stats != null) {
+                stats.probe();
+            }
+            int mark = mark();
+            assign(x, y, value);
+            probing = true;
+            boolean valid = propagateLines();
+            probing = false;
+            if (valid) {
+                trail.literals(game, mark, implied);
+            }
+            undo(mark);
+            if (!valid) {
+                assign(x, y, value == Game.State.ONE ? Game.State.ZERO : Game.State.ONE);
+                if (stats != null) {
+                    stats.filled(SolverStatistics.Rule.PROBING, 1);
+                }
+                return propagateLines() ? 1 : -1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Applies the rules to the dirty lines until the queue is empty, without 
+     * probing.
+     *
+     * On a contradiction the queue is cleared and the Game is left in the
+     * partially propagated state.
+     * @return False if a contradiction was found, true otherwise.
+     */
+    boolean propagateLines() {
+        long[] bits = game.bits();
+        int words = game.words(), width = game.getWidth(), height = game.getHeight();
+        if (stats != null) {
+            stats.propagation();
+        }
+        while (size > 0) {
+            int l = poll();
+            queued[l] = false;
+            int off = game.offset(l);
+            int length = game.lineLength(l);
+            if (!(stats == null || probing ? applyRules(l, length) : countRules(l, length))) {
+                failedLine = l;
+                fail(l);
+                clear();
+                return false;
+            }
+            if (empty(line, 0, words, length) == 0 && empty(bits, off, words, length) > 0) {
+                enqueueNearlyComplete(l);
+            }
+            for (int w=0; w<words; w++) {
+                long filled = (line[w] | line[words + w]) & ~(bits[off + w] | bits[off + words + w]);
+                for (; filled != 0; filled &= filled - 1) {
+                    int i = (w << 6) + Long.numberOfTrailingZeros(filled);
+                    if (l < height) {
+                        trail.push(l * width + i);
+                        enqueue(height + i);
+                    } else {
+                        trail.push(i * width + l - height);
+                        enqueue(i);
+                    }
+                }
+            }
+            game.assign(l, line);
+        }
+        return true;
+    }
+
+    /**
+     * Applies the simple rules, the line patterns and the uniqueness rule to 
+     * a line, leaving the result in {@code line}.
+     * @param l      The line index.
+     * @param length The length of the line.
+     * @return       False if a contradiction was found, true otherwise.
+     */
+    private boolean applyRules(int l, int length) {
+        return LineRules.propagate(game.bits(), game.offset(l), game.words(), length, LineRules.ALL, line)
+            && applyPatterns(l, length)
+            && applyUniqueness(l, length);
+    }
+
+    /**
+     * Applies the rules to a line like {@code applyRules}, counting the line 
+     * visit, the cells each rule fills and contradictions.
+     * @param l      The line index.
+     * @param length The length of the line.
+     * @return       False if a contradiction was found, true otherwise.
+     */
+    private boolean countRules(int l, int length) {
+        stats.lineVisit();
+        boolean valid = LineRules.propagate(game.bits(), game.offset(l), game.words(), length, 
+                LineRules.ALL, line, stats);
+        if (valid) {
+            int known = known();
+            valid = applyPatterns(l, length);
+            stats.filled(SolverStatistics.Rule.PATTERNS, known() - known);
+        }
+        if (valid) {
+            int known = known();
+            valid = applyUniqueness(l, length);
+            stats.filled(SolverStatistics.Rule.UNIQUENESS, known() - known);
+        }
+        if (!valid) {
+            stats.contradiction();
+        }
+        return valid;
+    }
+
+    /**
+     * Counts the known cells of the propagated line.
+     * @return The number of cells in either bitset of {@code line}.
+     */
+    private int known() {
+        int count = 0;
+        for (long word : line) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Reduces the candidate set of the propagated line, and fills the cells 
+     * on which all remaining candidates agree.
+     * 
+     * Lines without a table are balanced with {@code LineRules.balance}.
+     * @param l      The line index.
+     * @param length The length of the line.
+     * @return       False if no candidate is left, true otherwise.
+     */
+    private boolean applyPatterns(int l, int length) {
+        long[] table = l < game.getHeight() ? rowPatterns : columnPatterns;
+        if (table == null) {
+            return lo == null || LineRules.balance(line, game.words(), length, lo, hi);
+        }
+        char[] cand = candidates[l];
+        if (cand == null) {
+            cand = candidates[l] = new char[table.length];
+            for (int i=0; i<cand.length; i++) {
+                cand[i] = (char) i;
+            }
+            counts[l] = table.length;
+        }
+        int words = game.words(), others = completeLines(l, length);
+        long ones = line[0], zeros = line[words], mask = Game.wordMask(length, 0);
+        long all = mask, any = 0;
+        int n = counts[l];
+        for (int i=0; i<n; ) {
+            long p = table[cand[i]];
+            if ((p & zeros) != 0 || (ones & ~p) != 0 || contains(complete, others, p)) {
+                char c = cand[i];
+                cand[i] = cand[--n];
+                cand[n] = c;
+            } else {
+                all &= p;
+                any |= p;
+                i++;
+            }
+        }
+        if (n < counts[l]) {
+            trail.pushCount(l, counts[l]);
+            counts[l] = n;
+        }
+        line[0]     |= all;
+        line[words] |= mask & ~any;
+        return n > 0;
+    }
+    
+    /**
+     * Collects the {@code ONE} bitsets of the complete lines that run in the 
+     * same direction as a line, into the {@code complete} array.
+     * 
+     * Only used for lines of at most 64 cells.
+     * @param l      The line index, which is itself skipped.
+     * @param length The length of the line.
+     * @return       The number of complete lines collected.
+     */
+    private int completeLines(int l, int length) {
+        long[] bits = game.bits();
+        int words = game.words(), count = 0;
+        int from = l < game.getHeight() ? 0 : game.getHeight();
+        int to   = l < game.getHeight() ? game.getHeight() : game.lines();
+        for (int m = from; m < to; m++) {
+            int off = game.offset(m);
+            if (m != l && empty(bits, off, words, length) == 0) {
+                complete[count++] = bits[off];
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Returns whether a value occurs in the first elements of an array.
+     * @param a     The array.
+     * @param count The number of elements to search.
+     * @param value The value.
+     * @return      True if the value was found, false otherwise.
+     */
+    private static boolean contains(long[] a, int count, long value) {
+        for (int i=0; i<count; i++) {
+            if (a[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Applies the uniqueness rule to the propagated line.
+     * 
+     * If the line has two empty cells left and its known cells match a 
+     * complete line in the same direction, the empty cells are filled 
+     * with the opposite values of that line. 
+     * @param l      The line index.
+     * @param length The length of the line.
+     * @return       False if the line duplicates a complete line, true 
+     *               otherwise.
+     */
+    private boolean applyUniqueness(int l, int length) {
+        int words = game.words(), empty = empty(line, 0, words, length);
+        if (empty != 0 && empty != 2) {
+            return true;
+        }
+        long[] bits = game.bits();
+        int from = l < game.getHeight() ? 0 : game.getHeight();
+        int to   = l < game.getHeight() ? game.getHeight() : game.lines();
+        for (int m = from; m < to; m++) {
+            int off = game.offset(m);
+            if (m == l || empty(bits, off, words, length) != 0 || !matches(off)) {
+                continue;
+            }
+            if (empty == 0) {
+                return false;
+            }
+            // Both empty cells need a different value, since the count 
+            // rule would have filled them otherwise.
+            for (int w=0; w<words; w++) {
+                long free = Game.wordMask(length, w) & ~(line[w] | line[words + w]);
+                line[w]         |= bits[off + words + w] & free;
+                line[words + w] |= bits[off + w]         & free;
+            }
+            return LineRules.propagate(line, 0, words, length, LineRules.ALL, line)
+                && applyUniqueness(l, length);
+        }
+        return true;
+    }
+    
+    /**
+     * Returns whether a complete line agrees with the known cells of the 
+     * propagated line.
+     * @param off The offset of the complete line in {@code game.bits()}.
+     * @return    True if every known cell has the same value in both lines.
+     */
+    private boolean matches(int off) {
+        long[] bits = game.bits();
+        int words = game.words();
+        for (int w=0; w<words; w++) {
+            long known = line[w] | line[words + w];
+            if ((bits[off + w] & known) != line[w] 
+                    || (bits[off + words + w] & known) != line[words + w]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Marks the lines that run in the same direction as a line that has 
+     * just been completed, and have two empty cells left, as dirty.
+     * @param l The index of the completed line.
+     */
+    private void enqueueNearlyComplete(int l) {
+        long[] bits = game.bits();
+        int words = game.words(), length = game.lineLength(l);
+        int from = l < game.getHeight() ? 0 : game.getHeight();
+        int to   = l < game.getHeight() ? game.getHeight() : game.lines();
+        for (int m = from; m < to; m++) {
+            if (m != l && empty(bits, game.offset(m), words, length) == 2) {
+                enqueue(m);
+            }
+        }
+    }
+    
+    /**
+     * Counts the empty cells of a line.
+     * @param a      The array holding the line.
+     * @param off    The offset of the line.
+     * @param words  The number of words per bitset.
+     * @param length The length of the line.
+     * @return       The number of empty cells.
+     */
+    private static int empty(long[] a, int off, int words, int length) {
+        int known = 0;
+        for (int w=0; w<words; w++) {
+            known += Long.bitCount(a[off + w] | a[off + words + w]);
+        }
+        return length - known;
+    }
+    
+    /**
+     * Removes the next line from the queue.
+     * @return The line index.
+     */
+    private int poll() {
+        int l = queue[head];
+        head = (head + 1) % queue.length;
+        size--;
+        return l;
+    }
+}
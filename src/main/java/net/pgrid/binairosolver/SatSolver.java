@@ -0,0 +1,655 @@
+package net.pgrid.binairosolver;
+
+import java.util.Arrays;
+
+/**
+ * A conflict-driven clause learning (CDCL) solver for formulas in
+ * conjunctive normal form.
+ *
+ * Variables are numbered from 1, and a literal is a variable for its
+ * positive form or the negated variable for its negative form, as in the
+ * DIMACS format. Clauses may be added between calls to {@code solve}, so
+ * that constraints can be added lazily once a model violates them; the
+ * learned clauses are kept.
+ *
+ * The solver watches two literals of every clause, learns a first-UIP
+ * clause from every conflict and picks decisions by decaying variable
+ * activity with saved phases. It restarts along the Luby sequence and
+ * periodically drops the half of its learned clauses with the most
+ * decision levels.
+ * @author Patrick Kramer
+ */
+final class SatSolver {
+
+    /**
+     * The number of conflicts in one unit of the Luby restart sequence.
+     */
+    static final int RESTART_CONFLICTS = 64;
+
+    private static final double VARIABLE_DECAY = 0.95;
+    private static final int NO_REASON = -1;
+
+    // Literal 2*v is variable v, literal 2*v+1 is its negation. The value of
+    // a literal is 1 if it is true, -1 if it is false and 0 if unassigned.
+    private byte[] values = new byte[0];
+    private int[] levels = new int[0], reasons = new int[0];
+    private boolean[] phases = new boolean[0], seen = new boolean[0];
+    private double[] activity = new double[0];
+    private double bump = 1;
+    private int variables;
+
+    private int[][] clauses = new int[16][];
+    private int[] lbds = new int[16];
+    private int clauseCount, originalCount, learnedLimit = 2000;
+    private int[][] watches = new int[0][];
+    private int[] watchCounts = new int[0];
+
+    private int[] trail = new int[0], trailLimits = new int[16];
+    private int trailSize, propagated, decisionLevel;
+
+    private final VariableHeap heap = new VariableHeap();
+    private int[] learned = new int[16];
+    private boolean inconsistent;
+    private long conflicts, decisions;
+    private Limits limits;
+
+    /**
+     * Adds a variable to the formula.
+     * @return The number of the variable.
+     */
+    int newVariable() {
+        int v = variables++;
+        if (v == levels.length) {
+            int capacity = Math.max(16, 2 * v);
+            values      = Arrays.copyOf(values, 2 * capacity);
+            levels      = Arrays.copyOf(levels, capacity);
+            reasons     = Arrays.copyOf(reasons, capacity);
+            phases      = Arrays.copyOf(phases, capacity);
+            seen        = Arrays.copyOf(seen, capacity);
+            activity    = Arrays.copyOf(activity, capacity);
+            trail       = Arrays.copyOf(trail, capacity);
+            watches     = Arrays.copyOf(watches, 2 * capacity);
+            watchCounts = Arrays.copyOf(watchCounts, 2 * capacity);
+            heap.grow(capacity);
+        }
+        watches[2 * v]     = new int[4];
+        watches[2 * v + 1] = new int[4];
+        reasons[v] = NO_REASON;
+        heap.insert(v);
+        return v + 1;
+    }
+
+    /**
+     * Returns the number of variables of the formula.
+     * @return The number of variables.
+     */
+    int variables() {
+        return variables;
+    }
+
+    /**
+     * Returns the number of conflicts met by all calls to {@code solve}.
+     * @return The number of conflicts.
+     */
+    long conflicts() {
+        return conflicts;
+    }
+
+    /**
+     * Returns the number of decisions made by all calls to {@code solve}.
+     * @return The number of decisions.
+     */
+    long decisions() {
+        return decisions;
+    }
+
+    /**
+     * Makes {@code solve} give up once the budget of the solve runs out. 
+     * Every decision counts as a node.
+     * @param limits The Limits of the solve, or null.
+     */
+    void limits(Limits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Adds a clause to the formula.
+     *
+     * Literals that are false at the top level are left out, and clauses
+     * that are true at the top level are not stored.
+     * @param clause The literals of the clause, which must refer to
+     *               existing variables.
+     * @return       False if the formula has become unsatisfiable, true
+     *               otherwise.
+     */
+    boolean addClause(int... clause) {
+        cancel(0);
+        if (inconsistent) {
+            return false;
+        }
+        int[] lits = new int[clause.length];
+        int size = 0;
+        for (int literal : clause) {
+            assert literal != 0 && Math.abs(literal) <= variables;
+            int lit = literal > 0 ? 2 * (literal - 1) : 2 * (-literal - 1) + 1;
+            if (values[lit] > 0 || contains(lits, size, lit ^ 1)) {
+                return true;
+            }
+            if (values[lit] == 0 && !contains(lits, size, lit)) {
+                lits[size++] = lit;
+            }
+        }
+        if (size == 0) {
+            inconsistent = true;
+            return false;
+        }
+        if (size == 1) {
+            assign(lits[0], NO_REASON);
+            inconsistent = propagate() != NO_REASON;
+            return !inconsistent;
+        }
+        attach(Arrays.copyOf(lits, size), 0);
+        originalCount++;
+        return true;
+    }
+
+    /**
+     * Returns whether one of the first literals of an array equals a literal.
+     * @param lits The array.
+     * @param size The number of literals to look at.
+     * @param lit  The literal.
+     * @return     True if the literal was found, false otherwise.
+     */
+    private static boolean contains(int[] lits, int size, int lit) {
+        for (int i = 0; i < size; i++) {
+            if (lits[i] == lit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Searches for a model of the formula.
+     *
+     * If a model is found, it can be read with {@code value} until the
+     * formula is changed. If the Limits run out, this method returns false 
+     * without refuting the formula, so it may be called again later.
+     * @return True if the formula is satisfiable, false otherwise.
+     */
+    boolean solve() {
+        if (inconsistent) {
+            return false;
+        }
+        cancel(0);
+        for (int run = 1; ; run++) {
+            int outcome = search(luby(run) * RESTART_CONFLICTS);
+            if (limits != null && limits.exceeded()) {
+                cancel(0);
+                return false;
+            }
+            if (outcome != 0) {
+                inconsistent = outcome < 0;
+                return outcome > 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the value of a variable in the model found by {@code solve}.
+     * @param variable The number of the variable.
+     * @return         True if the variable is true, false otherwise.
+     */
+    boolean value(int variable) {
+        return values[2 * (variable - 1)] > 0;
+    }
+
+    /**
+     * Returns the element of the Luby sequence 1, 1, 2, 1, 1, 2, 4, ...
+     * @param i The index of the element, starting from 1.
+     * @return  The element.
+     */
+    static int luby(int i) {
+        int k = 1;
+        while ((1 << k) - 1 < i) {
+            k++;
+        }
+        while (i != (1 << k) - 1) {
+            i -= (1 << (k - 1)) - 1;
+            k = 1;
+            while ((1 << k) - 1 < i) {
+                k++;
+            }
+        }
+        return 1 << (k - 1);
+    }
+
+    /**
+     * Runs the search until a model is found, the formula is refuted, or
+     * the number of conflicts runs out.
+     * @param budget The number of conflicts before the search gives up.
+     * @return       1 if a model was found, -1 if the formula is
+     *               unsatisfiable, or 0 if the search should restart.
+     */
+    private int search(long budget) {
+        while (true) {
+            int conflict = propagate();
+            if (conflict != NO_REASON) {
+                conflicts++;
+                budget--;
+                if (decisionLevel == 0) {
+                    return -1;
+                }
+                learn(conflict);
+                bump /= VARIABLE_DECAY;
+                continue;
+            }
+            if (budget <= 0) {
+                cancel(0);
+                return 0;
+            }
+            if (clauseCount - originalCount >= learnedLimit) {
+                reduce();
+            }
+            int v = pickBranch();
+            if (v < 0) {
+                return 1;
+            }
+            if (limits != null && limits.node()) {
+                return 0;
+            }
+            decisions++;
+            if (decisionLevel == trailLimits.length) {
+                trailLimits = Arrays.copyOf(trailLimits, 2 * decisionLevel);
+            }
+            trailLimits[decisionLevel++] = trailSize;
+            assign(2 * v + (phases[v] ? 0 : 1), NO_REASON);
+        }
+    }
+
+    /**
+     * Returns the unassigned variable with the highest activity.
+     * @return The variable index, or -1 if all variables are assigned.
+     */
+    private int pickBranch() {
+        while (!heap.isEmpty()) {
+            int v = heap.removeMax(activity);
+            if (values[2 * v] == 0) {
+                return v;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Makes a literal true.
+     * @param lit    The literal, which must be unassigned.
+     * @param reason The index of the clause that implied the literal, or
+     *               {@code NO_REASON} for a decision.
+     */
+    private void assign(int lit, int reason) {
+        int v = lit >>> 1;
+        values[lit]     = 1;
+        values[lit ^ 1] = -1;
+        levels[v]  = decisionLevel;
+        reasons[v] = reason;
+        trail[trailSize++] = lit;
+    }
+
+    /**
+     * Undoes all assignments above a decision level.
+     * @param level The decision level to return to.
+     */
+    private void cancel(int level) {
+        if (decisionLevel <= level) {
+            return;
+        }
+        int limit = trailLimits[level];
+        for (int i = trailSize - 1; i >= limit; i--) {
+            int lit = trail[i], v = lit >>> 1;
+            values[lit] = values[lit ^ 1] = 0;
+            reasons[v] = NO_REASON;
+            phases[v]  = (lit & 1) == 0;
+            if (!heap.contains(v)) {
+                heap.insert(v, activity);
+            }
+        }
+        trailSize = propagated = limit;
+        decisionLevel = level;
+    }
+
+    /**
+     * Propagates the assigned literals through the watched clauses.
+     * @return The index of a clause whose literals are all false, or
+     *         {@code NO_REASON} if there is no conflict.
+     */
+    private int propagate() {
+        while (propagated < trailSize) {
+            int falseLit = trail[propagated++] ^ 1;
+            int[] list = watches[falseLit];
+            int count = watchCounts[falseLit], kept = 0;
+            for (int i = 0; i < count; i++) {
+                int index = list[i];
+                int[] c = clauses[index];
+                if (c[0] == falseLit) {
+                    c[0] = c[1];
+                    c[1] = falseLit;
+                }
+                if (values[c[0]] > 0) {
+                    list[kept++] = index;
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < c.length; k++) {
+                    if (values[c[k]] >= 0) {
+                        c[1] = c[k];
+                        c[k] = falseLit;
+                        watch(c[1], index);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+                list[kept++] = index;
+                if (values[c[0]] < 0) {
+                    while (++i < count) {
+                        list[kept++] = list[i];
+                    }
+                    watchCounts[falseLit] = kept;
+                    propagated = trailSize;
+                    return index;
+                }
+                assign(c[0], index);
+            }
+            watchCounts[falseLit] = kept;
+        }
+        return NO_REASON;
+    }
+
+    /**
+     * Learns the first-UIP clause of a conflict, jumps back to the level at
+     * which it becomes unit and asserts it.
+     * @param conflict The index of the conflicting clause.
+     */
+    private void learn(int conflict) {
+        int size = 1, pending = 0, index = trailSize - 1, lit = -1;
+        do {
+            int[] c = clauses[conflict];
+            for (int j = lit < 0 ? 0 : 1; j < c.length; j++) {
+                int q = c[j], v = q >>> 1;
+                if (!seen[v] && levels[v] > 0) {
+                    seen[v] = true;
+                    bumpVariable(v);
+                    if (levels[v] >= decisionLevel) {
+                        pending++;
+                    } else {
+                        if (size == learned.length) {
+                            learned = Arrays.copyOf(learned, 2 * size);
+                        }
+                        learned[size++] = q;
+                    }
+                }
+            }
+            while (!seen[trail[index] >>> 1]) {
+                index--;
+            }
+            lit = trail[index--];
+            conflict = reasons[lit >>> 1];
+            seen[lit >>> 1] = false;
+            pending--;
+        } while (pending > 0);
+        learned[0] = lit ^ 1;
+
+        // Leave out literals implied by other literals of the clause. They
+        // are swapped to the end, so that all of them are unmarked below.
+        int kept = 1;
+        for (int i = 1; i < size; i++) {
+            int q = learned[i], reason = reasons[q >>> 1];
+            boolean redundant = reason != NO_REASON;
+            if (redundant) {
+                int[] c = clauses[reason];
+                for (int j = 1; j < c.length && redundant; j++) {
+                    int v = c[j] >>> 1;
+                    redundant = seen[v] || levels[v] == 0;
+                }
+            }
+            if (!redundant) {
+                learned[i] = learned[kept];
+                learned[kept++] = q;
+            }
+        }
+        for (int i = 1; i < size; i++) {
+            seen[learned[i] >>> 1] = false;
+        }
+
+        int back = 0;
+        if (kept > 1) {
+            int max = 1;
+            for (int i = 2; i < kept; i++) {
+                if (levels[learned[i] >>> 1] > levels[learned[max] >>> 1]) {
+                    max = i;
+                }
+            }
+            int swap = learned[1];
+            learned[1]   = learned[max];
+            learned[max] = swap;
+            back = levels[learned[1] >>> 1];
+        }
+        cancel(back);
+        if (kept == 1) {
+            assign(learned[0], NO_REASON);
+        } else {
+            assign(learned[0], attach(Arrays.copyOf(learned, kept), lbd(kept)));
+        }
+    }
+
+    /**
+     * Counts the distinct decision levels of the learned clause.
+     * @param size The size of the learned clause.
+     * @return     The number of decision levels.
+     */
+    private int lbd(int size) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int level = levels[learned[i] >>> 1];
+            boolean repeated = false;
+            for (int j = 0; j < i && !repeated; j++) {
+                repeated = levels[learned[j] >>> 1] == level;
+            }
+            if (!repeated) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Increases the activity of a variable, rescaling all activities before
+     * they overflow.
+     * @param v The variable index.
+     */
+    private void bumpVariable(int v) {
+        activity[v] += bump;
+        if (activity[v] > 1e100) {
+            for (int i = 0; i < variables; i++) {
+                activity[i] *= 1e-100;
+            }
+            bump *= 1e-100;
+        }
+        if (heap.contains(v)) {
+            heap.increased(v, activity);
+        }
+    }
+
+    /**
+     * Stores a clause and watches its first two literals.
+     * @param lits The literals of the clause, at least two.
+     * @param lbd  The number of decision levels of a learned clause, or 0
+     *             for an original clause.
+     * @return     The index of the clause.
+     */
+    private int attach(int[] lits, int lbd) {
+        if (clauseCount == clauses.length) {
+            clauses = Arrays.copyOf(clauses, 2 * clauseCount);
+            lbds    = Arrays.copyOf(lbds, 2 * clauseCount);
+        }
+        int index = clauseCount++;
+        clauses[index] = lits;
+        lbds[index]    = lbd;
+        watch(lits[0], index);
+        watch(lits[1], index);
+        return index;
+    }
+
+    /**
+     * Adds a clause to the watch list of a literal.
+     * @param lit   The literal.
+     * @param index The index of the clause.
+     */
+    private void watch(int lit, int index) {
+        int count = watchCounts[lit];
+        if (count == watches[lit].length) {
+            watches[lit] = Arrays.copyOf(watches[lit], 2 * count);
+        }
+        watches[lit][count] = index;
+        watchCounts[lit] = count + 1;
+    }
+
+    /**
+     * Drops the half of the learned clauses with the most decision levels,
+     * keeping clauses that are the reason of an assignment and clauses of
+     * at most two levels.
+     */
+    private void reduce() {
+        boolean[] locked = new boolean[clauseCount];
+        for (int i = 0; i < trailSize; i++) {
+            int reason = reasons[trail[i] >>> 1];
+            if (reason != NO_REASON) {
+                locked[reason] = true;
+            }
+        }
+        // Clauses added after a solve follow learned ones, so learned clauses
+        // are told apart by their LBD, which is 0 for original clauses.
+        long[] keys = new long[clauseCount];
+        int count = 0;
+        for (int i = 0; i < clauseCount; i++) {
+            if (lbds[i] > 2 && !locked[i]) {
+                keys[count++] = (long) lbds[i] << 32 | i;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        boolean[] dropped = new boolean[clauseCount];
+        for (int i = count / 2; i < count; i++) {
+            dropped[(int) keys[i]] = true;
+        }
+        int[] moved = new int[clauseCount];
+        int size = 0;
+        for (int i = 0; i < clauseCount; i++) {
+            if (!dropped[i]) {
+                clauses[size] = clauses[i];
+                lbds[size]    = lbds[i];
+                moved[i]      = size++;
+            }
+        }
+        Arrays.fill(clauses, size, clauseCount, null);
+        clauseCount = size;
+        for (int i = 0; i < trailSize; i++) {
+            int v = trail[i] >>> 1;
+            if (reasons[v] != NO_REASON) {
+                reasons[v] = moved[reasons[v]];
+            }
+        }
+        Arrays.fill(watchCounts, 0, 2 * variables, 0);
+        for (int i = 0; i < clauseCount; i++) {
+            watch(clauses[i][0], i);
+            watch(clauses[i][1], i);
+        }
+        learnedLimit += learnedLimit / 10;
+    }
+
+    /**
+     * A binary max-heap of variables ordered by activity.
+     */
+    private static final class VariableHeap {
+        private int[] heap = new int[0], positions = new int[0];
+        private int size;
+
+        void grow(int capacity) {
+            int old = positions.length;
+            heap      = Arrays.copyOf(heap, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            Arrays.fill(positions, old, capacity, -1);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        boolean contains(int v) {
+            return positions[v] >= 0;
+        }
+
+        void insert(int v) {
+            heap[size] = v;
+            positions[v] = size++;
+        }
+
+        void insert(int v, double[] activity) {
+            insert(v);
+            up(size - 1, activity);
+        }
+
+        void increased(int v, double[] activity) {
+            up(positions[v], activity);
+        }
+
+        int removeMax(double[] activity) {
+            int top = heap[0];
+            positions[top] = -1;
+            if (--size > 0) {
+                heap[0] = heap[size];
+                positions[heap[0]] = 0;
+                down(0, activity);
+            }
+            return top;
+        }
+
+        private void up(int i, double[] activity) {
+            int v = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (activity[heap[parent]] >= activity[v]) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                positions[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            positions[v] = i;
+        }
+
+        private void down(int i, double[] activity) {
+            int v = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && activity[heap[child + 1]] > activity[heap[child]]) {
+                    child++;
+                }
+                if (activity[heap[child]] <= activity[v]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                positions[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = v;
+            positions[v] = i;
+        }
+    }
+}
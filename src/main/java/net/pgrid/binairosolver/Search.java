@@ -0,0 +1,448 @@
+package net.pgrid.binairosolver;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.pgrid.binairosolver.Game.State;
+
+/**
+ * Depth-first search for a solution on the board of a Propagator.
+ *
+ * The search runs on a single board: every guess takes a mark on the
+ * Propagator's trail, and a failed guess is rolled back to that mark.
+ * Failures are reported through return values rather than by throwing,
+ * since most branches of a search fail.
+ *
+ * The open guesses are kept on an explicit stack of frames instead of the
+ * call stack, since large boards can need thousands of nested guesses.
+ * 
+ * With a BranchingStrategy that learns from contradictions, the search 
+ * restarts from its first board after a growing number of backtracks, so 
+ * that early guesses are made again with what was learned. Restarts never 
+ * happen while counting solutions.
+ * @author Patrick Kramer
+ */
+final class Search {
+
+    /**
+     * The outcomes of visiting a board.
+     */
+    private static final int FAILED = 0, SOLVED = 1, BRANCHED = 2;
+
+    /**
+     * The number of backtracks before the first restart. Every restart 
+     * doubles the number of backtracks until the next one.
+     */
+    static final int RESTART_BACKTRACKS = 100;
+
+    /**
+     * The deepest guess below which {@code Inference.PROBING} probes. Deeper 
+     * in the search, a probe costs about as much as the guesses it saves.
+     */
+    static final int PROBE_DEPTH = 3;
+
+    /**
+     * The number of failed guesses after which {@code Inference.PROBING} 
+     * starts to probe, so that puzzles that the rules nearly solve do not 
+     * pay for probing.
+     */
+    static final int PROBE_FAILURES = 16;
+
+    private final Propagator propagator;
+    private final BranchingStrategy branching;
+    private final AtomicBoolean stop;
+    private final TranspositionTable table;
+    private Frame[] frames = new Frame[16];
+    private int levels;
+    private int depth;
+    private int backtracks;
+    private long failures, failureLimit = Long.MAX_VALUE;
+    private Limits limits;
+    private List<Game> solutions;
+    private int limit;
+
+    /**
+     * Creates a Search.
+     * @param propagator The Propagator holding the Game, not null.
+     * @param branching  The strategy used to pick guesses, not null.
+     * @param stop       A flag that makes the search give up once it is set
+     *                   by another thread, or null.
+     */
+    Search(Propagator propagator, BranchingStrategy branching, AtomicBoolean stop) {
+        this(propagator, branching, stop, 0, null);
+    }
+
+    /**
+     * Creates a Search on a board that was reached by earlier guesses.
+     * @param propagator The Propagator holding the Game, not null.
+     * @param branching  The strategy used to pick guesses, not null.
+     * @param stop       A flag that makes the search give up once it is set
+     *                   by another thread, or null.
+     * @param depth      The number of guesses made before this Search, 
+     *                   which is only used for statistics.
+     * @param table      The table of positions known to have no solution, 
+     *                   or null.
+     */
+    Search(Propagator propagator, BranchingStrategy branching, AtomicBoolean stop, int depth, 
+            TranspositionTable table) {
+        assert propagator != null && branching != null;
+        this.propagator = propagator;
+        this.branching  = branching;
+        this.stop       = stop;
+        this.depth      = depth;
+        this.table      = table;
+    }
+
+    /**
+     * Prepares this Search for a new solve on the board of its Propagator, 
+     * keeping its stack of frames.
+     * 
+     * The budget and Limits are removed.
+     */
+    void reset() {
+        levels       = 0;
+        depth        = 0;
+        backtracks   = 0;
+        failures     = 0;
+        failureLimit = Long.MAX_VALUE;
+        limits       = null;
+        solutions    = null;
+        limit        = 0;
+    }
+
+    /**
+     * Returns whether this Search can be reused with the given settings.
+     * @param branching The strategy used to pick guesses, not null.
+     * @param table     The table of positions known to have no solution, 
+     *                  or null.
+     * @return          True if this Search uses the same strategy and table.
+     */
+    boolean accepts(BranchingStrategy branching, TranspositionTable table) {
+        return branching == this.branching && table == this.table;
+    }
+
+    /**
+     * Returns the Game this Search works on.
+     * @return The Game.
+     */
+    Game game() {
+        return propagator.game();
+    }
+
+    /**
+     * Limits the number of backtracks this Search makes. Once they run out, 
+     * the search gives up as if it had been stopped.
+     * @param backtracks The number of backtracks, at least 0.
+     */
+    void budget(long backtracks) {
+        assert backtracks >= 0;
+        this.failureLimit = backtracks;
+    }
+
+    /**
+     * Makes this Search give up once the budget of the solve runs out.
+     * @param limits The Limits of the solve, or null.
+     */
+    void limits(Limits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Returns whether this Search gave up because its backtracks ran out.
+     * @return True if the budget was exceeded, false otherwise.
+     */
+    boolean exhausted() {
+        return failures > failureLimit;
+    }
+
+    /**
+     * Returns whether the search must give up, because another thread set 
+     * the stop flag or a budget was exceeded.
+     * @return True if the search must give up, false otherwise.
+     */
+    private boolean stopped() {
+        return failures > failureLimit || stop != null && stop.get() 
+                || limits != null && limits.exceeded();
+    }
+
+    /**
+     * Propagates the dirty lines of the Game, and continues by guessing if
+     * the rules get stuck.
+     *
+     * When this method returns false, the Game may be partially filled;
+     * callers roll it back using the Propagator's trail.
+     * @return True if the Game was solved, false otherwise.
+     */
+    boolean solve() {
+        return run(levels, true, solutions == null && branching.restarts());
+    }
+
+    /**
+     * Searches for solutions until the limit is reached or every branch has 
+     * been explored.
+     * 
+     * The Game is rolled back to its state after the initial propagation.
+     * @param limit     The number of solutions to stop at.
+     * @param solutions The list receiving copies of the solutions.
+     * @return          The number of solutions found.
+     */
+    int count(int limit, List<Game> solutions) {
+        this.limit     = limit;
+        this.solutions = solutions;
+        int mark = propagator.mark();
+        solve();
+        propagator.undo(mark);
+        this.solutions = null;
+        return solutions.size();
+    }
+
+    /**
+     * Records a solution of a counting search.
+     * @param game The solved board.
+     * @return     True if the limit has been reached, false to continue 
+     *             searching.
+     */
+    private boolean found(Game game) {
+        solutions.add(game.copy());
+        return solutions.size() >= limit;
+    }
+
+    /**
+     * Counts the empty cells of a board.
+     * @param game The board.
+     * @return     The number of empty cells.
+     */
+    private static int empty(Game game) {
+        long[] bits = game.bits();
+        int words = game.words(), filled = 0;
+        for (int y = 0; y < game.getHeight(); y++) {
+            int off = game.offset(y);
+            for (int w = 0; w < 2 * words; w++) {
+                filled += Long.bitCount(bits[off + w]);
+            }
+        }
+        return game.getWidth() * game.getHeight() - filled;
+    }
+
+    /**
+     * Picks an empty cell on the board using the BranchingStrategy, and
+     * guesses it.
+     * @return True if the Game was solved, false otherwise.
+     */
+    boolean branch() {
+        int choice = branching.select(propagator);
+        if (choice < 0) {
+            // Cannot find an empty cell.
+            return false;
+        }
+        int width = propagator.game().getWidth(), cell = choice >>> 1;
+        return guess(cell % width, cell / width,
+                (choice & 1) != 0 ? State.ONE : State.ZERO);
+    }
+
+    /**
+     * Makes a guess on the board, and tries the inverse value if the guess
+     * fails.
+     *
+     * Failed guesses are rolled back, so the board is left as it was when
+     * this method returns false.
+     * @param x     The x coordinate
+     * @param y     The y coordinate
+     * @param guess The initial guess
+     * @return      True if the Game was solved, false otherwise.
+     */
+    boolean guess(int x, int y, State guess) {
+        int base = levels;
+        Frame frame = push(BranchingStrategy.choice(propagator.game(), x, y, guess));
+        return run(base, place(frame.choice), false);
+    }
+
+    /**
+     * Runs the search loop until the board is solved or every guess above 
+     * a level of the stack has failed.
+     * @param base     The number of frames that this run must leave alone.
+     * @param descend  True if the current board should be propagated and 
+     *                 searched, false if it has already failed.
+     * @param restarts True if the run may restart from the board at its 
+     *                 base.
+     * @return         True if the Game was solved, false otherwise.
+     */
+    private boolean run(int base, boolean descend, boolean restarts) {
+        long budget = RESTART_BACKTRACKS;
+        backtracks = 0;
+        while (true) {
+            if (descend) {
+                int outcome = visit();
+                if (outcome == SOLVED) {
+                    depth -= levels - base;
+                    levels = base;
+                    return true;
+                }
+                if (outcome == BRANCHED) {
+                    continue;
+                }
+            }
+            if (restarts && levels > base && backtracks >= budget) {
+                // The abandoned guesses were not fully explored, so none of 
+                // them is stored in the TranspositionTable.
+                propagator.undo(frames[base].mark);
+                depth -= levels - base;
+                levels = base;
+                budget *= 2;
+                backtracks = 0;
+                descend = true;
+                continue;
+            }
+            descend = retreat(base);
+            if (!descend) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Propagates the current board, and makes a guess if the rules get 
+     * stuck.
+     * @return {@code SOLVED} if the board was solved, {@code BRANCHED} if a 
+     *         guess was made, or {@code FAILED} if the board has no 
+     *         solution.
+     */
+    private int visit() {
+        if (stopped() || limits != null && limits.node()) {
+            return FAILED;
+        }
+        propagator.probes(depth <= PROBE_DEPTH && failures >= PROBE_FAILURES);
+        if (!propagator.propagate()) {
+            return FAILED;
+        }
+        Game game = propagator.game();
+        if (game.isComplete()) {
+            return solutions == null || found(game) ? SOLVED : FAILED;
+        }
+        long key = 0;
+        if (table != null) {
+            key = TranspositionTable.key(game);
+            if (table.contains(key)) {
+                SolverStatistics stats = propagator.statistics();
+                if (stats != null) {
+                    stats.cutoff();
+                }
+                return FAILED;
+            }
+        }
+        int choice = branching.select(propagator);
+        if (choice < 0) {
+            // Cannot find an empty cell.
+            return FAILED;
+        }
+        Frame frame = push(choice);
+        frame.store = table != null;
+        frame.key   = key;
+        return place(choice) ? BRANCHED : FAILED;
+    }
+
+    /**
+     * Rolls the failed board back to the most recent guess that still has 
+     * its inverse value to try, and tries it.
+     *
+     * Guesses whose values have both failed are popped, and the board 
+     * before such a guess is stored in the TranspositionTable.
+     * @param base The number of frames that must be left alone.
+     * @return     True if an inverse value was placed, false if every guess 
+     *             above the base has failed.
+     */
+    private boolean retreat(int base) {
+        while (levels > base) {
+            Frame frame = frames[levels - 1];
+            backtrack(frame.mark);
+            if (!frame.second) {
+                frame.second = true;
+                frame.choice ^= 1;
+                if (place(frame.choice)) {
+                    return true;
+                }
+                continue;
+            }
+            levels--;
+            depth--;
+            // A stopped search has not explored every branch, and a counting 
+            // search may have found solutions below this board.
+            if (frame.store && !stopped() 
+                    && (solutions == null || solutions.size() == frame.found)) {
+                table.store(frame.key, empty(propagator.game()));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Opens a new guess on the stack.
+     * @param choice The first choice of the guess, encoded as by 
+     *               {@code BranchingStrategy.choice}.
+     * @return       The frame of the guess.
+     */
+    private Frame push(int choice) {
+        if (levels == frames.length) {
+            frames = Arrays.copyOf(frames, 2 * levels);
+        }
+        Frame frame = frames[levels];
+        if (frame == null) {
+            frame = frames[levels] = new Frame();
+        }
+        levels++;
+        depth++;
+        frame.mark   = propagator.mark();
+        frame.choice = choice;
+        frame.second = false;
+        frame.store  = false;
+        frame.found  = solutions == null ? 0 : solutions.size();
+        return frame;
+    }
+
+    /**
+     * Rolls a failed guess back.
+     * @param mark The mark taken before the guess.
+     */
+    private void backtrack(int mark) {
+        propagator.undo(mark);
+        backtracks++;
+        failures++;
+        SolverStatistics stats = propagator.statistics();
+        if (stats != null) {
+            stats.backtrack();
+        }
+    }
+
+    /**
+     * Sets the cell of a choice to its value.
+     *
+     * Only the row and column of that cell are marked dirty.
+     * @param choice The choice, encoded as by {@code BranchingStrategy.choice}.
+     * @return       False if the cell already holds the other value, true 
+     *               otherwise.
+     */
+    private boolean place(int choice) {
+        Game game = propagator.game();
+        int cell = choice >>> 1, x = cell % game.getWidth(), y = cell / game.getWidth();
+        State value = (choice & 1) != 0 ? State.ONE : State.ZERO;
+        State current = game.get(x, y);
+        if (current == State.EMPTY) {
+            propagator.assign(x, y, value);
+            SolverStatistics stats = propagator.statistics();
+            if (stats != null) {
+                stats.guess(depth);
+            }
+            return true;
+        }
+        return current == value;
+    }
+
+    /**
+     * A guess that is open on the stack of the search.
+     */
+    private static final class Frame {
+        int mark, choice, found;
+        long key;
+        boolean second, store;
+    }
+}
@@ -0,0 +1,138 @@
+package net.pgrid.binairosolver;
+
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.pgrid.binairosolver.Game.State;
+
+/**
+ * Searches a branch of the search tree as a fork/join task.
+ *
+ * Near the top of the tree both values of a guess are searched as separate
+ * tasks, each on its own copy of the board. Below the split depth the task
+ * continues with a sequential {@link Search}. The first task that finds a
+ * solution sets the shared stop flag, which makes all other tasks give up.
+ * @author Patrick Kramer
+ */
+final class SearchTask extends RecursiveTask<Game> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Game game;
+    private final int x, y, depth;
+    private final transient Solver solver;
+    private final AtomicBoolean stop;
+    private final transient SolverStatistics stats;
+    private final transient Limits limits;
+
+    /**
+     * Creates a SearchTask.
+     * @param game   The board of this branch, not null. The task takes
+     *               ownership of it.
+     * @param x      The x coordinate of the cell guessed for this branch, or
+     *               -1 to propagate all lines.
+     * @param y      The y coordinate of the cell guessed for this branch.
+     * @param depth  The number of guesses made before this branch.
+     * @param solver The Solver providing the settings, not null.
+     * @param stop   The flag that is set once a solution is found, not null.
+     * @param stats  The statistics shared by all tasks of the solve, or null.
+     * @param limits The Limits of the solve, or null. Below the split depth, 
+     *               each task searches with its own fork of them.
+     */
+    SearchTask(Game game, int x, int y, int depth, Solver solver, AtomicBoolean stop, 
+            SolverStatistics stats, Limits limits) {
+        this.game   = game;
+        this.x      = x;
+        this.y      = y;
+        this.depth  = depth;
+        this.solver = solver;
+        this.stop   = stop;
+        this.stats  = stats;
+        this.limits = limits;
+    }
+
+    @Override
+    protected Game compute() {
+        if (stop.get() || limits != null && limits.exceeded()) {
+            return null;
+        }
+        if (stats == null) {
+            return search(null);
+        }
+        // Tasks count in their own statistics, since they run concurrently.
+        SolverStatistics local = new SolverStatistics();
+        try {
+            return search(local);
+        } finally {
+            synchronized (stats) {
+                stats.add(local);
+            }
+        }
+    }
+
+    /**
+     * Searches the branch of this task.
+     * @param local The statistics of this task, or null.
+     * @return      The solution, or null if the branch has no solution or 
+     *              the search was stopped.
+     */
+    private Game search(SolverStatistics local) {
+        Propagator propagator = new Propagator(game, solver.getInference());
+        propagator.statistics(local);
+        if (x < 0) {
+            propagator.enqueueAll();
+        } else {
+            propagator.enqueueCell(x, y);
+            if (local != null) {
+                local.guess(depth);
+            }
+        }
+        if (depth >= solver.getSplitDepth()) {
+            Search search = new Search(propagator, solver.getBranchingStrategy(), stop, depth, 
+                    solver.getTranspositionTable());
+            search.limits(limits == null ? null : limits.fork());
+            return search.solve() ? found() : null;
+        }
+        if (!propagator.propagate()) {
+            return null;
+        }
+        if (game.isComplete()) {
+            return found();
+        }
+        int choice = solver.getBranchingStrategy().select(propagator);
+        if (choice < 0) {
+            return null;
+        }
+        int cell = choice >>> 1, cx = cell % game.getWidth(), cy = cell / game.getWidth();
+        State first = (choice & 1) != 0 ? State.ONE : State.ZERO;
+        SearchTask other = child(cx, cy, first == State.ONE ? State.ZERO : State.ONE);
+        other.fork();
+        Game result = child(cx, cy, first).compute();
+        if (result != null) {
+            other.cancel(false);
+            return result;
+        }
+        return other.join();
+    }
+
+    /**
+     * Creates the task for one value of a guess.
+     * @param cx    The x coordinate of the guessed cell.
+     * @param cy    The y coordinate of the guessed cell.
+     * @param value The value of the guessed cell.
+     * @return      The task.
+     */
+    private SearchTask child(int cx, int cy, State value) {
+        Game copy = game.copy();
+        copy.set(cx, cy, value);
+        return new SearchTask(copy, cx, cy, depth + 1, solver, stop, stats, limits);
+    }
+
+    /**
+     * Reports the board of this task as the solution.
+     * @return The solved board.
+     */
+    private Game found() {
+        stop.set(true);
+        return game;
+    }
+}
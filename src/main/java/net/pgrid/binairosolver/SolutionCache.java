@@ -0,0 +1,349 @@
+package net.pgrid.binairosolver;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import net.pgrid.binairosolver.Game.State;
+
+/**
+ * A bounded cache of solved puzzles.
+ *
+ * Puzzles are stored under a canonical form, so that a puzzle that is a
+ * rotation, a mirror image or a transposition of a cached puzzle, possibly
+ * with ones and zeros swapped, is found as well. The canonical form is the
+ * smallest encoding of the board over all 16 combinations of transposing,
+ * mirroring horizontally, mirroring vertically and inverting. These
+ * transforms preserve the rules, so the cached solution is mapped back
+ * through the inverse transform. For a puzzle with several solutions, the
+ * solution returned from the cache may differ from the one a solve finds.
+ *
+ * Puzzles without a solution are cached as well. When the cache is full,
+ * the least recently used puzzle is evicted. The cache is safe for use from
+ * several threads.
+ * @author Patrick Kramer
+ * @see Solver#setCache(SolutionCache)
+ */
+public class SolutionCache {
+
+    /**
+     * The value stored for puzzles without a solution.
+     */
+    private static final Game NO_SOLUTION = new Game(1, 1);
+
+    private final int capacity;
+    private final Map<Key, Game> entries;
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+    /**
+     * Creates a SolutionCache.
+     * @param capacity The maximum number of cached puzzles, at least 1.
+     * @throws IllegalArgumentException - If the capacity is less than 1.
+     */
+    public SolutionCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries  = new LinkedHashMap<Key, Game>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Game> eldest) {
+                return size() > SolutionCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached solution of a puzzle.
+     * @param puzzle The puzzle, not null.
+     * @return       The solution, or null if the puzzle is not cached or has
+     *               no solution.
+     */
+    public Game get(Game puzzle) {
+        try {
+            return lookup(canonical(puzzle));
+        } catch (SolverException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Caches the solution of a puzzle.
+     * @param puzzle   The puzzle, not null.
+     * @param solution The solution, or null if the puzzle has no solution.
+     */
+    public void put(Game puzzle, Game solution) {
+        store(canonical(puzzle), solution);
+    }
+
+    /**
+     * Returns the maximum number of cached puzzles.
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of cached puzzles.
+     * @return The size.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups that found the puzzle.
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that did not find the puzzle.
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Removes all puzzles from the cache. The counters are not reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Looks up a puzzle by its canonical form.
+     * @param canonical The canonical form of the puzzle.
+     * @return          The solution of the puzzle, or null if it is not
+     *                  cached.
+     * @throws SolverException - If the puzzle is cached as unsolvable.
+     */
+    Game lookup(Canonical canonical) throws SolverException {
+        Game solution;
+        synchronized (this) {
+            solution = entries.get(canonical.key);
+        }
+        if (solution == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        if (solution == NO_SOLUTION) {
+            throw new SolverException("No solution found");
+        }
+        return inverse(solution, canonical.transform, canonical.width, canonical.height);
+    }
+
+    /**
+     * Caches the solution of a puzzle by its canonical form.
+     * @param canonical The canonical form of the puzzle.
+     * @param solution  The solution, or null if the puzzle has no solution.
+     */
+    void store(Canonical canonical, Game solution) {
+        Game value = solution == null ? NO_SOLUTION : transform(solution, canonical.transform);
+        synchronized (this) {
+            entries.put(canonical.key, value);
+        }
+    }
+
+    /**
+     * Computes the canonical form of a puzzle.
+     * @param puzzle The puzzle, not null.
+     * @return       The canonical form.
+     */
+    static Canonical canonical(Game puzzle) {
+        int cells = puzzle.getWidth() * puzzle.getHeight();
+        long[] best = null, current = new long[(cells + 31) >>> 5];
+        int bestTransform = 0;
+        for (int t = 0; t < 16; t++) {
+            encode(puzzle, t, current);
+            int order = best == null ? -1 : compare(current, best);
+            if (order == 0 && (t & 1) != (bestTransform & 1)) {
+                // Equal encodings of different shapes; prefer the wider one.
+                order = (t & 1) != 0 ? puzzle.getWidth() - puzzle.getHeight() 
+                                     : puzzle.getHeight() - puzzle.getWidth();
+            }
+            if (order < 0) {
+                long[] swap = best == null ? new long[current.length] : best;
+                best = current;
+                current = swap;
+                bestTransform = t;
+            }
+        }
+        boolean transposed = (bestTransform & 1) != 0;
+        Key key = new Key(transposed ? puzzle.getHeight() : puzzle.getWidth(),
+                          transposed ? puzzle.getWidth()  : puzzle.getHeight(), best);
+        return new Canonical(key, bestTransform, puzzle.getWidth(), puzzle.getHeight());
+    }
+
+    /**
+     * Encodes a transformed board with two bits per cell, in row-major
+     * order of the transformed board.
+     * @param game      The board.
+     * @param transform The transform, a combination of 1 to transpose, 2 to
+     *                  mirror horizontally, 4 to mirror vertically and 8 to
+     *                  invert.
+     * @param code      The array receiving the encoding.
+     */
+    private static void encode(Game game, int transform, long[] code) {
+        Arrays.fill(code, 0);
+        boolean transposed = (transform & 1) != 0;
+        int width  = transposed ? game.getHeight() : game.getWidth();
+        int height = transposed ? game.getWidth()  : game.getHeight();
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                State value = source(game, transform, width, height, x, y);
+                long bits = value == State.EMPTY ? 0 : value == State.ZERO ? 1 : 2;
+                code[i >>> 5] |= bits << ((i & 31) << 1);
+            }
+        }
+    }
+
+    /**
+     * Returns the value of a cell of a transformed board.
+     * @param game      The original board.
+     * @param transform The transform.
+     * @param width     The width of the transformed board.
+     * @param height    The height of the transformed board.
+     * @param x         The x coordinate on the transformed board.
+     * @param y         The y coordinate on the transformed board.
+     * @return          The value of the cell.
+     */
+    private static State source(Game game, int transform, int width, int height, int x, int y) {
+        int u = (transform & 2) != 0 ? width  - 1 - x : x;
+        int v = (transform & 4) != 0 ? height - 1 - y : y;
+        State value = (transform & 1) != 0 ? game.get(v, u) : game.get(u, v);
+        return (transform & 8) == 0 || value == State.EMPTY ? value
+             : value == State.ONE ? State.ZERO : State.ONE;
+    }
+
+    /**
+     * Applies a transform to a board.
+     * @param game      The board.
+     * @param transform The transform.
+     * @return          The transformed board.
+     */
+    private static Game transform(Game game, int transform) {
+        boolean transposed = (transform & 1) != 0;
+        int width  = transposed ? game.getHeight() : game.getWidth();
+        int height = transposed ? game.getWidth()  : game.getHeight();
+        Game result = new Game(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                result.set(x, y, source(game, transform, width, height, x, y));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Undoes a transform on a board.
+     * @param game      The transformed board.
+     * @param transform The transform that was applied.
+     * @param width     The width of the original board.
+     * @param height    The height of the original board.
+     * @return          The original board.
+     */
+    private static Game inverse(Game game, int transform, int width, int height) {
+        Game result = new Game(width, height);
+        for (int y = 0; y < game.getHeight(); y++) {
+            for (int x = 0; x < game.getWidth(); x++) {
+                int u = (transform & 2) != 0 ? game.getWidth()  - 1 - x : x;
+                int v = (transform & 4) != 0 ? game.getHeight() - 1 - y : y;
+                State value = game.get(x, y);
+                if ((transform & 8) != 0 && value != State.EMPTY) {
+                    value = value == State.ONE ? State.ZERO : State.ONE;
+                }
+                if ((transform & 1) != 0) {
+                    result.set(v, u, value);
+                } else {
+                    result.set(u, v, value);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compares two encodings as unsigned numbers, most significant word
+     * last.
+     * @param a The first encoding.
+     * @param b The second encoding, of the same length.
+     * @return  A negative number, zero or a positive number if the first
+     *          encoding is smaller than, equal to or larger than the second.
+     */
+    private static int compare(long[] a, long[] b) {
+        for (int i = a.length - 1; i >= 0; i--) {
+            if (a[i] != b[i]) {
+                return Long.compareUnsigned(a[i], b[i]);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The canonical form of a puzzle, and the transform that produces it.
+     */
+    static final class Canonical {
+        final Key key;
+        final int transform, width, height;
+
+        /**
+         * Creates a Canonical.
+         * @param key       The key of the canonical form.
+         * @param transform The transform from the puzzle to the canonical
+         *                  form.
+         * @param width     The width of the puzzle.
+         * @param height    The height of the puzzle.
+         */
+        Canonical(Key key, int transform, int width, int height) {
+            this.key       = key;
+            this.transform = transform;
+            this.width     = width;
+            this.height    = height;
+        }
+    }
+
+    /**
+     * The encoding of a board in canonical form.
+     */
+    static final class Key {
+        private final int width, height;
+        private final long[] code;
+        private final int hash;
+
+        /**
+         * Creates a Key.
+         * @param width  The width of the canonical board.
+         * @param height The height of the canonical board.
+         * @param code   The encoding of the canonical board.
+         */
+        Key(int width, int height, long[] code) {
+            this.width  = width;
+            this.height = height;
+            this.code   = code;
+            this.hash   = 31 * (31 * width + height) + Arrays.hashCode(code);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return width == other.width && height == other.height && Arrays.equals(code, other.code);
+        }
+    }
+}
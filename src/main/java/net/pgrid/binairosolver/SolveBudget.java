@@ -0,0 +1,114 @@
+package net.pgrid.binairosolver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the work a Solver spends on one puzzle.
+ *
+ * A budget bounds the run time of a solve, the number of search nodes it
+ * visits, or both, and can be cancelled from another thread. A solve that
+ * runs out of its budget returns a SolveResult with status {@code UNKNOWN},
+ * holding the board as far as propagation got.
+ *
+ * The limits are checked every {@code Limits.CHECK_INTERVAL} nodes, so a
+ * solve may visit a few more nodes than its limit, and notices a deadline
+ * or a cancellation after at most that many nodes. The timeout starts when
+ * a solve starts, so a budget may be used for several solves; once it has
+ * been cancelled, every solve using it stops.
+ * @author Patrick Kramer
+ * @see Solver#solve(Game, SolveBudget)
+ */
+public final class SolveBudget {
+
+    private volatile long timeoutNanos = Long.MAX_VALUE;
+    private volatile long nodeLimit = Long.MAX_VALUE;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    /**
+     * Creates a budget without limits, which only ends when it is
+     * cancelled.
+     */
+    public SolveBudget() {
+    }
+
+    /**
+     * Creates a budget that limits the run time of a solve.
+     * @param timeout The maximum run time, at least 0.
+     * @param unit    The unit of the timeout, not null.
+     */
+    public SolveBudget(long timeout, TimeUnit unit) {
+        setTimeout(timeout, unit);
+    }
+
+    /**
+     * Returns the maximum run time of a solve.
+     * @param unit The unit to return the timeout in, not null.
+     * @return     The timeout, or {@code Long.MAX_VALUE} if the run time is
+     *             not limited.
+     */
+    public long getTimeout(TimeUnit unit) {
+        long timeout = timeoutNanos;
+        return timeout == Long.MAX_VALUE ? timeout : unit.convert(timeout, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the maximum run time of a solve.
+     * @param timeout The timeout, at least 0, or {@code Long.MAX_VALUE} to
+     *                not limit the run time.
+     * @param unit    The unit of the timeout, not null.
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Invalid timeout: " + timeout);
+        }
+        this.timeoutNanos = timeout == Long.MAX_VALUE ? timeout : unit.toNanos(timeout);
+    }
+
+    /**
+     * Returns the maximum number of search nodes of a solve.
+     * @return The node limit, or {@code Long.MAX_VALUE} if the number of
+     *         nodes is not limited.
+     */
+    public long getNodeLimit() {
+        return nodeLimit;
+    }
+
+    /**
+     * Sets the maximum number of search nodes of a solve.
+     *
+     * A node is a board visited by the search, or a decision of the SAT
+     * solver.
+     * @param nodeLimit The node limit, at least 0.
+     */
+    public void setNodeLimit(long nodeLimit) {
+        if (nodeLimit < 0) {
+            throw new IllegalArgumentException("Invalid node limit: " + nodeLimit);
+        }
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Makes every solve using this budget stop as soon as it notices.
+     *
+     * This method may be called from any thread.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Returns whether this budget has been cancelled.
+     * @return True if {@code cancel} was called, false otherwise.
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SolveBudget{timeout=" + (timeoutNanos == Long.MAX_VALUE ? "none" : timeoutNanos + "ns")
+             + ", nodes=" + (nodeLimit == Long.MAX_VALUE ? "none" : nodeLimit)
+             + (isCancelled() ? ", cancelled" : "") + '}';
+    }
+}
@@ -0,0 +1,117 @@
+package net.pgrid.binairosolver;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of solving a puzzle with a budget, or of counting its 
+ * solutions.
+ * @author Patrick Kramer
+ * @see Solver#solve(Game, SolveBudget)
+ * @see Solver#countSolutions(Game, int)
+ */
+public final class SolveResult {
+
+    /**
+     * Whether a puzzle has no, one, or several solutions, as far as the 
+     * solve found out.
+     */
+    public enum Status {
+        /**
+         * The puzzle has no solution.
+         */
+        NONE,
+        /**
+         * The puzzle has exactly one solution.
+         */
+        UNIQUE,
+        /**
+         * The puzzle has more than one solution.
+         */
+        MULTIPLE,
+        /**
+         * A solution was found, and the solve stopped without looking for 
+         * others.
+         */
+        SOLVED,
+        /**
+         * The budget ran out before the solve could tell; any solutions it 
+         * found are returned.
+         */
+        UNKNOWN
+    }
+
+    private final Status status;
+    private final List<Game> solutions;
+    private final Game board;
+    private final SolverStatistics statistics;
+
+    /**
+     * Creates a SolveResult.
+     * @param status     The Status, not null.
+     * @param solutions  The solutions found, not null.
+     * @param board      The puzzle after propagation, or null if 
+     *                   propagation found a contradiction.
+     * @param statistics The statistics of the search, not null.
+     */
+    SolveResult(Status status, List<Game> solutions, Game board, SolverStatistics statistics) {
+        this.status     = status;
+        this.solutions  = Collections.unmodifiableList(solutions);
+        this.board      = board;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Returns whether the puzzle has no, one, or several solutions.
+     * @return The Status.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the solutions found, in the order the search found them.
+     *
+     * The search stops at the limit given to {@code countSolutions}, so a
+     * puzzle with status MULTIPLE may have more solutions than returned.
+     * @return The unmodifiable list of solutions.
+     */
+    public List<Game> getSolutions() {
+        return solutions;
+    }
+
+    /**
+     * Returns the first solution found.
+     * @return The solution, or null if the puzzle has no solution.
+     */
+    public Game getSolution() {
+        return solutions.isEmpty() ? null : solutions.get(0);
+    }
+
+    /**
+     * Returns the most complete board the solve reached: the first solution 
+     * if one was found, and otherwise the puzzle with the cells filled that 
+     * propagation could deduce before the search. The latter is the partial 
+     * result of a solve that ran out of its budget.
+     * @return The board, or null if the puzzle has no solution because 
+     *         propagation found a contradiction, or because the 
+     *         SolutionCache says so.
+     */
+    public Game getBoard() {
+        return solutions.isEmpty() ? board : solutions.get(0);
+    }
+
+    /**
+     * Returns the statistics of the search.
+     * @return The SolverStatistics.
+     */
+    public SolverStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public String toString() {
+        return "SolveResult{status=" + getStatus() + ", solutions=" + solutions.size()
+             + ", " + statistics + '}';
+    }
+}
@@ -1,16 +1,26 @@
 package net.pgrid.binairosolver;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import net.pgrid.binairosolver.Game.State;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.nio.file.StandardOpenOption.CREATE;
-import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static net.pgrid.binairosolver.Game.State.EMPTY;
 import static net.pgrid.binairosolver.Game.State.ONE;
 import static net.pgrid.binairosolver.Game.State.ZERO;
@@ -24,11 +34,72 @@ public class Solver {
     public static final Path INPUT  = Paths.get("samples/binairo2.txt");
     public static final Path OUTPUT = Paths.get("samples/binairo2.solution.txt");
     
+    /**
+     * The default number of backtracks after which {@code Backend.AUTO} 
+     * switches from the search to the SAT solver.
+     */
+    public static final long DEFAULT_BACKTRACK_BUDGET = 2_000;
+    
+    private static final String USAGE = "Usage: Solver [--threads N] [--unordered] [--output FILE] [--stats] "
+            + "[--cache N] [--table MB] [--backend SEARCH|SAT|AUTO] [--timeout MS] FILE...";
+    
+    /**
+     * The longest line of a board that {@code Backend.AUTO} hands to the SAT 
+     * solver. The encoding of a board grows with the cube of its size, so 
+     * larger boards are always searched.
+     */
+    public static final int MAX_SAT_LENGTH = 64;
+    
+    private BranchingStrategy branching = BranchingStrategy.MOST_FAILED;
+    private Inference inference = Inference.PATTERNS;
+    private Backend backend = Backend.SEARCH;
+    private long backtrackBudget = DEFAULT_BACKTRACK_BUDGET;
+    private int parallelism = 1, splitDepth = 6;
+    private ForkJoinPool pool;
+    private final ThreadLocal<SolverContext> contexts = ThreadLocal.withInitial(SolverContext::new);
+    private final List<SolverListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile SolutionCache cache;
+    private volatile TranspositionTable table;
+    
     /**
      * Entry point of the application.
+     * 
+     * Without arguments, the sample puzzle {@code INPUT} is solved and 
+     * written to {@code OUTPUT}. Otherwise every argument is a file holding 
+     * one or more puzzles separated by empty lines, or a directory of such 
+     * files. Files ending in {@code .corpus} are read as corpus files. All 
+     * puzzles are solved in parallel and the solutions are written to 
+     * standard output, separated by empty lines; unsolvable puzzles are 
+     * written unchanged. A summary is written to standard error. The 
+     * options are:
+     * <ul>
+     * <li>{@code --threads N}: the number of worker threads (default: the 
+     *     number of processors).</li>
+     * <li>{@code --unordered}: writes each solution as soon as it is found, 
+     *     instead of in input order.</li>
+     * <li>{@code --output FILE}: writes the solutions to a corpus file 
+     *     instead of standard output.</li>
+     * <li>{@code --stats}: writes the statistics of all solves to standard 
+     *     error.</li>
+     * <li>{@code --cache N}: looks puzzles up in a SolutionCache of N 
+     *     entries, and writes its hits and misses to standard error.</li>
+     * <li>{@code --table MB}: uses a TranspositionTable of the given number 
+     *     of megabytes.</li>
+     * <li>{@code --backend NAME}: the Backend, {@code SEARCH} (default), 
+     *     {@code SAT} or {@code AUTO}.</li>
+     * <li>{@code --timeout MS}: the time limit per puzzle in milliseconds; 
+     *     a puzzle that runs out of time is written as far as propagation 
+     *     filled it.</li>
+     * </ul>
+     * An unknown option or an invalid option value prints the usage to 
+     * standard error.
      * @param args The command-line arguments.
      */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            batch(args);
+            return;
+        }
         Solver solver = new Solver();
         try {
             Game game = Game.create(Files.lines(INPUT));
@@ -38,14 +109,394 @@ public class Solver {
             Game result = solver.solve(game);
             System.out.println("End Result: ");
             System.out.println(result);
-            List<String> output = Arrays.asList(result.toString().split("\n"));
-            Files.write(OUTPUT, output, UTF_8, CREATE, WRITE);
+            try (OutputStream out = Files.newOutputStream(OUTPUT)) {
+                GameFormat.write(result, out);
+            }
             System.out.println("Written to " + OUTPUT);
         } catch (IOException ex) {
             System.err.println("I/O error: " + ex);
         }
     }
     
+    /**
+     * Solves the puzzles in the files given on the command line.
+     * @param args The command-line arguments.
+     */
+    private static void batch(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean ordered = true, statistics = false;
+        int cacheSize = 0, tableMegabytes = 0;
+        long timeout = 0;
+        Backend backend = Backend.SEARCH;
+        Path output = null;
+        List<Path> inputs = new ArrayList<>();
+        try {
+            for (int i=0; i<args.length; i++) {
+                switch (args[i]) {
+                    case "--threads":   threads = positive(args, ++i); break;
+                    case "--unordered": ordered = false; break;
+                    case "--output":    output = Paths.get(value(args, ++i)); break;
+                    case "--stats":     statistics = true; break;
+                    case "--cache":     cacheSize = positive(args, ++i); break;
+                    case "--table":     tableMegabytes = positive(args, ++i); break;
+                    case "--backend":   backend = Backend.valueOf(value(args, ++i)); break;
+                    case "--timeout":   timeout = positive(args, ++i); break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option " + args[i]);
+                        }
+                        inputs.add(Paths.get(args[i]));
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            // Also covers unknown Backend names.
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            return;
+        }
+        List<Game> games = new ArrayList<>();
+        try {
+            for (Path input : inputs) {
+                games.addAll(readAll(input));
+            }
+        } catch (IOException ex) {
+            System.err.println("I/O error: " + ex);
+            return;
+        }
+        
+        Solver solver = new Solver();
+        solver.setBackend(backend);
+        SolverMetrics metrics = new SolverMetrics();
+        if (statistics) {
+            solver.addListener(metrics);
+        }
+        if (cacheSize > 0) {
+            solver.setCache(new SolutionCache(cacheSize));
+        }
+        if (tableMegabytes > 0) {
+            solver.setTranspositionTable(new TranspositionTable((long) tableMegabytes << 20));
+        }
+        PrintStream out = System.out;
+        AtomicInteger unsolved = new AtomicInteger();
+        long start = System.nanoTime();
+        ForkJoinPool workers = new ForkJoinPool(threads);
+        try (CorpusWriter writer = output == null ? null : new CorpusWriter(output)) {
+            Consumer<Game> printer = result -> {
+                if (!result.isComplete()) {
+                    unsolved.incrementAndGet();
+                }
+                if (writer != null) {
+                    synchronized (writer) {
+                        try {
+                            writer.write(result);
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    }
+                    return;
+                }
+                synchronized (out) {
+                    try {
+                        GameFormat.write(result, out);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    out.write('\n');
+                }
+            };
+            long millis = timeout;
+            Stream<Game> results = timeout <= 0 ? solver.solveAll(games.stream()) 
+                    : games.stream().parallel().map(game -> {
+                        // A puzzle that runs out of time is written as far 
+                        // as propagation got.
+                        Game board = solver.solve(game, new SolveBudget(millis, MILLISECONDS)).getBoard();
+                        return board == null ? game : board;
+                    });
+            boolean inOrder = ordered;
+            workers.submit(() -> {
+                if (inOrder) {
+                    results.forEachOrdered(printer);
+                } else {
+                    results.forEach(printer);
+                }
+            }).get();
+        } catch (InterruptedException | ExecutionException ex) {
+            System.err.println("Solving failed: " + ex);
+            return;
+        } catch (IOException ex) {
+            System.err.println("I/O error: " + ex);
+            return;
+        } finally {
+            workers.shutdown();
+        }
+        out.flush();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Solved %d puzzles (%d unsolved) in %.3f s: %.1f puzzles/s%n", 
+                games.size(), unsolved.get(), seconds, games.size() / seconds);
+        if (statistics) {
+            System.err.println(metrics.getStatistics());
+        }
+        if (cacheSize > 0) {
+            System.err.printf("Cache: %d hits, %d misses%n", 
+                    solver.getCache().getHits(), solver.getCache().getMisses());
+        }
+    }
+    
+    /**
+     * Returns the value of a command-line option.
+     * @param args The command-line arguments.
+     * @param i    The index of the value.
+     * @return     The value.
+     * @throws IllegalArgumentException - If the value is missing.
+     */
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+    
+    /**
+     * Returns the value of a numeric command-line option.
+     * @param args The command-line arguments.
+     * @param i    The index of the value.
+     * @return     The value, at least 1.
+     * @throws IllegalArgumentException - If the value is missing, not a 
+     *         number, or less than 1.
+     */
+    private static int positive(String[] args, int i) {
+        String value = value(args, i);
+        try {
+            int number = Integer.parseInt(value);
+            if (number >= 1) {
+                return number;
+            }
+        } catch (NumberFormatException ex) {
+            // Reported below.
+        }
+        throw new IllegalArgumentException("Invalid value for " + args[i - 1] + ": " + value);
+    }
+    
+    /**
+     * Reads all puzzles from a file, or from all files in a directory.
+     * 
+     * Files ending in {@code .corpus} are read with a {@link CorpusReader};
+     * other files hold puzzles in the grid format, separated by empty lines.
+     * @param path The file or directory.
+     * @return     The puzzles, in file name order.
+     * @throws     IOException - If reading fails.
+     */
+    private static List<Game> readAll(Path path) throws IOException {
+        if (path.toString().endsWith(".corpus")) {
+            List<Game> games = new ArrayList<>();
+            try (CorpusReader reader = new CorpusReader(path)) {
+                reader.forEachRemaining(games::add);
+            }
+            return games;
+        }
+        List<Game> games = new ArrayList<>();
+        if (!Files.isDirectory(path)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            for (Game game = GameFormat.parse(buffer, null); game != null; game = GameFormat.parse(buffer, null)) {
+                games.add(game);
+            }
+            return games;
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                if (Files.isRegularFile(file)) {
+                    games.addAll(readAll(file));
+                }
+            }
+        }
+        return games;
+    }
+    
+    /**
+     * Registers a listener that receives the statistics of every solve.
+     * 
+     * Statistics are only collected while at least one listener is 
+     * registered.
+     * @param listener The listener, not null.
+     */
+    public void addListener(SolverListener listener) {
+        assert listener != null;
+        listeners.add(listener);
+    }
+    
+    /**
+     * Removes a listener registered with {@code addListener}.
+     * @param listener The listener.
+     */
+    public void removeListener(SolverListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Returns the cache that solutions are looked up in.
+     * @return The SolutionCache, or null if solutions are not cached.
+     */
+    public SolutionCache getCache() {
+        return cache;
+    }
+    
+    /**
+     * Sets the cache that solutions are looked up in before solving, and 
+     * stored in after solving. A cache may be shared by several Solvers.
+     * @param cache The SolutionCache, or null to stop caching.
+     */
+    public void setCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+    
+    /**
+     * Returns the table of positions known to have no solution.
+     * @return The TranspositionTable, or null if none is used.
+     */
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+    
+    /**
+     * Sets the table of positions known to have no solution, which lets the 
+     * search skip boards it has already refuted. A table may be shared by 
+     * several Solvers and threads, and is kept across solves.
+     * @param table The TranspositionTable, or null to search without one.
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+    
+    /**
+     * Returns the strategy used to pick cells to guess.
+     * @return The BranchingStrategy.
+     */
+    public BranchingStrategy getBranchingStrategy() {
+        return branching;
+    }
+    
+    /**
+     * Sets the strategy used to pick cells to guess.
+     * @param branching The BranchingStrategy, not null.
+     */
+    public void setBranchingStrategy(BranchingStrategy branching) {
+        assert branching != null;
+        this.branching = branching;
+    }
+    
+    /**
+     * Returns the amount of reasoning applied before guessing.
+     * @return The Inference level.
+     */
+    public Inference getInference() {
+        return inference;
+    }
+    
+    /**
+     * Sets the amount of reasoning applied before guessing.
+     * @param inference The Inference level, not null.
+     */
+    public void setInference(Inference inference) {
+        assert inference != null;
+        this.inference = inference;
+    }
+    
+    /**
+     * Returns the method used to finish a puzzle once propagation gets stuck.
+     * @return The Backend.
+     */
+    public Backend getBackend() {
+        return backend;
+    }
+    
+    /**
+     * Sets the method used to finish a puzzle once propagation gets stuck.
+     * 
+     * The SAT backend always runs on the calling thread. With a parallelism 
+     * larger than 1, {@code Backend.AUTO} searches in parallel without a 
+     * node budget, as {@code Backend.SEARCH} does.
+     * @param backend The Backend, not null.
+     */
+    public void setBackend(Backend backend) {
+        assert backend != null;
+        this.backend = backend;
+    }
+    
+    /**
+     * Returns the number of backtracks after which {@code Backend.AUTO} 
+     * switches to the SAT solver.
+     * @return The backtrack budget.
+     */
+    public long getBacktrackBudget() {
+        return backtrackBudget;
+    }
+    
+    /**
+     * Sets the number of backtracks after which {@code Backend.AUTO} 
+     * switches to the SAT solver.
+     * 
+     * Backtracks rather than guesses are counted, since a large board that 
+     * is easy to solve still takes a guess for many of its cells.
+     * @param backtrackBudget The backtrack budget, at least 0.
+     */
+    public void setBacktrackBudget(long backtrackBudget) {
+        if (backtrackBudget < 0) {
+            throw new IllegalArgumentException("Invalid backtrack budget: " + backtrackBudget);
+        }
+        this.backtrackBudget = backtrackBudget;
+    }
+    
+    /**
+     * Returns the number of threads used to solve a single Game.
+     * @return The parallelism, 1 if the Solver searches sequentially.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+    
+    /**
+     * Sets the number of threads used to solve a single Game.
+     * 
+     * With a parallelism of 1, the default, the search runs on the calling 
+     * thread. Otherwise it runs on a fork/join pool of the given size, which 
+     * is created when it is first needed.
+     * @param parallelism The parallelism, at least 1.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+        }
+        if (pool != null && parallelism != this.parallelism) {
+            pool.shutdown();
+            pool = null;
+        }
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * Returns the number of guesses after which parallel tasks continue 
+     * sequentially.
+     * @return The split depth.
+     */
+    public int getSplitDepth() {
+        return splitDepth;
+    }
+    
+    /**
+     * Sets the number of guesses after which parallel tasks continue 
+     * sequentially.
+     * 
+     * A split depth of {@code d} creates up to {@code 2^d} tasks. It only 
+     * has an effect if the parallelism is larger than 1.
+     * @param splitDepth The split depth, at least 0.
+     */
+    public void setSplitDepth(int splitDepth) {
+        if (splitDepth < 0) {
+            throw new IllegalArgumentException("Invalid split depth: " + splitDepth);
+        }
+        this.splitDepth = splitDepth;
+    }
+    
     /**
      * Solves the provided Game instance.
      * 
@@ -63,68 +514,359 @@ public class Solver {
         }
     }
     
+    /**
+     * Solves a number of Games in parallel.
+     * 
+     * Unsolvable Games are returned unchanged, as with {@code solve(Game)}, 
+     * but nothing is logged for them; callers can tell them apart with 
+     * {@code isComplete}. The returned Stream is parallel and has the 
+     * same encounter order as the argument Stream, so the results can be 
+     * consumed in input order with {@code forEachOrdered}, or as they 
+     * finish with {@code forEach}. Each worker thread reuses its own 
+     * scratch board for Games of the same size.
+     * @param games The Games, not null.
+     * @return      The Stream of solved Games.
+     */
+    public Stream<Game> solveAll(Stream<Game> games) {
+        assert games != null;
+        return games.parallel().map(game -> {
+            try {
+                return solveImpl(game);
+            } catch (SolverException ex) {
+                return game;
+            }
+        });
+    }
+    
     /**
      * Solves the provided Game instance, throwing a SolverException on failure.
+     * 
+     * The argument Game instance is not modified.
      * @param game The Game instance, not null.
      * @return     The solved Game.
      * @throws     SolverException - If the Game could not be solved.
      */
     public Game solveImpl(Game game) throws SolverException {
         assert game != null;
-        Game original, newGame = game;
-        do {
-            original = newGame;
+        if (listeners.isEmpty()) {
+            return solveCached(game, null);
+        }
+        SolverStatistics stats = new SolverStatistics();
+        long start = System.nanoTime();
+        boolean solved = false;
+        try {
+            Game result = solveCached(game, stats);
+            solved = true;
+            return result;
+        } finally {
+            stats.totalTime(System.nanoTime() - start);
+            for (SolverListener listener : listeners) {
+                listener.solveFinished(game, solved, stats);
+            }
+        }
+    }
+    
+    /**
+     * Solves the provided Game instance, looking it up in the SolutionCache 
+     * first if one is set.
+     * @param game  The Game instance, not null.
+     * @param stats The statistics to count in, or null.
+     * @return      The solved Game.
+     * @throws      SolverException - If the Game could not be solved.
+     */
+    private Game solveCached(Game game, SolverStatistics stats) throws SolverException {
+        SolutionCache solutions = cache;
+        boolean parallel = parallelism > 1 && backend != Backend.SAT;
+        if (solutions == null) {
+            return parallel ? solveParallel(game, stats) : solveSequential(game, stats);
+        }
+        SolutionCache.Canonical canonical = SolutionCache.canonical(game);
+        Game result = solutions.lookup(canonical);
+        if (result != null) {
+            return result;
+        }
+        try {
+            result = parallel ? solveParallel(game, stats) : solveSequential(game, stats);
+        } catch (SolverException ex) {
+            solutions.store(canonical, null);
+            throw ex;
+        }
+        solutions.store(canonical, result);
+        return result;
+    }
+    
+    /**
+     * Solves the provided Game instance on the calling thread.
+     * @param game  The Game instance, not null.
+     * @param stats The statistics to count in, or null.
+     * @return      The solved Game.
+     * @throws      SolverException - If the Game could not be solved.
+     */
+    private Game solveSequential(Game game, SolverStatistics stats) throws SolverException {
+        SolverContext context = contexts.get();
+        Propagator propagator = context.load(game, inference);
+        propagator.statistics(stats);
+        long start = stats == null ? 0 : System.nanoTime();
+        propagator.enqueueAll();
+        if (!propagator.propagate()) {
+            throw new SolverException("Collision in " + lineName(game, propagator.failedLine()));
+        }
+        long propagated = stats == null ? 0 : System.nanoTime();
+        boolean solved = finish(propagator, context.search(branching, table), null);
+        if (stats != null) {
+            stats.propagationTime(propagated - start);
+            stats.searchTime(System.nanoTime() - propagated);
+        }
+        if (!solved) {
+            throw new SolverException("No solution found");
+        }
+        return propagator.game().copy();
+    }
+    
+    /**
+     * Finishes a propagated board with the Backend.
+     * 
+     * When this method returns false, the board may be partially filled; 
+     * callers roll it back using the Propagator's trail.
+     * @param propagator The Propagator holding the board, not null.
+     * @param search     A fresh Search on the Propagator, not null.
+     * @param limits     The Limits of the solve, or null.
+     * @return           True if the board was solved, false if it has no 
+     *                   solution or the Limits ran out.
+     */
+    boolean finish(Propagator propagator, Search search, Limits limits) {
+        Game game = propagator.game();
+        if (backend == Backend.SAT) {
+            return solveSat(game, limits);
+        }
+        int mark = propagator.mark();
+        search.limits(limits);
+        if (backend == Backend.AUTO 
+                && Math.max(game.getWidth(), game.getHeight()) <= MAX_SAT_LENGTH) {
+            search.budget(backtrackBudget);
+        }
+        if (search.solve()) {
+            return true;
+        }
+        if (!search.exhausted() || limits != null && limits.exceeded()) {
+            return false;
+        }
+        propagator.undo(mark);
+        return solveSat(game, limits);
+    }
+    
+    /**
+     * Solves a board with the SAT solver.
+     * @param game   The board, not null. It is only changed if it is solved.
+     * @param limits The Limits of the solve, or null.
+     * @return       True if the board was solved, false if it has no 
+     *               solution or the Limits ran out.
+     */
+    private static boolean solveSat(Game game, Limits limits) {
+        CnfEncoding encoding = new CnfEncoding(game);
+        encoding.solver().limits(limits);
+        return encoding.solve();
+    }
+    
+    /**
+     * Solves a puzzle within a budget.
+     * 
+     * Unlike {@code solve(Game)}, this method returns once the budget runs 
+     * out or is cancelled, with status {@code UNKNOWN} and the puzzle as far 
+     * as propagation filled it as the board of the result. A solved puzzle 
+     * has status {@code SOLVED}, and a puzzle without a solution 
+     * {@code NONE}. The parallelism, Backend and SolutionCache of this 
+     * Solver are used. Only solved puzzles and puzzles without a solution 
+     * are stored in the cache; a cached puzzle without a solution is 
+     * returned without a board. The statistics of the solve are always 
+     * collected, and passed to the listeners as well.
+     * 
+     * The argument Game instance is not modified.
+     * @param game   The puzzle, not null.
+     * @param budget The budget, not null.
+     * @return       The SolveResult.
+     */
+    public SolveResult solve(Game game, SolveBudget budget) {
+        assert game != null && budget != null;
+        SolverStatistics stats = new SolverStatistics();
+        long start = System.nanoTime();
+        SolutionCache cached = cache;
+        SolutionCache.Canonical canonical = null;
+        if (cached != null) {
+            canonical = SolutionCache.canonical(game);
+            SolveResult result;
             try {
-                newGame = solveSimpleRules(original.copy());
+                Game solution = cached.lookup(canonical);
+                result = solution == null ? null 
+                        : new SolveResult(SolveResult.Status.SOLVED, Collections.singletonList(solution), null, stats);
             } catch (SolverException ex) {
-                // The solve step got stuck. Return.
-                System.err.println("Got Stuck in basic Rule: " + ex.getMessage());
-                return original;
+                result = new SolveResult(SolveResult.Status.NONE, Collections.emptyList(), null, stats);
             }
-            if (original.equals(newGame)) {
-                try {
-                    return findGuess(original);
-                } catch (SolverException ex) {
-                    // The guess step got stuck. Return.
-                    System.err.println("Got Stuck in Guess: " + ex.getMessage());
-                    return original;
+            if (result != null) {
+                stats.totalTime(System.nanoTime() - start);
+                for (SolverListener listener : listeners) {
+                    listener.solveFinished(game, result.getSolution() != null, stats);
+                }
+                return result;
+            }
+        }
+        Limits limits = new Limits(budget);
+        SolverContext context = contexts.get();
+        Propagator propagator = context.load(game, inference);
+        propagator.statistics(stats);
+        propagator.enqueueAll();
+        Game board = propagator.propagate() ? propagator.game().copy() : null;
+        long propagated = System.nanoTime();
+        stats.propagationTime(propagated - start);
+        List<Game> solutions = new ArrayList<>(1);
+        if (board != null) {
+            if (parallelism > 1 && backend != Backend.SAT) {
+                SearchTask task = new SearchTask(board.copy(), -1, -1, 0, this, new AtomicBoolean(), 
+                        stats, limits);
+                Game solution = pool().invoke(task);
+                if (solution != null) {
+                    solutions.add(solution);
                 }
+            } else if (finish(propagator, context.search(branching, table), limits)) {
+                solutions.add(propagator.game().copy());
             }
-        } while (!newGame.isComplete());
-        return newGame;
+            stats.searchTime(System.nanoTime() - propagated);
+        }
+        stats.totalTime(System.nanoTime() - start);
+        SolveResult.Status status = !solutions.isEmpty() ? SolveResult.Status.SOLVED 
+                : board != null && limits.exceeded() ? SolveResult.Status.UNKNOWN 
+                : SolveResult.Status.NONE;
+        if (canonical != null && status != SolveResult.Status.UNKNOWN) {
+            cached.store(canonical, solutions.isEmpty() ? null : solutions.get(0));
+        }
+        for (SolverListener listener : listeners) {
+            listener.solveFinished(game, !solutions.isEmpty(), stats);
+        }
+        return new SolveResult(status, solutions, board, stats);
+    }
+    
+    /**
+     * Counts the solutions of a puzzle, up to a limit.
+     * 
+     * Counting uses the same propagation and branching as {@code solve}, but 
+     * continues searching after a solution is found. With a limit of 2 it 
+     * tells unique puzzles apart from puzzles with several solutions, at 
+     * about the cost of one solve for a unique puzzle. The search runs on 
+     * the calling thread regardless of the parallelism, and the 
+     * SolutionCache is not used. The statistics of the search are always 
+     * collected, and passed to the listeners as well.
+     * 
+     * The argument Game instance is not modified.
+     * @param game  The puzzle, not null.
+     * @param limit The number of solutions to stop at, at least 2.
+     * @return      The SolveResult.
+     * @throws IllegalArgumentException - If the limit is less than 2.
+     */
+    public SolveResult countSolutions(Game game, int limit) {
+        return countSolutions(game, limit, new SolveBudget());
+    }
+    
+    /**
+     * Counts the solutions of a puzzle, up to a limit, within a budget.
+     * 
+     * If the budget runs out before the search is done, the status is 
+     * {@code MULTIPLE} if two solutions were found already, and 
+     * {@code UNKNOWN} otherwise.
+     * @param game   The puzzle, not null.
+     * @param limit  The number of solutions to stop at, at least 2.
+     * @param budget The budget, not null.
+     * @return       The SolveResult.
+     * @throws IllegalArgumentException - If the limit is less than 2.
+     * @see #countSolutions(Game, int)
+     */
+    public SolveResult countSolutions(Game game, int limit, SolveBudget budget) {
+        assert game != null && budget != null;
+        if (limit < 2) {
+            throw new IllegalArgumentException("Limit must be at least 2: " + limit);
+        }
+        SolverStatistics stats = new SolverStatistics();
+        List<Game> solutions = new ArrayList<>(limit);
+        long start = System.nanoTime();
+        Limits limits = new Limits(budget);
+        SolverContext context = contexts.get();
+        Propagator propagator = context.load(game, inference);
+        propagator.statistics(stats);
+        propagator.enqueueAll();
+        Game board = propagator.propagate() ? propagator.game().copy() : null;
+        long propagated = System.nanoTime();
+        stats.propagationTime(propagated - start);
+        if (board != null) {
+            Search search = context.search(branching, table);
+            search.limits(limits);
+            search.count(limit, solutions);
+            stats.searchTime(System.nanoTime() - propagated);
+        }
+        stats.totalTime(System.nanoTime() - start);
+        for (SolverListener listener : listeners) {
+            listener.solveFinished(game, !solutions.isEmpty(), stats);
+        }
+        SolveResult.Status status;
+        if (solutions.size() > 1) {
+            status = SolveResult.Status.MULTIPLE;
+        } else if (board != null && limits.exceeded()) {
+            status = SolveResult.Status.UNKNOWN;
+        } else {
+            status = solutions.isEmpty() ? SolveResult.Status.NONE : SolveResult.Status.UNIQUE;
+        }
+        return new SolveResult(status, solutions, board, stats);
+    }
+    
+    /**
+     * Solves the provided Game instance on the fork/join pool.
+     * 
+     * The two values of each guess up to the split depth are searched in 
+     * parallel. The first solution found stops the other tasks.
+     * @param game  The Game instance, not null.
+     * @param stats The statistics to count in, or null.
+     * @return      The solved Game.
+     * @throws      SolverException - If the Game could not be solved.
+     */
+    private Game solveParallel(Game game, SolverStatistics stats) throws SolverException {
+        SearchTask task = new SearchTask(game.copy(), -1, -1, 0, this, new AtomicBoolean(), stats, null);
+        long start = stats == null ? 0 : System.nanoTime();
+        Game result = pool().invoke(task);
+        if (stats != null) {
+            stats.searchTime(System.nanoTime() - start);
+        }
+        if (result == null) {
+            throw new SolverException("No solution found");
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the fork/join pool, creating it if needed.
+     * @return The ForkJoinPool.
+     */
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
     }
     
     /**
      * Tries to guess a field on the board.
+     * 
+     * The argument Game instance is not modified.
      * @param game The Game instance, not null.
      * @return     The solved Game.
      * @throws     SolverException - If the Game could not be solved.
      */
     public Game findGuess(Game game) throws SolverException {
-        int x = 0, y = 0;
-LOOP:   for (; x < game.getWidth(); x++) {
-            for (; y < game.getHeight(); y++) {
-                if (game.get(x,y) == State.EMPTY) {
-                    break LOOP;
-                }
-            }
-        }
-        if (!game.isValidCell(x, y)) {
-            throw new SolverException("Cannot find an empty cell.");
-        }
-        try {
-            return guessSolve(game, x, y, State.ZERO);
-        } catch (SolverException ex1) {
-            try {
-                return guessSolve(game, x, y, State.ONE);
-            } catch (SolverException ex2) {
-                ex2.addSuppressed(ex1);
-                throw ex2;
-            }
+        Propagator propagator = new Propagator(game.copy(), inference);
+        propagator.enqueueAll();
+        if (!propagator.propagate() || !new Search(propagator, branching, null, 0, table).branch()) {
+            throw new SolverException("No valid guess found");
         }
+        return propagator.game();
     }
     
-    
     /**
      * Tries to solve the Game using simple Rules.
      * @param game The Game
@@ -132,16 +874,7 @@ LOOP:   for (; x < game.getWidth(); x++) {
      * @throws     SolverException - If the Game is unsolvable.
      */
     public Game solveSimpleRules(Game game) throws SolverException {
-        Game result = game;
-        
-        result = solveDoubleRulePerColumn(result);
-        result = solveDoubleRulePerRow(result);
-        result = solveGapRulePerColumn(result);
-        result = solveGapRulePerRow(result);
-        result = solveValueCountPerColumn(result);
-        result = solveValueCountPerRow(result);
-        
-        return result;
+        return applyRules(game, 0, game.lines(), LineRules.ALL);
     }
     
     /**
@@ -246,19 +979,14 @@ LOOP:   for (; x < game.getWidth(); x++) {
      * @throws      SolverException - If the Game has no solution.
      */
     public Game guessSolve(Game game, int x, int y, State guess) throws SolverException {
-        Game copy = game.copy();
-        try {
-            return solveImpl(checkedUpdate(copy, x, y, guess));
-        } catch (SolverException e1) {
-            try {
-                return solveImpl(checkedUpdate(copy, x, y, invert(guess)));
-            } catch (SolverException e2) {
-                SolverException e = new SolverException("No valid move for (" + x + "," + y + ")", e2);
-                e.addSuppressed(e1);
-                throw e;
-            }
+        Propagator propagator = new Propagator(game.copy(), inference);
+        propagator.enqueueAll();
+        if (!propagator.propagate() || !new Search(propagator, branching, null, 0, table).guess(x, y, guess)) {
+            throw new SolverException("No valid move for (" + x + "," + y + ")");
         }
+        return propagator.game();
     }
+    
     /**
      * Fills {@code _11_} and {@code _00_} patterns in rows.
      * @param game The Game
@@ -266,17 +994,7 @@ LOOP:   for (; x < game.getWidth(); x++) {
      * @throws     SolverException - If the Game is unsolvable.
      */
     public Game solveDoubleRulePerRow(Game game) throws SolverException {
-        for (int y=0; y<game.getHeight(); y++) {
-            for (int x=0; x<game.getWidth()-1; x++) {
-                State s = game.get(x, y);
-                if (s != EMPTY && s == game.get(x+1, y)) {
-                    State inverse = invert(s);
-                    checkedUpdate(game, x-1, y, inverse);
-                    checkedUpdate(game, x+2, y, inverse);
-                }
-            }
-        }
-        return game;
+        return applyRules(game, 0, game.getHeight(), LineRules.DOUBLE);
     }
     /**
      * Fills {@code 1_1} and {@code 0_0} patterns in rows.
@@ -285,16 +1003,7 @@ LOOP:   for (; x < game.getWidth(); x++) {
      * @throws     SolverException - If the Game is unsolvable.
      */
     public Game solveGapRulePerRow(Game game) throws SolverException {
-        for (int y=0; y<game.getHeight(); y++) {
-            for (int x=1; x<game.getWidth()-1; x++) {
-                State s = game.get(x, y);
-                if (s == EMPTY && game.get(x-1, y) == game.get(x+1, y)) {
-                    State inverse = invert(game.get(x-1, y));
-                    checkedUpdate(game, x, y, inverse);
-                }
-            }
-        }
-        return game;
+        return applyRules(game, 0, game.getHeight(), LineRules.GAP);
     }
     /**
      * Fills {@code _11_} and {@code _00_} patterns in columns.
@@ -303,17 +1012,7 @@ LOOP:   for (; x < game.getWidth(); x++) {
      * @throws     SolverException - If the Game is unsolvable.
      */
     public Game solveDoubleRulePerColumn(Game game) throws SolverException {
-        for (int y=0; y<game.getHeight()-1; y++) {
-            for (int x=0; x<game.getWidth(); x++) {
-                State s = game.get(x, y);
-                if (s != EMPTY && s == game.get(x, y+1)) {
-                    State inverse = invert(s);
-                    checkedUpdate(game, x, y-1, inverse);
-                    checkedUpdate(game, x, y+2, inverse);
-                }
-            }
-        }
-        return game;
+        return applyRules(game, game.getHeight(), game.lines(), LineRules.DOUBLE);
     }
     /**
      * Fills {@code 1_1} and {@code 0_0} patterns in columns.
@@ -322,16 +1021,7 @@ LOOP:   for (; x < game.getWidth(); x++) {
      * @throws     SolverException - If the Game is unsolvable.
      */
     public Game solveGapRulePerColumn(Game game) throws SolverException {
-        for (int y=1; y<game.getHeight()-1; y++) {
-            for (int x=0; x<game.getWidth(); x++) {
-                State s = game.get(x, y);
-                if (s == EMPTY && game.get(x, y-1) == game.get(x, y+1)) {
-                    State inverse = invert(game.get(x, y+1));
-                    checkedUpdate(game, x, y, inverse);
-                }
-            }
-        }
-        return game;
+        return applyRules(game, game.getHeight(), game.lines(), LineRules.GAP);
     }
     /**
      * Fills the 0 and 1 counting patterns in rows.
@@ -340,25 +1030,7 @@ LOOP:   for (; x < game.getWidth(); x++) {
      * @throws     SolverException - If the Game is unsolvable.
      */
     public Game solveValueCountPerRow(Game game) throws SolverException {
-        Game result = game;
-        int w = game.getWidth(), h = game.getHeight();
-        for (int y=0; y<h; y++) {
-            int c0 = 0, c1 = 0;
-            for (int x=0; x<w; x++) {
-                State s = result.get(x, y);
-                if (s == ZERO) {
-                    c0++;
-                } else if (s == ONE) {
-                    c1++;
-                }
-            }
-            if (2*c0 >= w) {
-                result = fillRemainingRow(result, y, ONE);
-            } else if (2*c1 >= w) {
-                result = fillRemainingRow(result, y, ZERO);
-            }
-        }
-        return result;
+        return applyRules(game, 0, game.getHeight(), LineRules.COUNT);
     }
     /**
      * Fills the 0 and 1 counting patterns in columns.
@@ -367,25 +1039,41 @@ LOOP:   for (; x < game.getWidth(); x++) {
      * @throws     SolverException - If the Game is unsolvable.
      */
     public Game solveValueCountPerColumn(Game game) throws SolverException {
-        Game result = game;
-        int w = game.getWidth(), h = game.getHeight();
-        for (int x=0; x<w; x++) {
-            int c0 = 0, c1 = 0;
-            for (int y=0; y<h; y++) {
-                State s = result.get(x, y);
-                if (s == ZERO) {
-                    c0++;
-                } else if (s == ONE) {
-                    c1++;
-                }
-            }
-            if (2*c0 >= h) {
-                result = fillRemainingColumn(result, x, ONE);
-            } else if (2*c1 >= h) {
-                result = fillRemainingColumn(result, x, ZERO);
+        return applyRules(game, game.getHeight(), game.lines(), LineRules.COUNT);
+    }
+    
+    /**
+     * Applies the given rules to a range of lines.
+     * @param game  The Game, not null.
+     * @param from  The first line index (inclusive).
+     * @param to    The last line index (exclusive).
+     * @param rules The rules to apply, a combination of the 
+     *              {@code LineRules} flags.
+     * @return      A (partial) solution
+     * @throws      SolverException - If a line contains a collision.
+     */
+    private Game applyRules(Game game, int from, int to, int rules) throws SolverException {
+        long[] line = new long[2 * game.words()];
+        for (int l = from; l < to; l++) {
+            if (!LineRules.propagate(game.bits(), game.offset(l), game.words(), 
+                    game.lineLength(l), rules, line)) {
+                throw new SolverException("Collision in " + lineName(game, l));
             }
+            game.assign(l, line);
         }
-        return result;
+        return game;
+    }
+    
+    /**
+     * Returns a human-readable name for a line.
+     * @param game The Game, not null.
+     * @param line The line index.
+     * @return     The name of the line.
+     */
+    private static String lineName(Game game, int line) {
+        return line < game.getHeight() 
+                ? "row " + line 
+                : "column " + (line - game.getHeight());
     }
     
 }
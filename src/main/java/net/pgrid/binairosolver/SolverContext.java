@@ -0,0 +1,133 @@
+package net.pgrid.binairosolver;
+
+/**
+ * The scratch state for solving puzzles on one thread.
+ *
+ * A SolverContext keeps a board, trail, queue and candidate tables for each
+ * board size it has seen, and the stack of the search. Loading the next
+ * puzzle of a known size only copies its cells and resets counters, so that
+ * solving many puzzles with the {@code SEARCH} Backend allocates nothing
+ * once the context has seen every size. The SAT solver allocates its
+ * formula on every use.
+ *
+ * The {@code Solver} keeps a SolverContext for every thread that calls it,
+ * but every solve still returns a copy of the solution. Callers that solve
+ * many puzzles on one thread can use a SolverContext directly, and read the
+ * solution from its board:
+ * <pre>
+ * SolverContext context = new SolverContext(solver);
+ * for (Game puzzle : puzzles) {
+ *     if (context.solve(puzzle)) {
+ *         GameFormat.write(context.getBoard(), out);
+ *     }
+ * }
+ * </pre>
+ * A SolverContext is not thread-safe; each thread needs its own.
+ * @author Patrick Kramer
+ */
+public final class SolverContext {
+
+    /**
+     * The number of board sizes whose scratch state is kept. Once more sizes
+     * are seen, the state of the least recently added size is replaced.
+     */
+    static final int MAX_SIZES = 8;
+
+    // Null for the contexts the Solver keeps per thread, so that a
+    // ThreadLocal entry does not keep its Solver reachable.
+    private final Solver solver;
+    private final Propagator[] propagators = new Propagator[MAX_SIZES];
+    private final Search[] searches = new Search[MAX_SIZES];
+    private int sizes, next, current = -1;
+
+    /**
+     * Creates a SolverContext.
+     * @param solver The Solver whose settings are used, not null.
+     */
+    public SolverContext(Solver solver) {
+        assert solver != null;
+        this.solver = solver;
+    }
+
+    /**
+     * Creates a SolverContext without a Solver, whose settings are passed to
+     * {@code load} and {@code search} instead.
+     */
+    SolverContext() {
+        this.solver = null;
+    }
+
+    /**
+     * Solves a puzzle into the board of this context.
+     *
+     * The Inference level, BranchingStrategy, TranspositionTable and
+     * Backend of the Solver are used, but not its parallelism,
+     * SolutionCache or listeners.
+     *
+     * The argument Game instance is not modified.
+     * @param puzzle The puzzle, not null.
+     * @return       True if the puzzle was solved, false if it has no
+     *               solution.
+     */
+    public boolean solve(Game puzzle) {
+        assert solver != null;
+        Propagator propagator = load(puzzle, solver.getInference());
+        propagator.statistics(null);
+        propagator.enqueueAll();
+        return propagator.propagate()
+                && solver.finish(propagator, search(solver.getBranchingStrategy(), solver.getTranspositionTable()), null);
+    }
+
+    /**
+     * Returns the board of the last solve.
+     *
+     * The board is the solution if the solve succeeded, and belongs to this
+     * context: it must not be modified, and is overwritten by the next solve.
+     * Use {@code copy} to keep it.
+     * @return The board, or null if nothing was solved yet.
+     */
+    public Game getBoard() {
+        return current < 0 ? null : propagators[current].game();
+    }
+
+    /**
+     * Returns the scratch Propagator for the size of a puzzle, loaded with
+     * the puzzle.
+     * @param puzzle    The puzzle, not null.
+     * @param inference The Inference level, not null.
+     * @return          The Propagator.
+     */
+    Propagator load(Game puzzle, Inference inference) {
+        for (int i = 0; i < sizes; i++) {
+            if (propagators[i].accepts(puzzle, inference)) {
+                propagators[i].reset(puzzle);
+                current = i;
+                return propagators[i];
+            }
+        }
+        current = next;
+        next = (next + 1) % MAX_SIZES;
+        sizes = Math.max(sizes, next == 0 ? MAX_SIZES : next);
+        propagators[current] = new Propagator(puzzle.copy(), inference);
+        searches[current] = null;
+        return propagators[current];
+    }
+
+    /**
+     * Returns the Search on the Propagator of the last loaded puzzle, ready
+     * for a new solve.
+     * @param branching The BranchingStrategy, not null.
+     * @param table     The TranspositionTable, or null.
+     * @return          The Search.
+     */
+    Search search(BranchingStrategy branching, TranspositionTable table) {
+        assert current >= 0;
+        Search search = searches[current];
+        if (search == null || !search.accepts(branching, table)) {
+            search = searches[current] = new Search(propagators[current], branching, null, 0, table);
+        } else {
+            search.reset();
+        }
+        return search;
+    }
+}
@@ -0,0 +1,28 @@
+package net.pgrid.binairosolver;
+
+/**
+ * Receives the statistics of every solve of a Solver.
+ *
+ * Listeners are called on the thread that ran the solve, so they must be
+ * thread-safe when the Solver is used from several threads, as it is by
+ * {@code solveAll}.
+ * @author Patrick Kramer
+ * @see Solver#addListener(SolverListener)
+ * @see SolverMetrics
+ */
+@FunctionalInterface
+public interface SolverListener {
+
+    /**
+     * Called when a solve has finished.
+     * @param puzzle     The puzzle that was solved, not null.
+     * @param solved     True if a solution was found, false if the puzzle
+     *                   has no solution, or if the budget of
+     *                   {@link Solver#solve(Game, SolveBudget)} ran out
+     *                   before a solution was found (status
+     *                   {@code UNKNOWN}).
+     * @param statistics The statistics of the solve, not null. The instance
+     *                   is not reused by the Solver.
+     */
+    void solveFinished(Game puzzle, boolean solved, SolverStatistics statistics);
+}
@@ -0,0 +1,159 @@
+package net.pgrid.binairosolver;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import net.pgrid.binairosolver.SolverStatistics.Rule;
+
+/**
+ * A SolverListener that aggregates the statistics of all solves.
+ *
+ * The aggregate can be read through the getters, or exposed as a JMX MBean
+ * using {@code register}. It is safe to use from several solver threads.
+ * @author Patrick Kramer
+ */
+public class SolverMetrics implements SolverListener, SolverMetricsMBean {
+
+    private final SolverStatistics total = new SolverStatistics();
+    private long solves, failures;
+
+    @Override
+    public synchronized void solveFinished(Game puzzle, boolean solved, SolverStatistics statistics) {
+        total.add(statistics);
+        solves++;
+        if (!solved) {
+            failures++;
+        }
+    }
+
+    /**
+     * Registers this SolverMetrics with the platform MBean server.
+     * @param name The object name, e.g.
+     *             {@code net.pgrid.binairosolver:type=SolverMetrics}.
+     * @return     This SolverMetrics.
+     * @throws JMException - If the name is invalid or already registered.
+     */
+    public SolverMetrics register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, new ObjectName(name));
+        return this;
+    }
+
+    /**
+     * Returns a copy of the aggregated statistics.
+     * @return The statistics of all solves so far.
+     */
+    public synchronized SolverStatistics getStatistics() {
+        SolverStatistics copy = new SolverStatistics();
+        copy.add(total);
+        return copy;
+    }
+
+    @Override
+    public synchronized long getSolves() {
+        return solves;
+    }
+
+    @Override
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    @Override
+    public synchronized long getPropagations() {
+        return total.getPropagations();
+    }
+
+    @Override
+    public synchronized long getLineVisits() {
+        return total.getLineVisits();
+    }
+
+    @Override
+    public synchronized long getProbes() {
+        return total.getProbes();
+    }
+
+    @Override
+    public synchronized long getDoubleRuleCells() {
+        return total.getCells(Rule.DOUBLE);
+    }
+
+    @Override
+    public synchronized long getGapRuleCells() {
+        return total.getCells(Rule.GAP);
+    }
+
+    @Override
+    public synchronized long getCountRuleCells() {
+        return total.getCells(Rule.COUNT);
+    }
+
+    @Override
+    public synchronized long getPatternCells() {
+        return total.getCells(Rule.PATTERNS);
+    }
+
+    @Override
+    public synchronized long getUniquenessCells() {
+        return total.getCells(Rule.UNIQUENESS);
+    }
+
+    @Override
+    public synchronized long getProbingCells() {
+        return total.getCells(Rule.PROBING);
+    }
+
+    @Override
+    public synchronized long getGuesses() {
+        return total.getGuesses();
+    }
+
+    @Override
+    public synchronized long getBacktracks() {
+        return total.getBacktracks();
+    }
+
+    @Override
+    public synchronized long getContradictions() {
+        return total.getContradictions();
+    }
+
+    @Override
+    public synchronized long getCutoffs() {
+        return total.getCutoffs();
+    }
+
+    @Override
+    public synchronized long getMaxDepth() {
+        return total.getMaxDepth();
+    }
+
+    @Override
+    public synchronized double getPropagationMillis() {
+        return total.getPropagationNanos() / 1e6;
+    }
+
+    @Override
+    public synchronized double getSearchMillis() {
+        return total.getSearchNanos() / 1e6;
+    }
+
+    @Override
+    public synchronized double getTotalMillis() {
+        return total.getTotalNanos() / 1e6;
+    }
+
+    @Override
+    public synchronized void reset() {
+        total.clear();
+        solves   = 0;
+        failures = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SolverMetrics{solves=" + solves + ", failures=" + failures + ", " + total + '}';
+    }
+}
@@ -0,0 +1,108 @@
+package net.pgrid.binairosolver;
+
+/**
+ * Management interface of {@link SolverMetrics}.
+ * @author Patrick Kramer
+ */
+public interface SolverMetricsMBean {
+
+    /**
+     * @return The number of finished solves.
+     */
+    long getSolves();
+
+    /**
+     * @return The number of solves that found no solution.
+     */
+    long getFailures();
+
+    /**
+     * @return The number of propagation passes.
+     */
+    long getPropagations();
+
+    /**
+     * @return The number of rows and columns examined while propagating.
+     */
+    long getLineVisits();
+
+    /**
+     * @return The number of cell values tried by probing.
+     */
+    long getProbes();
+
+    /**
+     * @return The number of cells filled by the double rule.
+     */
+    long getDoubleRuleCells();
+
+    /**
+     * @return The number of cells filled by the gap rule.
+     */
+    long getGapRuleCells();
+
+    /**
+     * @return The number of cells filled by the count rule.
+     */
+    long getCountRuleCells();
+
+    /**
+     * @return The number of cells filled by line patterns.
+     */
+    long getPatternCells();
+
+    /**
+     * @return The number of cells filled by the uniqueness rule.
+     */
+    long getUniquenessCells();
+
+    /**
+     * @return The number of cells filled by probing.
+     */
+    long getProbingCells();
+
+    /**
+     * @return The number of guesses.
+     */
+    long getGuesses();
+
+    /**
+     * @return The number of backtracks.
+     */
+    long getBacktracks();
+
+    /**
+     * @return The number of contradictions found while propagating.
+     */
+    long getContradictions();
+
+    /**
+     * @return The number of branches cut by the transposition table.
+     */
+    long getCutoffs();
+
+    /**
+     * @return The largest search depth of any solve.
+     */
+    long getMaxDepth();
+
+    /**
+     * @return The total time spent on initial propagation, in milliseconds.
+     */
+    double getPropagationMillis();
+
+    /**
+     * @return The total time spent guessing, in milliseconds.
+     */
+    double getSearchMillis();
+
+    /**
+     * @return The total time of all solves, in milliseconds.
+     */
+    double getTotalMillis();
+
+    /**
+     * Sets all counters back to zero.
+     */
+    void reset();
+}
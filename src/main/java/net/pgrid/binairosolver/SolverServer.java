@@ -0,0 +1,751 @@
+package net.pgrid.binairosolver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An HTTP service that solves puzzles sent as JSON.
+ *
+ * The service runs on the HTTP server of the JDK and has two endpoints:
+ * <ul>
+ * <li>{@code POST /solve} takes {@code {"puzzle": "4x4:1..0.0....1.0..1"}},
+ *     with the puzzle in the corpus format of {@link CorpusReader}, and an
+ *     optional {@code "timeout"} in milliseconds, which is capped at the
+ *     timeout of the server. It answers with the status of the
+ *     {@link SolveResult}, the board in the same format and the time the
+ *     request took. A body larger than the maximum body size is answered
+ *     with status 413, and a malformed request or a puzzle wider or higher
+ *     than the maximum board size with status 400.</li>
+ * <li>{@code GET /stats} reports the number of requests, rejected requests
+ *     and batches, and percentiles of the request latency.</li>
+ * </ul>
+ *
+ * Requests are handled on virtual threads when the JDK has them, and on a
+ * cached thread pool otherwise. A handler only parses the request and puts
+ * it in a bounded queue. A single dispatcher thread takes the first waiting
+ * request, waits the batch window for more, and hands the batch to a pool
+ * of worker threads without waiting for it, so that a slow puzzle does not
+ * hold up later batches. Every request is answered as soon as its own
+ * puzzle is solved. At most the maximum batch size of requests are solved
+ * at once; the others wait in the queue. When the queue is full, a request
+ * is rejected right away with status 503, so that a burst of requests
+ * cannot pile up without bound.
+ * @author Patrick Kramer
+ */
+public class SolverServer implements Closeable {
+
+    /**
+     * The default number of requests that may wait to be solved.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    /**
+     * The default time the dispatcher waits for more requests to batch.
+     */
+    public static final long DEFAULT_BATCH_WINDOW_MICROS = 200;
+
+    /**
+     * The default maximum number of requests solved in one batch.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    /**
+     * The default time a single puzzle may take, in milliseconds.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * The default maximum size of a request body, in bytes.
+     */
+    public static final int DEFAULT_MAX_BODY_BYTES = 1 << 20;
+
+    /**
+     * The default maximum width and height of a puzzle.
+     */
+    public static final int DEFAULT_MAX_BOARD_SIZE = 256;
+
+    private final Solver solver;
+    private int port, threads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY, maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private long batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(DEFAULT_BATCH_WINDOW_MICROS);
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private int maxBodyBytes = DEFAULT_MAX_BODY_BYTES, maxBoardSize = DEFAULT_MAX_BOARD_SIZE;
+
+    private HttpServer server;
+    private BlockingQueue<Request> queue;
+    private ExecutorService handlers;
+    private ForkJoinPool workers;
+    private Thread dispatcher;
+    // A permit for every request that may be solved at once.
+    private Semaphore solving;
+    private volatile boolean running;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    /**
+     * Creates a SolverServer. It listens once {@code start} is called.
+     * @param solver The Solver that solves the puzzles, not null.
+     */
+    public SolverServer(Solver solver) {
+        assert solver != null;
+        this.solver = solver;
+    }
+
+    /**
+     * Runs the service until the process is stopped. The options are:
+     * <ul>
+     * <li>{@code --port N}: the port to listen on (default: 8080).</li>
+     * <li>{@code --threads N}: the number of worker threads (default: the
+     *     number of processors).</li>
+     * <li>{@code --queue N}: the number of requests that may wait.</li>
+     * <li>{@code --window US}: the batch window in microseconds.</li>
+     * <li>{@code --timeout MS}: the time a puzzle may take by default.</li>
+     * </ul>
+     * @param args The command-line arguments.
+     * @throws IOException - If the server could not be started.
+     */
+    public static void main(String[] args) throws IOException {
+        SolverServer server = new SolverServer(new Solver());
+        server.setPort(8080);
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":    server.setPort(Integer.parseInt(args[++i])); break;
+                case "--threads": server.setThreads(Integer.parseInt(args[++i])); break;
+                case "--queue":   server.setQueueCapacity(Integer.parseInt(args[++i])); break;
+                case "--window":  server.setBatchWindow(Long.parseLong(args[++i]), TimeUnit.MICROSECONDS); break;
+                case "--timeout": server.setTimeout(Long.parseLong(args[++i]), TimeUnit.MILLISECONDS); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+        server.start();
+        System.err.println("Listening on port " + server.getPort());
+    }
+
+    /**
+     * Returns the port the service listens on.
+     * @return The port, which is chosen by the system once the service has
+     *         started if it was set to 0.
+     */
+    public int getPort() {
+        return server == null ? port : server.getAddress().getPort();
+    }
+
+    /**
+     * Sets the port to listen on.
+     * @param port The port, or 0 to let the system pick a free port.
+     */
+    public void setPort(int port) {
+        checkNotStarted();
+        this.port = port;
+    }
+
+    /**
+     * Sets the number of threads that solve the puzzles of a batch.
+     * @param threads The number of threads, at least 1.
+     */
+    public void setThreads(int threads) {
+        checkNotStarted();
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the number of requests that may wait to be solved. Requests
+     * arriving while that many are waiting are rejected.
+     * @param queueCapacity The capacity of the queue, at least 1.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        checkNotStarted();
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid queue capacity: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of requests that are solved in one batch, and
+     * at once over all batches.
+     * @param maxBatchSize The maximum batch size, at least 1.
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        checkNotStarted();
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + maxBatchSize);
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Sets the time the dispatcher waits after the first request of a batch
+     * for more requests to arrive.
+     * @param window The batch window, at least 0.
+     * @param unit   The unit of the window, not null.
+     */
+    public void setBatchWindow(long window, TimeUnit unit) {
+        checkNotStarted();
+        if (window < 0) {
+            throw new IllegalArgumentException("Invalid batch window: " + window);
+        }
+        this.batchWindowNanos = unit.toNanos(window);
+    }
+
+    /**
+     * Sets the time a puzzle may take if its request gives no timeout, and
+     * the longest timeout a request may give.
+     * @param timeout The timeout, at least 0.
+     * @param unit    The unit of the timeout, not null.
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        checkNotStarted();
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Invalid timeout: " + timeout);
+        }
+        this.timeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Sets the maximum size of a request body. Larger requests are rejected
+     * without being read further.
+     * @param maxBodyBytes The maximum size in bytes, at least 1.
+     */
+    public void setMaxBodySize(int maxBodyBytes) {
+        checkNotStarted();
+        if (maxBodyBytes < 1) {
+            throw new IllegalArgumentException("Invalid body size: " + maxBodyBytes);
+        }
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * Sets the maximum width and height of a puzzle. Larger puzzles are
+     * rejected before a board is allocated for them.
+     * @param maxBoardSize The maximum width and height, at least 1.
+     */
+    public void setMaxBoardSize(int maxBoardSize) {
+        checkNotStarted();
+        if (maxBoardSize < 1) {
+            throw new IllegalArgumentException("Invalid board size: " + maxBoardSize);
+        }
+        this.maxBoardSize = maxBoardSize;
+    }
+
+    /**
+     * Throws an IllegalStateException if the service has started.
+     */
+    private void checkNotStarted() {
+        if (server != null) {
+            throw new IllegalStateException("The server has already started");
+        }
+    }
+
+    /**
+     * Starts listening for requests.
+     * @throws IOException - If the port could not be bound.
+     */
+    public synchronized void start() throws IOException {
+        checkNotStarted();
+        server   = HttpServer.create(new InetSocketAddress(port), 0);
+        queue    = new ArrayBlockingQueue<>(queueCapacity);
+        handlers = handlerExecutor();
+        workers  = new ForkJoinPool(threads);
+        solving  = new Semaphore(maxBatchSize);
+        running  = true;
+        server.setExecutor(handlers);
+        server.createContext("/solve", this::solve);
+        server.createContext("/stats", this::stats);
+        dispatcher = new Thread(this::dispatch, "SolverServer-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        server.start();
+    }
+
+    /**
+     * Stops the service. Requests that are still waiting are answered with
+     * status 503.
+     */
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        server.stop(0);
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        for (Request request = queue.poll(); request != null; request = queue.poll()) {
+            request.result.complete(null);
+        }
+        workers.shutdown();
+        handlers.shutdown();
+    }
+
+    /**
+     * Returns an executor that runs every request on a new virtual thread,
+     * or a cached thread pool if the JDK has no virtual threads.
+     * @return The ExecutorService.
+     */
+    private static ExecutorService handlerExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException ex) {
+            // Virtual threads are not available, or need --enable-preview.
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Returns the number of requests answered with a result.
+     * @return The number of requests.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Returns the number of requests rejected because the queue was full.
+     * @return The number of rejected requests.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns the number of batches solved.
+     * @return The number of batches.
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * Returns a latency that the given fraction of the answered requests did
+     * not exceed, measured from reading the request to writing the answer.
+     * @param fraction The percentile as a fraction, between 0 and 1.
+     * @param unit     The unit to return the latency in, not null.
+     * @return         The latency, or 0 if no request was answered yet.
+     */
+    public long getLatency(double fraction, TimeUnit unit) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("Invalid percentile: " + fraction);
+        }
+        return unit.convert(latencies.percentile(fraction), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Handles a solve request.
+     * @param exchange The HTTP exchange.
+     * @throws IOException - If the answer could not be written.
+     */
+    private void solve(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("Use POST"));
+                return;
+            }
+            byte[] body = readAll(exchange.getRequestBody(), maxBodyBytes);
+            if (body == null) {
+                respond(exchange, 413, error("Request body exceeds " + maxBodyBytes + " bytes"));
+                return;
+            }
+            Request request;
+            try {
+                Map<String, String> fields = parseObject(new String(body, UTF_8));
+                String puzzle = fields.get("puzzle");
+                if (puzzle == null) {
+                    throw new IllegalArgumentException("Missing field: puzzle");
+                }
+                checkSize(puzzle);
+                String timeout = fields.get("timeout");
+                long millis = timeout == null ? timeoutMillis : Math.min(Long.parseLong(timeout), timeoutMillis);
+                request = new Request(GameFormat.parseLine(puzzle, null), new SolveBudget(millis, TimeUnit.MILLISECONDS));
+            } catch (RuntimeException ex) {
+                // Any failure to parse the request is the client's fault.
+                respond(exchange, 400, error(ex.getMessage()));
+                return;
+            }
+            if (!running || !queue.offer(request)) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, error("Too many requests"));
+                return;
+            }
+            if (!running) {
+                // close() may have drained the queue before the offer.
+                request.result.complete(null);
+            }
+            SolveResult result;
+            try {
+                result = request.result.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                request.budget.cancel();
+                result = null;
+            } catch (ExecutionException ex) {
+                respond(exchange, 500, error(String.valueOf(ex.getCause())));
+                return;
+            }
+            if (result == null) {
+                respond(exchange, 503, error("The server is stopping"));
+                return;
+            }
+            Game board = result.getBoard();
+            long nanos = System.nanoTime() - start;
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            StringBuilder json = new StringBuilder("{\"status\":\"").append(result.getStatus()).append("\",\"board\":");
+            if (board == null) {
+                json.append("null");
+            } else {
+                GameFormat.appendLine(board, json.append('"')).append('"');
+            }
+            // Counted before answering, so that a client sees its own request.
+            requests.incrementAndGet();
+            latencies.record(nanos);
+            respond(exchange, 200, json.append(",\"micros\":").append(micros).append('}').toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Checks the size of a puzzle in the line format before it is parsed,
+     * so that a request cannot make the server allocate a huge board.
+     * @param puzzle The puzzle line.
+     * @throws IllegalArgumentException - If the size is malformed, or the
+     *         width or height exceeds the maximum board size.
+     */
+    private void checkSize(String puzzle) {
+        int x = puzzle.indexOf('x'), colon = puzzle.indexOf(':');
+        if (x < 0 || colon < x) {
+            throw new IllegalArgumentException("Malformed puzzle size");
+        }
+        String width = puzzle.substring(0, x), height = puzzle.substring(x + 1, colon);
+        // Longer numbers are too large anyway, and might overflow.
+        if (width.length() > 6 || height.length() > 6
+                || Integer.parseInt(width) > maxBoardSize || Integer.parseInt(height) > maxBoardSize) {
+            throw new IllegalArgumentException("Puzzle exceeds " + maxBoardSize + "x" + maxBoardSize);
+        }
+    }
+
+    /**
+     * Handles a statistics request.
+     * @param exchange The HTTP exchange.
+     * @throws IOException - If the answer could not be written.
+     */
+    private void stats(HttpExchange exchange) throws IOException {
+        try {
+            TimeUnit unit = TimeUnit.MICROSECONDS;
+            respond(exchange, 200, "{\"requests\":" + getRequests()
+                    + ",\"rejected\":" + getRejected()
+                    + ",\"batches\":" + getBatches()
+                    + ",\"queued\":" + queue.size()
+                    + ",\"latencyMicros\":{\"p50\":" + getLatency(0.5, unit)
+                    + ",\"p90\":" + getLatency(0.9, unit)
+                    + ",\"p99\":" + getLatency(0.99, unit)
+                    + ",\"p999\":" + getLatency(0.999, unit)
+                    + ",\"max\":" + unit.convert(latencies.max(), TimeUnit.NANOSECONDS) + "}}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Takes batches of requests from the queue and solves them, until the
+     * service stops.
+     */
+    private void dispatch() {
+        while (running) {
+            List<Request> batch = new ArrayList<>();
+            try {
+                // A request only leaves the queue once it can be solved, so
+                // that the queue bounds the requests that wait. The permits
+                // of an interrupted dispatch are not needed any more.
+                solving.acquire();
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + batchWindowNanos;
+                while (batch.size() < maxBatchSize && solving.tryAcquire()) {
+                    long wait = deadline - System.nanoTime();
+                    Request next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        solving.release();
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException ex) {
+                // Answered by close.
+            }
+            if (!batch.isEmpty()) {
+                batches.incrementAndGet();
+                workers.execute(new SolveBatch(batch));
+            }
+        }
+    }
+
+    /**
+     * Solves the puzzles of a batch in parallel, and completes the request
+     * of each as soon as it is solved.
+     */
+    private final class SolveBatch extends java.util.concurrent.RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Request> batch;
+
+        /**
+         * Creates a SolveBatch.
+         * @param batch The requests, not null.
+         */
+        SolveBatch(List<Request> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        protected void compute() {
+            batch.parallelStream().forEach(request -> {
+                try {
+                    request.result.complete(solver.solve(request.game, request.budget));
+                } catch (RuntimeException | Error ex) {
+                    request.result.completeExceptionally(ex);
+                } finally {
+                    solving.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * A puzzle waiting to be solved.
+     */
+    private static final class Request {
+        final Game game;
+        final SolveBudget budget;
+        final CompletableFuture<SolveResult> result = new CompletableFuture<>();
+
+        Request(Game game, SolveBudget budget) {
+            this.game   = game;
+            this.budget = budget;
+        }
+    }
+
+    /**
+     * Writes a JSON answer.
+     * @param exchange The HTTP exchange.
+     * @param status   The HTTP status code.
+     * @param json     The body.
+     * @throws IOException - If the answer could not be written.
+     */
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Returns the JSON body of an error answer.
+     * @param message The error message.
+     * @return        The JSON object.
+     */
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":\"");
+        for (char c : String.valueOf(message).toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append("\"}").toString();
+    }
+
+    /**
+     * Reads a stream to its end, up to a limit.
+     * @param in    The stream.
+     * @param limit The maximum number of bytes.
+     * @return      The bytes read, or null if the stream holds more than
+     *              the limit.
+     * @throws IOException - If reading failed.
+     */
+    private static byte[] readAll(InputStream in, int limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            if (out.size() + n > limit) {
+                return null;
+            }
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Parses a JSON object whose values are strings, numbers, booleans or
+     * null, which is all a solve request holds.
+     * @param json The JSON text.
+     * @return     The values by name, with numbers and booleans as their
+     *             text and null as a null value.
+     * @throws IllegalArgumentException - If the text is not such an object.
+     */
+    static Map<String, String> parseObject(String json) {
+        Map<String, String> fields = new HashMap<>();
+        int[] pos = {skip(json, 0)};
+        expect(json, pos, '{');
+        if (peek(json, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                String name = parseString(json, pos);
+                expect(json, pos, ':');
+                char c = peek(json, pos);
+                String value;
+                if (c == '"') {
+                    value = parseString(json, pos);
+                } else {
+                    int start = pos[0];
+                    while (pos[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(pos[0])) < 0) {
+                        pos[0]++;
+                    }
+                    value = json.substring(start, pos[0]);
+                    if (value.isEmpty() || value.charAt(0) == '{' || value.charAt(0) == '[') {
+                        throw new IllegalArgumentException("Unsupported value of " + name);
+                    }
+                    value = "null".equals(value) ? null : value;
+                }
+                fields.put(name, value);
+                pos[0] = skip(json, pos[0]);
+                if (peek(json, pos) == ',') {
+                    pos[0]++;
+                    continue;
+                }
+                expect(json, pos, '}');
+                break;
+            }
+        }
+        if (skip(json, pos[0]) != json.length()) {
+            throw new IllegalArgumentException("Trailing characters after JSON object");
+        }
+        return fields;
+    }
+
+    /**
+     * Parses a JSON string.
+     * @param json The JSON text.
+     * @param pos  The position, which is moved past the string.
+     * @return     The value of the string.
+     * @throws IllegalArgumentException - If there is no valid string.
+     */
+    private static String parseString(String json, int[] pos) {
+        expect(json, pos, '"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            if (pos[0] >= json.length()) {
+                throw new IllegalArgumentException("Unterminated string");
+            }
+            char c = json.charAt(pos[0]++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (pos[0] >= json.length()) {
+                throw new IllegalArgumentException("Unterminated string");
+            }
+            char e = json.charAt(pos[0]++);
+            switch (e) {
+                case 'n': value.append('\n'); break;
+                case 't': value.append('\t'); break;
+                case 'r': value.append('\r'); break;
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'u':
+                    if (pos[0] + 4 > json.length()) {
+                        throw new IllegalArgumentException("Invalid escape");
+                    }
+                    value.append((char) Integer.parseInt(json.substring(pos[0], pos[0] + 4), 16));
+                    pos[0] += 4;
+                    break;
+                default:  value.append(e);
+            }
+        }
+    }
+
+    /**
+     * Skips whitespace, then consumes an expected character.
+     * @param json     The JSON text.
+     * @param pos      The position, which is moved past the character.
+     * @param expected The character.
+     * @throws IllegalArgumentException - If another character is found.
+     */
+    private static void expect(String json, int[] pos, char expected) {
+        if (peek(json, pos) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at " + pos[0]);
+        }
+        pos[0]++;
+    }
+
+    /**
+     * Skips whitespace, and returns the next character.
+     * @param json The JSON text.
+     * @param pos  The position, which is moved past the whitespace.
+     * @return     The next character, or 0 at the end of the text.
+     */
+    private static char peek(String json, int[] pos) {
+        pos[0] = skip(json, pos[0]);
+        return pos[0] < json.length() ? json.charAt(pos[0]) : 0;
+    }
+
+    /**
+     * Returns the position of the first character that is not whitespace.
+     * @param json The JSON text.
+     * @param pos  The position to start at.
+     * @return     The position.
+     */
+    private static int skip(String json, int pos) {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+}
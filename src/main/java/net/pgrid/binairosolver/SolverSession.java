@@ -0,0 +1,361 @@
+package net.pgrid.binairosolver;
+
+import net.pgrid.binairosolver.Game.State;
+
+/**
+ * Follows the moves of a player on one puzzle, and keeps the board
+ * propagated after every move.
+ *
+ * A move only propagates the cell it sets, and taking a move back undoes
+ * the propagation since that move and replays the moves after it. Neither
+ * searches the board, so a move costs microseconds instead of a full solve.
+ * Every move returns the cells whose state it changed, and whether the
+ * board has become contradictory:
+ * <pre>
+ * SolverSession session = new SolverSession(solver, puzzle);
+ * SolverSession.Update update = session.assign(3, 4, State.ONE);
+ * if (update.isContradiction()) {
+ *     // Show an error in update.getConflictRow() or getConflictColumn().
+ * }
+ * for (int i = 0; i &lt; update.size(); i++) {
+ *     // Show update.getValue(i) as a hint at update.getX(i), update.getY(i).
+ * }
+ * </pre>
+ * The board only holds the cells that the rules force. A cell the rules
+ * cannot decide stays empty, even if the puzzle has a unique solution. With
+ * {@code Inference.PROBING}, the board is not probed.
+ *
+ * Once a move leads to a contradiction, the board stays at the state before
+ * that move, and later moves are only recorded, until the move is taken
+ * back. A SolverSession is not thread-safe.
+ * @author Patrick Kramer
+ */
+public final class SolverSession {
+
+    /**
+     * The cells changed by a move.
+     *
+     * The Update is reused by the next move of the SolverSession.
+     */
+    public static final class Update {
+
+        private final int width;
+        private final int[] cells;
+        private final State[] values;
+        private int size;
+        private int conflictRow = -1, conflictColumn = -1;
+
+        /**
+         * Creates an Update for a board.
+         * @param width The width of the board.
+         * @param cells The number of cells of the board.
+         */
+        private Update(int width, int cells) {
+            this.width  = width;
+            this.cells  = new int[cells];
+            this.values = new State[cells];
+        }
+
+        /**
+         * Returns the number of cells that the move changed, not counting
+         * the cell of the move itself.
+         * @return The number of changed cells.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the x coordinate of a changed cell.
+         * @param i The index of the change, less than {@code size()}.
+         * @return  The x coordinate.
+         */
+        public int getX(int i) {
+            return cells[i] % width;
+        }
+
+        /**
+         * Returns the y coordinate of a changed cell.
+         * @param i The index of the change, less than {@code size()}.
+         * @return  The y coordinate.
+         */
+        public int getY(int i) {
+            return cells[i] / width;
+        }
+
+        /**
+         * Returns the new state of a changed cell.
+         * @param i The index of the change, less than {@code size()}.
+         * @return  The value the cell is now forced to, or {@code EMPTY} if
+         *          it no longer is.
+         */
+        public State getValue(int i) {
+            return values[i];
+        }
+
+        /**
+         * Returns whether the board is contradictory after the move.
+         * @return True if the moves and clues cannot all be right.
+         */
+        public boolean isContradiction() {
+            return conflictRow >= 0 || conflictColumn >= 0;
+        }
+
+        /**
+         * Returns the row in which the contradiction was found.
+         *
+         * If both the row and the column are set, the move set a cell to
+         * the opposite of the value the rules had forced.
+         * @return The y coordinate of the row, or -1 if the contradiction
+         *         was found in a column, or there is none.
+         */
+        public int getConflictRow() {
+            return conflictRow;
+        }
+
+        /**
+         * Returns the column in which the contradiction was found.
+         * @return The x coordinate of the column, or -1 if the
+         *         contradiction was found in a row, or there is none.
+         * @see #getConflictRow()
+         */
+        public int getConflictColumn() {
+            return conflictColumn;
+        }
+
+        /**
+         * Records a change of a cell.
+         * @param cell  The cell index, {@code y * width + x}.
+         * @param value The new state of the cell.
+         */
+        private void add(int cell, State value) {
+            cells[size]  = cell;
+            values[size] = value;
+            size++;
+        }
+    }
+
+    private final Propagator propagator;
+    private final Game puzzle;
+    private final Update update;
+    private final long[] before;
+    // The moves in the order they were made, encoded as cell << 1 | value,
+    // and the Trail mark taken before each of them was propagated.
+    private final int[] moves, marks;
+    private int size;
+    // The index of the move that led to a contradiction, or -1.
+    private int failed = -1;
+    // Whether the clues themselves are contradictory.
+    private boolean broken;
+    private int conflictRow = -1, conflictColumn = -1;
+
+    /**
+     * Creates a SolverSession, and propagates the puzzle.
+     *
+     * The argument Game instance is not modified.
+     * @param solver The Solver whose Inference level is used, not null.
+     * @param puzzle The puzzle, not null.
+     */
+    public SolverSession(Solver solver, Game puzzle) {
+        assert solver != null && puzzle != null;
+        int cells = puzzle.getWidth() * puzzle.getHeight();
+        this.puzzle     = puzzle.copy();
+        this.propagator = new Propagator(puzzle.copy(), solver.getInference());
+        this.update     = new Update(puzzle.getWidth(), cells);
+        this.before     = new long[propagator.game().bits().length];
+        this.moves      = new int[cells];
+        this.marks      = new int[cells];
+        propagator.enqueueAll();
+        if (!propagator.propagate()) {
+            conflict(propagator.failedLine());
+            broken = true;
+        }
+    }
+
+    /**
+     * Sets an empty cell of the puzzle, and propagates it.
+     * @param x     The x coordinate.
+     * @param y     The y coordinate.
+     * @param value The value, {@code ZERO} or {@code ONE}.
+     * @return      The cells changed by the move.
+     * @throws IllegalArgumentException - If the cell is not on the board,
+     *         the value is {@code EMPTY}, or the cell holds a clue or was
+     *         already set by a move.
+     */
+    public Update assign(int x, int y, State value) {
+        checkCell(x, y);
+        if (value == null || value == State.EMPTY) {
+            throw new IllegalArgumentException("Not a value: " + value);
+        }
+        if (puzzle.get(x, y) != State.EMPTY) {
+            throw new IllegalArgumentException("Cell (" + x + "," + y + ") holds a clue");
+        }
+        if (find(x, y) >= 0) {
+            throw new IllegalArgumentException("Cell (" + x + "," + y + ") was already set");
+        }
+        begin();
+        moves[size++] = BranchingStrategy.choice(puzzle, x, y, value);
+        if (!broken && failed < 0) {
+            apply(size - 1);
+        }
+        return end(x, y);
+    }
+
+    /**
+     * Takes back the move that set a cell.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return  The cells changed by taking the move back.
+     * @throws IllegalArgumentException - If the cell is not on the board, or
+     *         no move set the cell.
+     */
+    public Update retract(int x, int y) {
+        checkCell(x, y);
+        int k = find(x, y);
+        if (k < 0) {
+            throw new IllegalArgumentException("Cell (" + x + "," + y + ") was not set");
+        }
+        begin();
+        int mark = marks[k];
+        System.arraycopy(moves, k + 1, moves, k, size - k - 1);
+        size--;
+        if (!broken && (failed < 0 || k <= failed)) {
+            // The move was propagated, so the board is rolled back to before 
+            // it, and the later moves are propagated again.
+            propagator.undo(mark);
+            failed = -1;
+            conflictRow = conflictColumn = -1;
+            for (int i = k; i < size && failed < 0; i++) {
+                apply(i);
+            }
+        }
+        return end(x, y);
+    }
+
+    /**
+     * Returns the propagated board: the clues, the moves and the cells they
+     * force.
+     *
+     * The board belongs to this session and must not be modified. After a
+     * contradiction, it shows the state before the move that caused it.
+     * @return The board.
+     */
+    public Game getBoard() {
+        return propagator.game();
+    }
+
+    /**
+     * Returns whether the board is contradictory.
+     * @return True if the moves and clues cannot all be right.
+     */
+    public boolean isContradiction() {
+        return broken || failed >= 0;
+    }
+
+    /**
+     * Returns the number of moves that have not been taken back.
+     * @return The number of moves.
+     */
+    public int getMoves() {
+        return size;
+    }
+
+    /**
+     * Checks that a cell is on the board.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @throws IllegalArgumentException - If the cell is not on the board.
+     */
+    private void checkCell(int x, int y) {
+        if (!puzzle.isValidCell(x, y)) {
+            throw new IllegalArgumentException("Cell (" + x + "," + y + ") is not on the board");
+        }
+    }
+
+    /**
+     * Finds the move that set a cell.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return  The index of the move, or -1 if no move set the cell.
+     */
+    private int find(int x, int y) {
+        int cell = y * puzzle.getWidth() + x;
+        for (int i = 0; i < size; i++) {
+            if (moves[i] >>> 1 == cell) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Propagates a move on the board of the moves before it. On a
+     * contradiction the board is rolled back to before the move.
+     * @param i The index of the move.
+     */
+    private void apply(int i) {
+        Game game = propagator.game();
+        int cell = moves[i] >>> 1, x = cell % game.getWidth(), y = cell / game.getWidth();
+        State value = (moves[i] & 1) != 0 ? State.ONE : State.ZERO;
+        marks[i] = propagator.mark();
+        State current = game.get(x, y);
+        if (current == State.EMPTY) {
+            propagator.assign(x, y, value);
+            if (!propagator.propagate()) {
+                conflict(propagator.failedLine());
+                propagator.undo(marks[i]);
+                failed = i;
+            }
+        } else if (current != value) {
+            conflictRow    = y;
+            conflictColumn = x;
+            failed = i;
+        }
+    }
+
+    /**
+     * Records the line in which propagation found a contradiction.
+     * @param line The line index.
+     */
+    private void conflict(int line) {
+        int height = propagator.game().getHeight();
+        conflictRow    = line < height ? line : -1;
+        conflictColumn = line < height ? -1 : line - height;
+    }
+
+    /**
+     * Remembers the board before a move.
+     */
+    private void begin() {
+        long[] bits = propagator.game().bits();
+        System.arraycopy(bits, 0, before, 0, bits.length);
+    }
+
+    /**
+     * Fills the Update with the cells that changed since {@code begin}.
+     * @param x The x coordinate of the move, which is left out.
+     * @param y The y coordinate of the move.
+     * @return  The Update.
+     */
+    private Update end(int x, int y) {
+        Game game = propagator.game();
+        long[] bits = game.bits();
+        int words = game.words(), width = game.getWidth(), moved = y * width + x;
+        update.size = 0;
+        for (int row = 0; row < game.getHeight(); row++) {
+            int off = game.offset(row);
+            for (int w = 0; w < words; w++) {
+                long changed = (bits[off + w] ^ before[off + w]) | (bits[off + words + w] ^ before[off + words + w]);
+                for (; changed != 0; changed &= changed - 1) {
+                    int cell = row * width + (w << 6) + Long.numberOfTrailingZeros(changed);
+                    if (cell != moved) {
+                        update.add(cell, game.get(cell % width, row));
+                    }
+                }
+            }
+        }
+        update.conflictRow    = conflictRow;
+        update.conflictColumn = conflictColumn;
+        return update;
+    }
+}
@@ -0,0 +1,297 @@
+package net.pgrid.binairosolver;
+
+import java.util.Arrays;
+
+/**
+ * Counters describing the work done by a solve.
+ *
+ * The Solver only collects statistics while a {@link SolverListener} is
+ * registered, and passes them to its listeners when a solve finishes.
+ * Instances are not thread-safe; use {@code add} to combine the statistics
+ * of several solves.
+ * @author Patrick Kramer
+ */
+public final class SolverStatistics {
+
+    /**
+     * The rules that fill cells during propagation.
+     */
+    public enum Rule {
+        /**
+         * Fills the cells next to two equal values.
+         */
+        DOUBLE,
+        /**
+         * Fills the cell between two equal values.
+         */
+        GAP,
+        /**
+         * Fills a line that holds half of one value.
+         */
+        COUNT,
+        /**
+         * Fills cells on which all valid lines agree.
+         */
+        PATTERNS,
+        /**
+         * Fills a line that would otherwise duplicate a complete line.
+         */
+        UNIQUENESS,
+        /**
+         * Fills a cell whose other value propagates to a contradiction.
+         */
+        PROBING
+    }
+
+    private final long[] cells = new long[Rule.values().length];
+    private long propagations, lineVisits, probes, guesses, backtracks, contradictions, cutoffs;
+    private int maxDepth;
+    private long propagationNanos, searchNanos, totalNanos;
+
+    /**
+     * Returns the number of times the Propagator ran until its queue of
+     * dirty lines was empty, or until it found a contradiction.
+     * @return The number of propagation passes.
+     */
+    public long getPropagations() {
+        return propagations;
+    }
+
+    /**
+     * Returns the number of times a row or column was examined by the
+     * Propagator.
+     * @return The number of line visits.
+     */
+    public long getLineVisits() {
+        return lineVisits;
+    }
+
+    /**
+     * Returns the number of cell values tried by probing, with 
+     * {@code Inference.PROBING}.
+     * @return The number of probes.
+     */
+    public long getProbes() {
+        return probes;
+    }
+
+    /**
+     * Returns the number of cells filled by one of the rules.
+     *
+     * A cell that several rules would fill at once is counted for the
+     * first of them in declaration order.
+     * @param rule The rule, not null.
+     * @return     The number of cells.
+     */
+    public long getCells(Rule rule) {
+        return cells[rule.ordinal()];
+    }
+
+    /**
+     * Returns the number of guesses made, counting both values of a cell
+     * when the first value failed.
+     * @return The number of guesses.
+     */
+    public long getGuesses() {
+        return guesses;
+    }
+
+    /**
+     * Returns the number of times a guess was rolled back.
+     * @return The number of backtracks.
+     */
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    /**
+     * Returns the number of contradictions found while propagating.
+     * @return The number of contradictions.
+     */
+    public long getContradictions() {
+        return contradictions;
+    }
+
+    /**
+     * Returns the number of times the search gave up on a board because the 
+     * TranspositionTable held it as unsolvable.
+     * @return The number of cutoffs.
+     */
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * Returns the largest number of nested guesses.
+     * @return The maximum search depth.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the wall time spent propagating the puzzle before the first
+     * guess.
+     * @return The time in nanoseconds.
+     */
+    public long getPropagationNanos() {
+        return propagationNanos;
+    }
+
+    /**
+     * Returns the wall time spent guessing, including the propagation done
+     * after each guess.
+     * @return The time in nanoseconds.
+     */
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    /**
+     * Returns the wall time of the whole solve.
+     * @return The time in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Adds the counters of other statistics to these. The maximum depth
+     * becomes the larger of both.
+     * @param other The other statistics, not null.
+     */
+    public void add(SolverStatistics other) {
+        for (int i=0; i<cells.length; i++) {
+            cells[i] += other.cells[i];
+        }
+        propagations     += other.propagations;
+        lineVisits       += other.lineVisits;
+        probes           += other.probes;
+        guesses          += other.guesses;
+        backtracks       += other.backtracks;
+        contradictions   += other.contradictions;
+        cutoffs          += other.cutoffs;
+        maxDepth          = Math.max(maxDepth, other.maxDepth);
+        propagationNanos += other.propagationNanos;
+        searchNanos      += other.searchNanos;
+        totalNanos       += other.totalNanos;
+    }
+
+    /**
+     * Sets all counters back to zero.
+     */
+    void clear() {
+        Arrays.fill(cells, 0);
+        propagations     = 0;
+        lineVisits       = 0;
+        probes           = 0;
+        guesses          = 0;
+        backtracks       = 0;
+        contradictions   = 0;
+        cutoffs          = 0;
+        maxDepth         = 0;
+        propagationNanos = 0;
+        searchNanos      = 0;
+        totalNanos       = 0;
+    }
+
+    /**
+     * Counts a propagation pass.
+     */
+    void propagation() {
+        propagations++;
+    }
+
+    /**
+     * Counts a line visit.
+     */
+    void lineVisit() {
+        lineVisits++;
+    }
+
+    /**
+     * Counts cells filled by a rule.
+     * @param rule  The rule.
+     * @param count The number of cells.
+     */
+    void filled(Rule rule, int count) {
+        cells[rule.ordinal()] += count;
+    }
+
+    /**
+     * Counts a probe of a cell value.
+     */
+    void probe() {
+        probes++;
+    }
+
+    /**
+     * Counts a guess at the given depth.
+     * @param depth The number of nested guesses, including this one.
+     */
+    void guess(int depth) {
+        guesses++;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    /**
+     * Counts a backtrack.
+     */
+    void backtrack() {
+        backtracks++;
+    }
+
+    /**
+     * Counts a contradiction.
+     */
+    void contradiction() {
+        contradictions++;
+    }
+
+    /**
+     * Counts a cutoff by the TranspositionTable.
+     */
+    void cutoff() {
+        cutoffs++;
+    }
+
+    /**
+     * Records time spent on initial propagation.
+     * @param nanos The time in nanoseconds.
+     */
+    void propagationTime(long nanos) {
+        propagationNanos += nanos;
+    }
+
+    /**
+     * Records time spent guessing.
+     * @param nanos The time in nanoseconds.
+     */
+    void searchTime(long nanos) {
+        searchNanos += nanos;
+    }
+
+    /**
+     * Records the time of a whole solve.
+     * @param nanos The time in nanoseconds.
+     */
+    void totalTime(long nanos) {
+        totalNanos += nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SolverStatistics{propagations=" + propagations
+             + ", lineVisits=" + lineVisits
+             + ", probes=" + probes
+             + ", cells=" + Arrays.toString(cells)
+             + ", guesses=" + guesses
+             + ", backtracks=" + backtracks
+             + ", contradictions=" + contradictions
+             + ", cutoffs=" + cutoffs
+             + ", maxDepth=" + maxDepth
+             + ", propagationNanos=" + propagationNanos
+             + ", searchNanos=" + searchNanos
+             + ", totalNanos=" + totalNanos + '}';
+    }
+}
@@ -0,0 +1,130 @@
+package net.pgrid.binairosolver;
+
+import java.util.Arrays;
+
+/**
+ * Records the changes made on a Game, so that they can be undone again.
+ *
+ * The search marks the Trail before making a guess, and undoes the Trail to
+ * that mark when the guess fails. This way the whole search runs on a single
+ * board instead of a copy per guess.
+ *
+ * Two kinds of changes are recorded: filled cells, which are cleared on undo,
+ * and the previous size of a line's candidate set, which is restored on undo.
+ * @author Patrick Kramer
+ */
+final class Trail {
+
+    private int[] entries;
+    private int size, cells;
+
+    /**
+     * Creates a Trail for the given Game.
+     * @param game The Game, not null.
+     */
+    Trail(Game game) {
+        // Every cell is filled at most once between a mark and its undo.
+        this.entries = new int[game.getWidth() * game.getHeight()];
+    }
+
+    /**
+     * Records a filled cell.
+     * @param cell The cell index, {@code y * width + x}.
+     */
+    void push(int cell) {
+        ensureCapacity(1);
+        entries[size++] = cell << 1;
+        cells++;
+    }
+
+    /**
+     * Records the size a line's candidate set had before it was reduced.
+     * @param line  The line index.
+     * @param count The previous size of the candidate set.
+     */
+    void pushCount(int line, int count) {
+        ensureCapacity(2);
+        entries[size++] = count;
+        entries[size++] = line << 1 | 1;
+    }
+
+    /**
+     * Forgets all recorded changes without undoing them.
+     */
+    void reset() {
+        size  = 0;
+        cells = 0;
+    }
+
+    /**
+     * Returns the current position of the Trail.
+     * @return The mark.
+     */
+    int mark() {
+        return size;
+    }
+
+    /**
+     * Returns the number of filled cells currently recorded on the Trail.
+     * @return The number of filled cells.
+     */
+    int cells() {
+        return cells;
+    }
+
+    /**
+     * Adds the cells filled after a mark, with their current values, to a 
+     * set of literals. The literal of a cell holding a value is 
+     * {@code cell << 1 | 1} for {@code ONE} and {@code cell << 1} for 
+     * {@code ZERO}.
+     * @param game     The Game holding the cells, not null.
+     * @param mark     The mark returned by {@code mark()}.
+     * @param literals The bitset of literals to add to.
+     */
+    void literals(Game game, int mark, long[] literals) {
+        long[] bits = game.bits();
+        int width = game.getWidth();
+        for (int i = size; i > mark; ) {
+            int entry = entries[--i];
+            if ((entry & 1) == 0) {
+                int cell = entry >>> 1, x = cell % width;
+                int off = game.offset(cell / width) + (x >>> 6);
+                int literal = cell << 1 | (int) (bits[off] >>> x & 1);
+                literals[literal >>> 6] |= 1L << literal;
+            } else {
+                i--;
+            }
+        }
+    }
+
+    /**
+     * Undoes all changes that were recorded after the mark was taken.
+     * @param game   The Game to clear the cells on, not null.
+     * @param counts The candidate set sizes per line, or null if no
+     *               candidate sets are used.
+     * @param mark   The mark returned by {@code mark()}.
+     */
+    void undo(Game game, int[] counts, int mark) {
+        int width = game.getWidth();
+        while (size > mark) {
+            int entry = entries[--size];
+            if ((entry & 1) == 0) {
+                int cell = entry >>> 1;
+                game.set(cell % width, cell / width, Game.State.EMPTY);
+                cells--;
+            } else {
+                counts[entry >>> 1] = entries[--size];
+            }
+        }
+    }
+
+    /**
+     * Makes room for additional entries.
+     * @param extra The number of entries that will be pushed.
+     */
+    private void ensureCapacity(int extra) {
+        if (size + extra > entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(2 * entries.length, size + extra));
+        }
+    }
+}
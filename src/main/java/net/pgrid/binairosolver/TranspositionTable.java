@@ -0,0 +1,113 @@
+package net.pgrid.binairosolver;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size table of positions that are known to have no solution.
+ *
+ * The search stores every board it has proven unsolvable, after
+ * propagation, and gives up immediately when it reaches such a board again
+ * through a different order of guesses. Positions are identified by the
+ * Zobrist hash of the board combined with its size, so a table can be
+ * shared between solves and between threads.
+ *
+ * The table is an array of two-slot buckets of single longs, accessed
+ * without locks. An entry holds the upper 48 bits of the position's hash
+ * and the number of empty cells of the position, which approximates the
+ * work its proof took. The first slot of a bucket keeps the entry with the
+ * most empty cells, and the second slot always takes the newest entry that
+ * does not replace the first. Concurrent stores may overwrite each other,
+ * which only loses entries. A hash collision can cut a branch that has a
+ * solution; with 48 verified bits this is negligible for tables of
+ * practical size.
+ * @author Patrick Kramer
+ * @see Solver#setTranspositionTable(TranspositionTable)
+ */
+public final class TranspositionTable {
+
+    /**
+     * The bits of an entry holding the number of empty cells.
+     */
+    private static final long EMPTY_MASK = 0xFFFFL;
+
+    private final AtomicLongArray slots;
+    private final int buckets;
+
+    /**
+     * Creates a TranspositionTable using at most the given amount of memory.
+     * @param bytes The memory budget in bytes, at least 16. The number of
+     *              entries is rounded down to a power of two.
+     * @throws IllegalArgumentException - If the budget is less than 16 bytes
+     *                                    or more than 16 GB.
+     */
+    public TranspositionTable(long bytes) {
+        if (bytes < 16 || bytes > (1L << 34)) {
+            throw new IllegalArgumentException("Memory budget out of range: " + bytes);
+        }
+        this.buckets = (int) Long.highestOneBit(bytes / 16);
+        this.slots   = new AtomicLongArray(2 * buckets);
+    }
+
+    /**
+     * Returns the number of entries the table can hold.
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, 0L);
+        }
+    }
+
+    /**
+     * Returns the key identifying the current position of a board.
+     * @param game The board.
+     * @return     The key.
+     */
+    static long key(Game game) {
+        return game.zobrist() ^ Game.zobrist(-1 - game.getWidth(), Game.State.ONE)
+                              ^ Game.zobrist(-1 - game.getHeight(), Game.State.ZERO);
+    }
+
+    /**
+     * Returns whether a position is stored as unsolvable.
+     * @param key The key of the position.
+     * @return    True if the position is stored.
+     */
+    boolean contains(long key) {
+        int slot = 2 * ((int) key & (buckets - 1));
+        long tag = key & ~EMPTY_MASK;
+        if (tag == 0) {
+            // Indistinguishable from an empty slot, so never stored.
+            return false;
+        }
+        return (slots.get(slot) & ~EMPTY_MASK) == tag
+            || (slots.get(slot + 1) & ~EMPTY_MASK) == tag;
+    }
+
+    /**
+     * Stores a position as unsolvable.
+     * @param key   The key of the position.
+     * @param empty The number of empty cells of the position.
+     */
+    void store(long key, int empty) {
+        int slot = 2 * ((int) key & (buckets - 1));
+        long tag = key & ~EMPTY_MASK;
+        if (tag == 0) {
+            return;
+        }
+        long entry = tag | Math.min(empty, EMPTY_MASK);
+        long first = slots.get(slot);
+        if (first == 0 || (first & ~EMPTY_MASK) == tag || (first & EMPTY_MASK) <= (entry & EMPTY_MASK)) {
+            slots.set(slot, entry);
+        } else {
+            slots.set(slot + 1, entry);
+        }
+    }
+}
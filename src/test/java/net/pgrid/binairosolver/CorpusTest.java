@@ -0,0 +1,105 @@
+package net.pgrid.binairosolver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.pgrid.binairosolver.Game.State;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Unit test for the CorpusReader and CorpusWriter classes.
+ * @author Patrick Kramer
+ */
+public class CorpusTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Reads all puzzles from a corpus file.
+     * @param path      The file.
+     * @param chunkSize The number of bytes mapped at once.
+     * @return          The puzzles.
+     * @throws IOException - If reading fails.
+     */
+    private static List<Game> read(Path path, int chunkSize) throws IOException {
+        List<Game> games = new ArrayList<>();
+        try (CorpusReader reader = new CorpusReader(path, chunkSize)) {
+            reader.forEachRemaining(games::add);
+        }
+        return games;
+    }
+
+    /**
+     * Tests if puzzles written by a CorpusWriter are read back unchanged.
+     * @throws IOException - If reading or writing fails.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<Game> games = new ArrayList<>();
+        games.add(SolverTest.loadSample("binairo1.txt"));
+        games.add(SolverTest.loadSample("binairo2.txt"));
+        games.add(new Solver().solve(SolverTest.loadSample("binairo1.txt")));
+        Game large = new Game(100, 10);
+        large.set(99, 9, State.ONE);
+        large.set(64, 0, State.ZERO);
+        games.add(large);
+
+        Path path = folder.newFile("games.corpus").toPath();
+        try (CorpusWriter writer = new CorpusWriter(path)) {
+            for (Game game : games) {
+                writer.write(game);
+            }
+        }
+        assertEquals(games, read(path, CorpusReader.CHUNK_SIZE));
+        // Small chunks make most records span two mappings.
+        assertEquals(games, read(path, 1024));
+    }
+
+    /**
+     * Tests if comments, empty lines, CRLF line endings and a missing final
+     * line break are accepted.
+     * @throws IOException - If reading fails.
+     */
+    @Test
+    public void testFormat() throws IOException {
+        Path path = folder.newFile("format.corpus").toPath();
+        Files.write(path, "# comment\r\n\r\n2x2:01..\r\n\n4x2:1..00..1".getBytes(US_ASCII));
+        List<Game> games = read(path, 16);
+        assertEquals(Arrays.asList(
+                GameTest.createGame("01", "  "),
+                GameTest.createGame("1  0", "0  1")), games);
+    }
+
+    /**
+     * Tests if an empty file holds no puzzles.
+     * @throws IOException - If reading fails.
+     */
+    @Test
+    public void testEmpty() throws IOException {
+        Path path = folder.newFile("empty.corpus").toPath();
+        try (CorpusReader reader = new CorpusReader(path)) {
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    /**
+     * Tests if a line with the wrong number of cells is rejected.
+     * @throws IOException - If reading fails.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformed() throws IOException {
+        Path path = folder.newFile("bad.corpus").toPath();
+        Files.write(path, "2x2:01.\n".getBytes(US_ASCII));
+        read(path, CorpusReader.CHUNK_SIZE);
+    }
+}
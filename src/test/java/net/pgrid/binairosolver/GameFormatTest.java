@@ -0,0 +1,150 @@
+package net.pgrid.binairosolver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static net.pgrid.binairosolver.GameTest.createGame;
+import static net.pgrid.binairosolver.SolverTest.loadSample;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit test for the GameFormat class.
+ * @author Patrick Kramer
+ */
+public class GameFormatTest {
+
+    /**
+     * Tests if boards in the grid format are read like {@code Game.create}.
+     * @throws IOException - If a sample could not be read.
+     */
+    @Test
+    public void testParse() throws IOException {
+        Game sample = loadSample("binairo1.txt");
+        assertEquals(sample, GameFormat.parse(sample.toString()));
+        assertEquals(sample, GameFormat.parse(sample.toString().getBytes(US_ASCII), null));
+        // Short rows end in empty cells, and CRLF line breaks are accepted.
+        assertEquals(createGame("1  0", "0 ", "  1"), GameFormat.parse("\r\n1  0\r\n0\r\n  1\r\n"));
+    }
+
+    /**
+     * Tests if a board of the right size is reused, and cleared first.
+     */
+    @Test
+    public void testParseReusesBoard() {
+        Game board = GameFormat.parse("11\n00\n");
+        assertSame(board, GameFormat.parse("1 \n 0\n", board));
+        assertEquals(createGame("1 ", " 0"), board);
+        assertEquals(createGame("1 ", " 0").zobrist(), board.zobrist());
+        assertNotSame(board, GameFormat.parse("1  \n 0 \n", board));
+    }
+
+    /**
+     * Tests if consecutive puzzles are read from a buffer.
+     */
+    @Test
+    public void testParseBuffer() {
+        ByteBuffer buffer = ByteBuffer.wrap("\n10\n01\n\n\n0 1\n\n".getBytes(US_ASCII));
+        assertEquals(createGame("10", "01"), GameFormat.parse(buffer, null));
+        assertEquals(createGame("0 1"), GameFormat.parse(buffer, null));
+        assertNull(GameFormat.parse(buffer, null));
+        assertEquals(0, buffer.remaining());
+    }
+
+    /**
+     * Tests if unknown symbols are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseMalformed() {
+        GameFormat.parse("10\n0x\n");
+    }
+
+    /**
+     * Tests if an empty text is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseEmpty() {
+        GameFormat.parse("\n\n");
+    }
+
+    /**
+     * Tests if written boards match {@code toString} and are read back
+     * unchanged.
+     * @throws IOException - If a sample could not be read.
+     */
+    @Test
+    public void testWrite() throws IOException {
+        Game sample = loadSample("binairo2.txt");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GameFormat.write(sample, out);
+        assertArrayEquals(sample.toString().getBytes(US_ASCII), out.toByteArray());
+
+        ByteBuffer buffer = ByteBuffer.allocate(GameFormat.length(sample));
+        GameFormat.write(sample, buffer);
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        assertEquals(sample, GameFormat.parse(buffer, null));
+
+        Game large = new Game(130, 70);
+        large.set(129, 69, Game.State.ONE);
+        out.reset();
+        GameFormat.write(large, out);
+        assertEquals(large, GameFormat.parse(out.toByteArray(), null));
+    }
+
+    /**
+     * Tests if writing into a full buffer writes nothing.
+     */
+    @Test
+    public void testWriteOverflow() {
+        ByteBuffer buffer = ByteBuffer.allocate(5);
+        try {
+            GameFormat.write(createGame("10", "01"), buffer);
+        } catch (BufferOverflowException ex) {
+            assertEquals(0, buffer.position());
+            return;
+        }
+        throw new AssertionError("Expected BufferOverflowException");
+    }
+
+    /**
+     * Tests the line format.
+     */
+    @Test
+    public void testLine() {
+        Game game = createGame("1  0", "0  1");
+        assertEquals("4x2:1..00..1", GameFormat.appendLine(game, new StringBuilder()).toString());
+        assertEquals(game, GameFormat.parseLine("4x2:1..00..1", null));
+
+        ByteBuffer buffer = ByteBuffer.allocate(2 * GameFormat.lineLength(game) + 16);
+        buffer.put("# comment\r\n\n".getBytes(US_ASCII));
+        GameFormat.writeLine(game, buffer);
+        GameFormat.writeLine(game, buffer);
+        buffer.flip();
+        Game board = GameFormat.parseLine(buffer, null);
+        assertEquals(game, board);
+        assertSame(board, GameFormat.parseLine(buffer, board));
+        assertNull(GameFormat.parseLine(buffer, board));
+
+        Game large = new Game(130, 70);
+        large.set(0, 0, Game.State.ZERO);
+        large.set(64, 3, Game.State.ONE);
+        large.set(129, 69, Game.State.ONE);
+        assertEquals(large, GameFormat.parseLine(GameFormat.appendLine(large, new StringBuilder()), null));
+    }
+
+    /**
+     * Tests if a line with the wrong number of cells is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testLineMalformed() {
+        GameFormat.parseLine("2x2:01.", null);
+    }
+}
@@ -1,6 +1,7 @@
 package net.pgrid.binairosolver;
 
 import java.util.Arrays;
+import java.util.List;
 import net.pgrid.binairosolver.Game.State;
 import org.junit.Test;
 
@@ -118,6 +119,46 @@ public class GameTest {
         assertNotEquals(game, copy);
     }
     
+    /**
+     * Tests if the row and column bitsets stay consistent on boards that 
+     * need more than one word per line.
+     */
+    @Test
+    public void testGetSetLargeBoard() {
+        Game game = new Game(70, 130);
+        game.set(69, 129, State.ONE);
+        game.set(64, 65, State.ZERO);
+        assertEquals(State.ONE,   game.get(69, 129));
+        assertEquals(State.ZERO,  game.get(64, 65));
+        assertEquals(State.EMPTY, game.get(5, 129));
+        
+        game.set(69, 129, State.EMPTY);
+        assertEquals(State.EMPTY, game.get(69, 129));
+        assertEquals(new Game(70, 130).toString().length(), game.toString().length());
+    }
+    
+    /**
+     * Tests if Games with equal cells but different dimensions are not equal.
+     */
+    @Test
+    public void testEqualsDifferentSize() {
+        assertNotEquals(new Game(2, 4), new Game(4, 2));
+        assertEquals(new Game(3, 5), new Game(3, 5));
+        assertEquals(new Game(3, 5).hashCode(), new Game(3, 5).hashCode());
+    }
+    
+    /**
+     * Tests if {@code createAll} splits the puzzles at empty lines.
+     */
+    @Test
+    public void testCreateAll() {
+        List<Game> games = Game.createAll(Arrays.asList(
+                "01", "10", "", "", "1 ", " 1", "0 ", " 0", ""));
+        assertEquals(2, games.size());
+        assertEquals(createGame("01", "10"), games.get(0));
+        assertEquals(4, games.get(1).getHeight());
+    }
+    
     /**
      * Tests if the {@code toString()} method formats the Game as expected.
      */
@@ -133,4 +174,42 @@ public class GameTest {
         String actual = game.toString();
         assertEquals(expected, actual);
     }
+
+    /**
+     * Tests if the Zobrist hash depends only on the filled cells.
+     */
+    @Test
+    public void testZobristHash() {
+        Game a = new Game(6, 6), b = new Game(6, 6);
+        assertEquals(0, a.zobrist());
+        a.set(1, 2, State.ONE);
+        a.set(3, 4, State.ZERO);
+        b.set(3, 4, State.ONE);
+        b.set(1, 2, State.ONE);
+        assertNotEquals(a.zobrist(), b.zobrist());
+        b.set(3, 4, State.ZERO);
+        assertEquals(a.zobrist(), b.zobrist());
+        assertEquals(a.zobrist(), a.copy().zobrist());
+        a.set(1, 2, State.EMPTY);
+        a.set(3, 4, State.EMPTY);
+        assertEquals(0, a.zobrist());
+    }
+
+    /**
+     * Tests if reading a cell past the width is rejected, instead of reading 
+     * the padding of the line.
+     */
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testGetOutOfRange() {
+        new Game(6, 6).get(6, 0);
+    }
+
+    /**
+     * Tests if setting a cell past the width is rejected, instead of writing 
+     * another line.
+     */
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testSetOutOfRange() {
+        new Game(6, 6).set(70, 0, State.ONE);
+    }
 }
@@ -0,0 +1,115 @@
+package net.pgrid.binairosolver;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import net.pgrid.binairosolver.Game.State;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for the Generator class.
+ * @author Patrick Kramer
+ */
+public class GeneratorTest {
+
+    /**
+     * Checks that a puzzle has exactly one solution, and that it is a
+     * completion of the puzzle.
+     * @param puzzle The puzzle.
+     * @throws SolverException - If the puzzle cannot be solved.
+     */
+    private static void assertUnique(Game puzzle) throws SolverException {
+        SolveResult result = new Solver().countSolutions(puzzle, 2);
+        assertEquals(SolveResult.Status.UNIQUE, result.getStatus());
+        Game solution = result.getSolution();
+        for (int y=0; y<puzzle.getHeight(); y++) {
+            for (int x=0; x<puzzle.getWidth(); x++) {
+                if (puzzle.get(x, y) != State.EMPTY) {
+                    assertEquals(puzzle.get(x, y), solution.get(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGrid() throws SolverException {
+        Random random = new Random(1);
+        for (int size : new int[] {4, 8, 14, 20, 24}) {
+            Generator generator = new Generator(size, size + 2);
+            for (int i=0; i<3; i++) {
+                Game grid = generator.grid(random);
+                assertTrue(grid.isComplete());
+                assertUnique(grid);
+            }
+        }
+    }
+
+    @Test
+    public void testGenerate() throws SolverException {
+        Random random = new Random(2);
+        Generator generator = new Generator(10, 10);
+        for (Difficulty difficulty : Difficulty.values()) {
+            for (int i=0; i<3; i++) {
+                Game puzzle = generator.generate(difficulty, random);
+                assertEquals(difficulty, generator.rate(puzzle));
+                assertUnique(puzzle);
+            }
+        }
+    }
+
+    @Test
+    public void testMinimal() throws SolverException {
+        Game puzzle = new Generator(8, 8).generate(Difficulty.HARD, new Random(3));
+        for (int y=0; y<puzzle.getHeight(); y++) {
+            for (int x=0; x<puzzle.getWidth(); x++) {
+                State value = puzzle.get(x, y);
+                if (value != State.EMPTY) {
+                    Game reduced = puzzle.copy();
+                    reduced.set(x, y, State.EMPTY);
+                    SolveResult result = new Solver().countSolutions(reduced, 2);
+                    assertEquals(SolveResult.Status.MULTIPLE, result.getStatus());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParallel() throws SolverException {
+        Generator generator = new Generator(12, 12);
+        List<Game> puzzles = generator.generate(Difficulty.MEDIUM, 16, 4)
+                .collect(Collectors.toList());
+        assertEquals(16, puzzles.size());
+        for (Game puzzle : puzzles) {
+            assertEquals(Difficulty.MEDIUM, generator.rate(puzzle));
+            assertUnique(puzzle);
+        }
+        assertEquals(puzzles, generator.generate(Difficulty.MEDIUM, 16, 4)
+                .collect(Collectors.toList()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOddSize() {
+        new Generator(7, 8);
+    }
+
+    /**
+     * Tests if a board with more rows than there are valid rows of its 
+     * width is rejected, instead of sampled forever.
+     */
+    @Test(expected = IllegalArgumentException.class, timeout = 10_000)
+    public void testTooFewValidRows() {
+        new Generator(4, 8);
+    }
+
+    /**
+     * Tests if a board with more columns than there are valid columns of its 
+     * height is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class, timeout = 10_000)
+    public void testTooFewValidColumns() {
+        new Generator(70, 4);
+    }
+}
@@ -0,0 +1,104 @@
+package net.pgrid.binairosolver;
+
+import net.pgrid.binairosolver.Game.State;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for the SatSolver and CnfEncoding classes.
+ * @author Patrick Kramer
+ */
+public class SatSolverTest {
+
+    /**
+     * Tests if a satisfiable formula yields a model that satisfies it.
+     */
+    @Test
+    public void testModel() {
+        SatSolver sat = new SatSolver();
+        for (int i = 0; i < 4; i++) {
+            sat.newVariable();
+        }
+        int[][] formula = {{1, 2}, {-1, 3}, {-3, -2}, {-2, 4}, {-4, -1, 2}};
+        for (int[] clause : formula) {
+            assertTrue(sat.addClause(clause));
+        }
+        assertTrue(sat.solve());
+        for (int[] clause : formula) {
+            boolean satisfied = false;
+            for (int literal : clause) {
+                satisfied |= sat.value(Math.abs(literal)) == literal > 0;
+            }
+            assertTrue(satisfied);
+        }
+    }
+
+    /**
+     * Tests if six pigeons do not fit in five holes, which takes learning
+     * over many conflicts.
+     */
+    @Test
+    public void testPigeonhole() {
+        int pigeons = 6, holes = 5;
+        SatSolver sat = new SatSolver();
+        for (int i = 0; i < pigeons * holes; i++) {
+            sat.newVariable();
+        }
+        for (int p = 0; p < pigeons; p++) {
+            int[] clause = new int[holes];
+            for (int h = 0; h < holes; h++) {
+                clause[h] = p * holes + h + 1;
+            }
+            sat.addClause(clause);
+        }
+        for (int h = 0; h < holes; h++) {
+            for (int p = 0; p < pigeons; p++) {
+                for (int q = p + 1; q < pigeons; q++) {
+                    sat.addClause(-(p * holes + h + 1), -(q * holes + h + 1));
+                }
+            }
+        }
+        assertFalse(sat.solve());
+        assertTrue(sat.conflicts() > 0);
+        assertFalse(sat.addClause(1));
+    }
+
+    /**
+     * Tests if clauses added after a solve are taken into account, by
+     * blocking every model of a 4x4 board in turn.
+     */
+    @Test
+    public void testEnumerateBoards() {
+        Game game = new Game(4, 4);
+        CnfEncoding encoding = new CnfEncoding(game);
+        int count = 0;
+        while (encoding.solve()) {
+            count++;
+            int[] blocking = new int[16];
+            for (int y = 0; y < 4; y++) {
+                for (int x = 0; x < 4; x++) {
+                    int variable = y * 4 + x + 1;
+                    blocking[variable - 1] = game.get(x, y) == State.ONE ? -variable : variable;
+                }
+            }
+            encoding.solver().addClause(blocking);
+        }
+        // There are 72 valid 4x4 boards.
+        assertEquals(72, count);
+        assertTrue(encoding.pairs() > 0);
+    }
+
+    /**
+     * Tests the first elements of the Luby sequence.
+     */
+    @Test
+    public void testLuby() {
+        int[] expected = {1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, 1};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], SatSolver.luby(i + 1));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package net.pgrid.binairosolver;
+
+import java.io.IOException;
+import net.pgrid.binairosolver.Game.State;
+import org.junit.Test;
+
+import static net.pgrid.binairosolver.GameTest.createGame;
+import static net.pgrid.binairosolver.SolverTest.loadSample;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit test for the SolutionCache class.
+ * @author Patrick Kramer
+ */
+public class SolutionCacheTest {
+
+    /**
+     * Rotates a board a quarter turn clockwise.
+     * @param game The board.
+     * @return     The rotated board.
+     */
+    private static Game rotate(Game game) {
+        Game result = new Game(game.getHeight(), game.getWidth());
+        for (int y=0; y<game.getHeight(); y++) {
+            for (int x=0; x<game.getWidth(); x++) {
+                result.set(game.getHeight() - 1 - y, x, game.get(x, y));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Mirrors a board horizontally and swaps its ones and zeros.
+     * @param game The board.
+     * @return     The mirrored board.
+     */
+    private static Game mirrorInverted(Game game) {
+        Game result = new Game(game.getWidth(), game.getHeight());
+        for (int y=0; y<game.getHeight(); y++) {
+            for (int x=0; x<game.getWidth(); x++) {
+                State value = game.get(x, y);
+                result.set(game.getWidth() - 1 - x, y, value == State.EMPTY ? value
+                        : value == State.ONE ? State.ZERO : State.ONE);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tests if symmetric variants of a solved puzzle are found in the cache,
+     * with their solutions transformed accordingly.
+     * @throws IOException - If a sample could not be read.
+     */
+    @Test
+    public void testSymmetricHits() throws IOException {
+        Game puzzle   = loadSample("binairo1.txt");
+        Game solution = loadSample("binairo1.solution.txt");
+        Solver solver = new Solver();
+        SolutionCache cache = new SolutionCache(10);
+        solver.setCache(cache);
+        assertEquals(solution, solver.solve(puzzle));
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        assertEquals(solution, solver.solve(puzzle));
+        assertEquals(rotate(solution), solver.solve(rotate(puzzle)));
+        assertEquals(rotate(rotate(rotate(solution))), solver.solve(rotate(rotate(rotate(puzzle)))));
+        assertEquals(mirrorInverted(solution), solver.solve(mirrorInverted(puzzle)));
+        assertEquals(rotate(mirrorInverted(solution)), solver.solve(rotate(mirrorInverted(puzzle))));
+        assertEquals(5, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Tests if a rectangular puzzle is found through its transposition.
+     */
+    @Test
+    public void testRectangular() {
+        Game puzzle = createGame(
+                "1   ",
+                "    ",
+                " 0  ",
+                "    ",
+                "   1",
+                "    ");
+        SolutionCache cache = new SolutionCache(10);
+        Game solution = new Solver().solve(puzzle);
+        cache.put(puzzle, solution);
+        assertEquals(rotate(solution), cache.get(rotate(puzzle)));
+        assertEquals(mirrorInverted(solution), cache.get(mirrorInverted(puzzle)));
+        assertEquals(2, cache.getHits());
+    }
+
+    /**
+     * Tests if the least recently used puzzle is evicted, and if puzzles
+     * without a solution are cached.
+     * @throws IOException - If a sample could not be read.
+     */
+    @Test
+    public void testEviction() throws IOException {
+        Game first  = loadSample("binairo1.txt");
+        Game second = loadSample("binairo2.txt");
+        Game broken = createGame("11", "  ");
+        Solver solver = new Solver();
+        SolutionCache cache = new SolutionCache(2);
+        solver.setCache(cache);
+        solver.solve(first);
+        solver.solve(second);
+        solver.solve(first);
+        assertEquals(broken, solver.solve(broken));
+        assertEquals(2, cache.size());
+        assertNull(cache.get(second));
+        assertNull(cache.get(broken));
+        assertEquals(loadSample("binairo1.solution.txt"), cache.get(first));
+        assertEquals(3, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    /**
+     * Tests if a solve with a budget looks puzzles up in the cache, and 
+     * stores solved and unsolvable puzzles in it.
+     * @throws IOException - If a sample could not be read.
+     */
+    @Test
+    public void testBudget() throws IOException {
+        Game puzzle = loadSample("binairo1.txt");
+        Game broken = createGame("11", "  ");
+        Solver solver = new Solver();
+        SolutionCache cache = new SolutionCache(10);
+        solver.setCache(cache);
+        assertEquals(SolveResult.Status.SOLVED, solver.solve(puzzle, new SolveBudget()).getStatus());
+        assertEquals(SolveResult.Status.NONE, solver.solve(broken, new SolveBudget()).getStatus());
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        SolveResult solved = solver.solve(rotate(puzzle), new SolveBudget());
+        assertEquals(SolveResult.Status.SOLVED, solved.getStatus());
+        assertEquals(rotate(loadSample("binairo1.solution.txt")), solved.getBoard());
+        SolveResult none = solver.solve(broken, new SolveBudget());
+        assertEquals(SolveResult.Status.NONE, none.getStatus());
+        assertNull(none.getBoard());
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.size());
+    }
+
+    /**
+     * Tests if a capacity below 1 is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new SolutionCache(0);
+    }
+}
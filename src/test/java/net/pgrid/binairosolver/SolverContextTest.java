@@ -0,0 +1,100 @@
+package net.pgrid.binairosolver;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static net.pgrid.binairosolver.SolverTest.loadSample;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Unit test for the SolverContext class.
+ * @author Patrick Kramer
+ */
+public class SolverContextTest {
+
+    /**
+     * Loads the sample puzzles, and a larger generated one.
+     * @return The puzzles.
+     * @throws IOException - If a sample could not be read.
+     */
+    private static List<Game> puzzles() throws IOException {
+        List<Game> puzzles = new ArrayList<>();
+        puzzles.add(loadSample("binairo1.txt"));
+        puzzles.add(loadSample("binairo2.txt"));
+        new Generator(20, 20).generate(Difficulty.HARD, 2, 1).forEach(puzzles::add);
+        return puzzles;
+    }
+
+    /**
+     * Tests if a context solves puzzles of different sizes like the Solver.
+     * @throws IOException - If a sample could not be read.
+     */
+    @Test
+    public void testSolve() throws IOException {
+        Solver solver = new Solver();
+        SolverContext context = new SolverContext(solver);
+        assertNull(context.getBoard());
+        for (int round = 0; round < 2; round++) {
+            for (Game puzzle : puzzles()) {
+                assertTrue(context.solve(puzzle));
+                assertEquals(solver.solve(puzzle), context.getBoard());
+            }
+        }
+        assertFalse(context.solve(GameTest.createGame("000 ", "    ", "    ", "    ")));
+    }
+
+    /**
+     * Tests if a context keeps working once it has seen more sizes than it
+     * keeps.
+     */
+    @Test
+    public void testManySizes() {
+        Solver solver = new Solver();
+        SolverContext context = new SolverContext(solver);
+        for (int round = 0; round < 2; round++) {
+            for (int size = 2; size <= 2 * SolverContext.MAX_SIZES + 4; size += 2) {
+                assertTrue(context.solve(new Game(size, size)));
+                assertTrue(context.getBoard().isComplete());
+            }
+        }
+    }
+
+    /**
+     * Tests if solving puzzles of known sizes allocates nothing.
+     * @throws IOException - If a sample could not be read.
+     */
+    @Test
+    public void testNoAllocation() throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        List<Game> puzzles = puzzles();
+        SolverContext context = new SolverContext(new Solver());
+        for (int i = 0; i < 200; i++) {
+            for (Game puzzle : puzzles) {
+                assertTrue(context.solve(puzzle));
+            }
+        }
+        int solved = 0;
+        long before = allocations.getThreadAllocatedBytes(thread);
+        // An indexed loop, since an iterator would allocate.
+        for (int i = 0; i < 100 * puzzles.size(); i++) {
+            solved += context.solve(puzzles.get(i % puzzles.size())) ? 1 : 0;
+        }
+        long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+        assertEquals(100 * puzzles.size(), solved);
+        assertEquals("Bytes allocated by " + solved + " solves", 0, allocated);
+    }
+}
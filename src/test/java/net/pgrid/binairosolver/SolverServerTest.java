@@ -0,0 +1,272 @@
+package net.pgrid.binairosolver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static net.pgrid.binairosolver.SolverTest.loadSample;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for the SolverServer class.
+ * @author Patrick Kramer
+ */
+public class SolverServerTest {
+
+    private SolverServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * Starts a server on a free port of localhost.
+     * @param server The server to start.
+     * @throws IOException - If the server could not be started.
+     */
+    private void start(SolverServer server) throws IOException {
+        this.server = server;
+        server.setPort(0);
+        server.start();
+    }
+
+    /**
+     * Sends a request to the server.
+     * @param method The HTTP method.
+     * @param path   The path.
+     * @param body   The body, or null to send none.
+     * @return       The status code, followed by the body of the answer.
+     * @throws IOException - If the request failed.
+     */
+    private String[] request(String method, String path, String body) throws IOException {
+        URL url = new URL("http://localhost:" + server.getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream answer = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[4096];
+                for (int n = stream.read(buffer); n >= 0; n = stream.read(buffer)) {
+                    answer.write(buffer, 0, n);
+                }
+            }
+        }
+        connection.disconnect();
+        return new String[] {String.valueOf(status), new String(answer.toByteArray(), UTF_8)};
+    }
+
+    /**
+     * Tests solving a sample over HTTP.
+     * @throws IOException - If the request failed.
+     */
+    @Test
+    public void testSolve() throws IOException {
+        start(new SolverServer(new Solver()));
+        String puzzle = GameFormat.appendLine(loadSample("binairo1.txt"), new StringBuilder()).toString();
+        String[] answer = request("POST", "/solve", "{\"puzzle\": \"" + puzzle + "\", \"timeout\": 5000}");
+        assertEquals("200", answer[0]);
+        Map<String, String> fields = SolverServer.parseObject(answer[1]);
+        assertEquals("SOLVED", fields.get("status"));
+        assertEquals(loadSample("binairo1.solution.txt"), GameFormat.parseLine(fields.get("board"), null));
+
+        answer = request("GET", "/stats", null);
+        assertEquals("200", answer[0]);
+        assertTrue(answer[1], answer[1].startsWith("{\"requests\":1,\"rejected\":0,\"batches\":1,"));
+        assertEquals(1, server.getRequests());
+        assertTrue(server.getLatency(0.99, TimeUnit.NANOSECONDS) > 0);
+    }
+
+    /**
+     * Tests that malformed requests are answered with an error.
+     * @throws IOException - If a request failed.
+     */
+    @Test
+    public void testMalformedRequests() throws IOException {
+        start(new SolverServer(new Solver()));
+        assertEquals("400", request("POST", "/solve", "{\"puzzle\": ")[0]);
+        assertEquals("400", request("POST", "/solve", "{\"timeout\": 10}")[0]);
+        assertEquals("400", request("POST", "/solve", "{\"puzzle\": \"2x2:01\"}")[0]);
+        assertEquals("400", request("POST", "/solve", "{\"puzzle\": \"2x2:01a.\"}")[0]);
+        assertEquals("405", request("GET", "/solve", null)[0]);
+        assertEquals("404", request("GET", "/unknown", null)[0]);
+        assertEquals(0, server.getRequests());
+    }
+
+    /**
+     * Tests that oversized requests and puzzles are rejected before they are
+     * parsed.
+     * @throws IOException - If a request failed.
+     */
+    @Test
+    public void testLimits() throws IOException {
+        SolverServer limited = new SolverServer(new Solver());
+        limited.setMaxBodySize(2000);
+        limited.setMaxBoardSize(40);
+        start(limited);
+        StringBuilder cells = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            cells.append('.');
+        }
+        assertEquals("413", request("POST", "/solve", "{\"puzzle\": \"40x50:" + cells + "\"}")[0]);
+        assertEquals("400", request("POST", "/solve", "{\"puzzle\": \"100x2:" + cells.substring(0, 200) + "\"}")[0]);
+        assertEquals("400", request("POST", "/solve", "{\"puzzle\": \"2x100:" + cells.substring(0, 200) + "\"}")[0]);
+        assertEquals("400", request("POST", "/solve", "{\"puzzle\": \"99999999999x1:.\"}")[0]);
+        assertEquals("400", request("POST", "/solve", "{\"puzzle\": \"4x4\"}")[0]);
+        assertEquals("200", request("POST", "/solve", "{\"puzzle\": \"10x10:" + cells.substring(0, 100) + "\"}")[0]);
+        assertEquals(1, server.getRequests());
+    }
+
+    /**
+     * Tests that a puzzle without solution is answered with status NONE.
+     * @throws IOException - If the request failed.
+     */
+    @Test
+    public void testContradiction() throws IOException {
+        start(new SolverServer(new Solver()));
+        String[] answer = request("POST", "/solve", "{\"puzzle\": \"4x4:000.............\"}");
+        assertEquals("200", answer[0]);
+        Map<String, String> fields = SolverServer.parseObject(answer[1]);
+        assertEquals("NONE", fields.get("status"));
+        assertNull(fields.get("board"));
+    }
+
+    /**
+     * Tests that requests arriving together are solved in one batch.
+     * @throws Exception - If a request failed.
+     */
+    @Test(timeout = 20_000)
+    public void testBatching() throws Exception {
+        SolverServer batching = new SolverServer(new Solver());
+        batching.setBatchWindow(50, TimeUnit.MILLISECONDS);
+        start(batching);
+        String body = "{\"puzzle\": \"" + GameFormat.appendLine(loadSample("binairo2.txt"), new StringBuilder()) + "\"}";
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String[]>> answers = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                answers.add(clients.submit(() -> request("POST", "/solve", body)));
+            }
+            for (Future<String[]> answer : answers) {
+                assertEquals("200", answer.get()[0]);
+            }
+        } finally {
+            clients.shutdown();
+        }
+        assertEquals(16, server.getRequests());
+        assertTrue("batches: " + server.getBatches(), server.getBatches() < 16);
+    }
+
+    /**
+     * Tests that requests are rejected while the queue is full.
+     * @throws Exception - If a request failed.
+     */
+    @Test(timeout = 20_000)
+    public void testBackpressure() throws Exception {
+        SolverServer small = new SolverServer(new Solver());
+        small.setQueueCapacity(1);
+        small.setMaxBatchSize(1);
+        small.setThreads(1);
+        small.setTimeout(300, TimeUnit.MILLISECONDS);
+        start(small);
+        StringBuilder body = new StringBuilder("{\"puzzle\": \"200x200:");
+        for (int i = 0; i < 200 * 200; i++) {
+            body.append('.');
+        }
+        body.append("\"}");
+        ExecutorService clients = Executors.newFixedThreadPool(6);
+        int ok = 0, rejected = 0;
+        try {
+            List<Future<String[]>> answers = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                answers.add(clients.submit(() -> request("POST", "/solve", body.toString())));
+            }
+            for (Future<String[]> answer : answers) {
+                String status = answer.get()[0];
+                if ("503".equals(status)) {
+                    rejected++;
+                } else {
+                    assertEquals("200", status);
+                    ok++;
+                }
+            }
+        } finally {
+            clients.shutdown();
+        }
+        assertTrue("rejected: " + rejected, rejected > 0);
+        assertEquals(rejected, server.getRejected());
+        assertEquals(ok, server.getRequests());
+    }
+
+    /**
+     * Tests that a slow puzzle does not hold up the requests after it.
+     * @throws Exception - If a request failed.
+     */
+    @Test(timeout = 20_000)
+    public void testSlowPuzzle() throws Exception {
+        SolverServer slow = new SolverServer(new Solver());
+        slow.setThreads(2);
+        slow.setBatchWindow(0, TimeUnit.MILLISECONDS);
+        slow.setTimeout(3000, TimeUnit.MILLISECONDS);
+        start(slow);
+        StringBuilder body = new StringBuilder("{\"puzzle\": \"200x200:");
+        for (int i = 0; i < 200 * 200; i++) {
+            body.append('.');
+        }
+        body.append("\"}");
+        String sample = "{\"puzzle\": \"" + GameFormat.appendLine(loadSample("binairo2.txt"), new StringBuilder()) + "\"}";
+        ExecutorService clients = Executors.newFixedThreadPool(1);
+        try {
+            Future<String[]> empty = clients.submit(() -> request("POST", "/solve", body.toString()));
+            Thread.sleep(200);
+            long start = System.nanoTime();
+            assertEquals("200", request("POST", "/solve", sample)[0]);
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("took " + millis + " ms", millis < 2000);
+            assertFalse(empty.isDone());
+            assertEquals("200", empty.get()[0]);
+        } finally {
+            clients.shutdown();
+        }
+        assertEquals(2, server.getBatches());
+    }
+
+    /**
+     * Tests the parser of request bodies.
+     */
+    @Test
+    public void testParseObject() {
+        Map<String, String> fields = SolverServer.parseObject(" { \"a\" : \"x\\\"y\\u0041\", \"b\":12,\"c\":null } ");
+        assertEquals("x\"yA", fields.get("a"));
+        assertEquals("12", fields.get("b"));
+        assertNull(fields.get("c"));
+        assertTrue(fields.containsKey("c"));
+        assertTrue(SolverServer.parseObject("{}").isEmpty());
+    }
+}
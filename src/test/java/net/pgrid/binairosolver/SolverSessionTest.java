@@ -0,0 +1,226 @@
+package net.pgrid.binairosolver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import net.pgrid.binairosolver.Game.State;
+import org.junit.Test;
+
+import static net.pgrid.binairosolver.GameTest.createGame;
+import static net.pgrid.binairosolver.SolverTest.loadSample;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for the SolverSession class.
+ * @author Patrick Kramer
+ */
+public class SolverSessionTest {
+
+    private final Solver solver = new Solver();
+
+    /**
+     * Propagates a puzzle with some of its empty cells set.
+     * @param puzzle The puzzle.
+     * @param moves  The moves, as cells of the solution.
+     * @param values The solution.
+     * @return       The propagated board.
+     */
+    private static Game propagated(Game puzzle, List<Integer> moves, Game values) {
+        Game game = puzzle.copy();
+        for (int cell : moves) {
+            int x = cell % game.getWidth(), y = cell / game.getWidth();
+            game.set(x, y, values.get(x, y));
+        }
+        Propagator propagator = new Propagator(game, Inference.PATTERNS);
+        propagator.enqueueAll();
+        assertTrue(propagator.propagate());
+        return game;
+    }
+
+    /**
+     * Tests if a move returns the cells it forces.
+     * @throws IOException - If a sample could not be read.
+     */
+    @Test
+    public void testAssign() throws IOException {
+        Game puzzle = createGame("      ", "      ", "      ", "      ", "      ", "      ");
+        SolverSession session = new SolverSession(solver, puzzle);
+        assertEquals(puzzle, session.getBoard());
+        session.assign(0, 0, State.ONE);
+        SolverSession.Update update = session.assign(1, 0, State.ONE);
+        assertFalse(update.isContradiction());
+        assertEquals(2, session.getMoves());
+        // The pair forces a zero next to it.
+        assertEquals(State.ZERO, session.getBoard().get(2, 0));
+        boolean found = false;
+        for (int i = 0; i < update.size(); i++) {
+            assertEquals(update.getValue(i), session.getBoard().get(update.getX(i), update.getY(i)));
+            found |= update.getX(i) == 2 && update.getY(i) == 0;
+        }
+        assertTrue(found);
+
+        Game sample = loadSample("binairo1.txt");
+        assertEquals(propagated(sample, Collections.emptyList(), sample), new SolverSession(solver, sample).getBoard());
+    }
+
+    /**
+     * Tests if taking back moves in any order leaves the board that
+     * propagating the remaining moves from scratch gives.
+     * @throws IOException - If a sample could not be read.
+     */
+    @Test
+    public void testRetract() throws IOException {
+        Game puzzle = loadSample("binairo1.txt");
+        Game solution = loadSample("binairo1.solution.txt");
+        List<Integer> empty = new ArrayList<>();
+        for (int cell = 0; cell < puzzle.getWidth() * puzzle.getHeight(); cell++) {
+            if (puzzle.get(cell % puzzle.getWidth(), cell / puzzle.getWidth()) == State.EMPTY) {
+                empty.add(cell);
+            }
+        }
+        Random random = new Random(7);
+        SolverSession session = new SolverSession(solver, puzzle);
+        List<Integer> moves = new ArrayList<>();
+        for (int step = 0; step < 200; step++) {
+            Game before = session.getBoard().copy();
+            SolverSession.Update update;
+            int cell;
+            if (moves.size() > 0 && random.nextInt(3) == 0) {
+                cell = moves.remove(random.nextInt(moves.size()));
+                update = session.retract(cell % puzzle.getWidth(), cell / puzzle.getWidth());
+            } else {
+                do {
+                    cell = empty.get(random.nextInt(empty.size()));
+                } while (moves.contains(cell));
+                moves.add(cell);
+                int x = cell % puzzle.getWidth(), y = cell / puzzle.getWidth();
+                update = session.assign(x, y, solution.get(x, y));
+            }
+            assertFalse(update.isContradiction());
+            assertEquals(moves.size(), session.getMoves());
+            assertEquals(propagated(puzzle, moves, solution), session.getBoard());
+            for (int i = 0; i < update.size(); i++) {
+                assertTrue(update.getY(i) * puzzle.getWidth() + update.getX(i) != cell);
+                assertEquals(update.getValue(i), session.getBoard().get(update.getX(i), update.getY(i)));
+                before.set(update.getX(i), update.getY(i), update.getValue(i));
+            }
+            before.set(cell % puzzle.getWidth(), cell / puzzle.getWidth(),
+                    session.getBoard().get(cell % puzzle.getWidth(), cell / puzzle.getWidth()));
+            assertEquals(session.getBoard(), before);
+        }
+    }
+
+    /**
+     * Tests if a wrong move is reported as a contradiction until it is taken
+     * back, and if later moves are only recorded in the meantime.
+     */
+    @Test
+    public void testContradiction() {
+        Game puzzle = createGame("1   ", "    ", "    ", "    ");
+        SolverSession session = new SolverSession(solver, puzzle);
+        session.assign(1, 0, State.ONE);
+        assertEquals(State.ZERO, session.getBoard().get(2, 0));
+
+        // The rules force a zero here.
+        SolverSession.Update update = session.assign(2, 0, State.ONE);
+        assertTrue(update.isContradiction());
+        assertEquals(0, update.getConflictRow());
+        assertEquals(2, update.getConflictColumn());
+        assertEquals(0, update.size());
+        assertTrue(session.isContradiction());
+
+        Game stuck = session.getBoard().copy();
+        update = session.assign(0, 3, State.ONE);
+        assertTrue(update.isContradiction());
+        assertEquals(stuck, session.getBoard());
+
+        update = session.retract(2, 0);
+        assertFalse(update.isContradiction());
+        assertFalse(session.isContradiction());
+        assertEquals(State.ONE, session.getBoard().get(0, 3));
+        assertEquals(2, session.getMoves());
+
+        // The rules find no contradiction on this board, but propagating 
+        // some of its cells does.
+        Game unsolvable = createGame("    0 ", " 11   ", "   0  ", "1 1   ", "  0  0", "      ");
+        session = new SolverSession(solver, unsolvable);
+        assertFalse(session.isContradiction());
+        int failures = 0;
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < 6; x++) {
+                if (session.getBoard().get(x, y) != State.EMPTY) {
+                    continue;
+                }
+                update = session.assign(x, y, State.ONE);
+                if (update.isContradiction()) {
+                    failures++;
+                    assertTrue(update.getConflictRow() < 0 ^ update.getConflictColumn() < 0);
+                    assertEquals(0, update.size());
+                    assertEquals(State.EMPTY, session.getBoard().get(x, y));
+                }
+                assertFalse(session.retract(x, y).isContradiction());
+            }
+        }
+        assertTrue(failures > 0);
+    }
+
+    /**
+     * Tests if a contradictory puzzle stays contradictory.
+     */
+    @Test
+    public void testContradictoryPuzzle() {
+        SolverSession session = new SolverSession(solver, createGame("000 ", "    ", "    ", "    "));
+        assertTrue(session.isContradiction());
+        assertTrue(session.assign(0, 1, State.ONE).isContradiction());
+        assertTrue(session.retract(0, 1).isContradiction());
+    }
+
+    /**
+     * Tests if moves on clues are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testAssignClue() {
+        new SolverSession(solver, createGame("1 ", "  ")).assign(0, 0, State.ONE);
+    }
+
+    /**
+     * Tests if a second move on a cell is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testAssignTwice() {
+        SolverSession session = new SolverSession(solver, new Game(4, 4));
+        session.assign(0, 0, State.ONE);
+        session.assign(0, 0, State.ZERO);
+    }
+
+    /**
+     * Tests if a move outside the board is rejected, even where its index 
+     * would fall on another cell.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testAssignOutside() {
+        new SolverSession(solver, new Game(6, 6)).assign(8, 0, State.ONE);
+    }
+
+    /**
+     * Tests if taking back a move outside the board is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testRetractOutside() {
+        SolverSession session = new SolverSession(solver, new Game(6, 6));
+        session.assign(2, 1, State.ONE);
+        session.retract(8, 0);
+    }
+
+    /**
+     * Tests if taking back a move that was not made is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testRetractUnknown() {
+        new SolverSession(solver, new Game(4, 4)).retract(1, 1);
+    }
+}
@@ -0,0 +1,670 @@
+package net.pgrid.binairosolver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import net.pgrid.binairosolver.Game.State;
+import net.pgrid.binairosolver.SolverStatistics.Rule;
+import org.junit.Test;
+
+import static net.pgrid.binairosolver.GameTest.createGame;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for the Solver class.
+ * @author Patrick Kramer
+ */
+public class SolverTest {
+
+    private final Solver solver = new Solver();
+
+    /**
+     * Loads a Game from the samples directory.
+     * @param name The file name of the sample.
+     * @return     The loaded Game.
+     * @throws IOException - If the sample could not be read.
+     */
+    public static Game loadSample(String name) throws IOException {
+        return Game.create(Files.readAllLines(Paths.get("samples", name)));
+    }
+
+    /**
+     * Tests if the double rule fills both sides of a pair in a row.
+     * @throws SolverException - If the rule fails unexpectedly.
+     */
+    @Test
+    public void testDoubleRulePerRow() throws SolverException {
+        Game game = solver.solveDoubleRulePerRow(createGame(
+                "  11  ",
+                " 00   "
+        ));
+        assertEquals(" 0110 \n1001  \n", game.toString());
+    }
+
+    /**
+     * Tests if the gap rule fills the cell between two equal values in a
+     * column.
+     * @throws SolverException - If the rule fails unexpectedly.
+     */
+    @Test
+    public void testGapRulePerColumn() throws SolverException {
+        Game game = solver.solveGapRulePerColumn(createGame(
+                "1 ",
+                "  ",
+                "10",
+                "  "
+        ));
+        assertEquals(State.ZERO,  game.get(0, 1));
+        assertEquals(State.EMPTY, game.get(1, 1));
+    }
+
+    /**
+     * Tests if the count rule fills a row once half of it holds one value.
+     * @throws SolverException - If the rule fails unexpectedly.
+     */
+    @Test
+    public void testValueCountPerRow() throws SolverException {
+        Game game = solver.solveValueCountPerRow(createGame(
+                "1 1 ",
+                "    "
+        ));
+        assertEquals("1010\n    \n", game.toString());
+    }
+
+    /**
+     * Tests if the rules work across the word boundary of wide lines.
+     * @throws SolverException - If the rule fails unexpectedly.
+     */
+    @Test
+    public void testDoubleRuleWideRow() throws SolverException {
+        Game game = new Game(70, 2);
+        game.set(63, 0, State.ONE);
+        game.set(64, 0, State.ONE);
+        game.set(0, 1, State.ZERO);
+        game.set(2, 1, State.ZERO);
+        solver.solveSimpleRules(game);
+        assertEquals(State.ZERO, game.get(62, 0));
+        assertEquals(State.ZERO, game.get(65, 0));
+        assertEquals(State.ONE,  game.get(1, 1));
+    }
+
+    /**
+     * Tests if lines too long for a table of valid lines fill the cells that
+     * would leave the line unbalanced, where the simple rules do not.
+     */
+    @Test
+    public void testBalanceLongLine() {
+        String row = "1   1    1  01   1   1";
+        for (Inference inference : Inference.values()) {
+            Game game = new Game(row.length(), row.length());
+            for (int x=0; x<row.length(); x++) {
+                if (row.charAt(x) != ' ') {
+                    game.set(x, 0, row.charAt(x) == '1' ? State.ONE : State.ZERO);
+                }
+            }
+            Propagator propagator = new Propagator(game, inference);
+            propagator.enqueueAll();
+            assertTrue(propagator.propagate());
+            State expected = inference == Inference.RULES ? State.EMPTY : State.ZERO;
+            assertEquals(expected, game.get(5, 0));
+            assertEquals(expected, game.get(8, 0));
+        }
+    }
+
+    /**
+     * Tests if boards with lines of several words are solved, which needs
+     * thousands of nested guesses for an empty board.
+     * @throws SolverException - If a board could not be solved.
+     */
+    @Test
+    public void testSolveLargeBoard() throws SolverException {
+        Game solution = solver.solveImpl(new Game(100, 100));
+        assertValid(solution);
+        Random random = new Random(100);
+        Game puzzle = solution.copy();
+        for (int y=0; y<100; y++) {
+            for (int x=0; x<100; x++) {
+                if (random.nextDouble() >= 0.4) {
+                    puzzle.set(x, y, State.EMPTY);
+                }
+            }
+        }
+        Game result = solver.solveImpl(puzzle);
+        assertValid(result);
+        for (int y=0; y<100; y++) {
+            for (int x=0; x<100; x++) {
+                if (puzzle.get(x, y) != State.EMPTY) {
+                    assertEquals(puzzle.get(x, y), result.get(x, y));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that a board is complete and breaks none of the rules.
+     * @param game The board.
+     */
+    private static void assertValid(Game game) {
+        assertTrue(game.isComplete());
+        Propagator propagator = new Propagator(game.copy(), Inference.RULES);
+        propagator.enqueueAll();
+        assertTrue(propagator.propagate());
+    }
+
+    /**
+     * Tests if three equal values in a row are reported as a collision.
+     * @throws SolverException - Always.
+     */
+    @Test(expected = SolverException.class)
+    public void testCollision() throws SolverException {
+        solver.solveSimpleRules(createGame(
+                "111 ",
+                "    "
+        ));
+    }
+
+    /**
+     * Tests if a line with two empty cells is completed so that it does not
+     * duplicate a complete line.
+     */
+    @Test
+    public void testUniquenessForcesLine() {
+        Game game = createGame(
+                "1010",
+                "10  ",
+                "    ",
+                "    "
+        );
+        Propagator propagator = new Propagator(game);
+        propagator.enqueueAll();
+        assertTrue(propagator.propagate());
+        assertEquals(State.ZERO, game.get(2, 1));
+        assertEquals(State.ONE,  game.get(3, 1));
+    }
+
+    /**
+     * Tests if undoing to a mark restores the board, including the cells 
+     * filled by propagation.
+     */
+    @Test
+    public void testUndoRestoresBoard() {
+        Game game = createGame(
+                "1    0",
+                "      ",
+                "      ",
+                "      ",
+                "      ",
+                "      "
+        );
+        Game original = game.copy();
+        Propagator propagator = new Propagator(game);
+        int mark = propagator.mark();
+        propagator.assign(1, 0, State.ONE);
+        assertTrue(propagator.propagate());
+        assertEquals(State.ZERO, game.get(2, 0));
+        
+        propagator.undo(mark);
+        assertEquals(original, game);
+    }
+
+    /**
+     * Tests if a board with duplicate rows is reported as unsolvable.
+     * @throws SolverException - Always.
+     */
+    @Test(expected = SolverException.class)
+    public void testDuplicateLines() throws SolverException {
+        solver.solveImpl(createGame(
+                "1010",
+                "0101",
+                "1010",
+                "0101"
+        ));
+    }
+
+    /**
+     * Tests if the first sample puzzle is solved correctly.
+     * @throws IOException - If the sample could not be read.
+     */
+    @Test
+    public void testSolveSample1() throws IOException {
+        Game result = solver.solve(loadSample("binairo1.txt"));
+        assertEquals(loadSample("binairo1.solution.txt"), result);
+    }
+
+    /**
+     * Tests if the second sample puzzle is solved correctly.
+     * @throws IOException - If the sample could not be read.
+     */
+    @Test
+    public void testSolveSample2() throws IOException {
+        Game result = solver.solve(loadSample("binairo2.txt"));
+        assertEquals(loadSample("binairo2.solution.txt"), result);
+    }
+
+    /**
+     * Tests if every BranchingStrategy solves the samples and an empty board.
+     * @throws IOException     - If a sample could not be read.
+     * @throws SolverException - If a board could not be solved.
+     */
+    @Test
+    public void testBranchingStrategies() throws IOException, SolverException {
+        for (BranchingStrategy branching : BranchingStrategy.values()) {
+            solver.setBranchingStrategy(branching);
+            assertEquals(loadSample("binairo1.solution.txt"), solver.solveImpl(loadSample("binairo1.txt")));
+            Game empty = solver.solveImpl(new Game(8, 8));
+            assertTrue(branching.name(), empty.isComplete());
+        }
+    }
+
+    /**
+     * Tests if the line pattern tables hold the expected number of lines.
+     */
+    @Test
+    public void testLinePatternCounts() {
+        assertEquals(6,    LinePatterns.get(4).length);
+        assertEquals(14,   LinePatterns.get(6).length);
+        assertEquals(1296, LinePatterns.get(16).length);
+        assertEquals(null, LinePatterns.get(5));
+        assertEquals(null, LinePatterns.get(LinePatterns.MAX_LENGTH + 2));
+    }
+
+    /**
+     * Tests if every Inference level solves the samples and an empty board.
+     * @throws IOException     - If a sample could not be read.
+     * @throws SolverException - If a board could not be solved.
+     */
+    @Test
+    public void testInferenceLevels() throws IOException, SolverException {
+        for (Inference inference : Inference.values()) {
+            solver.setInference(inference);
+            assertEquals(loadSample("binairo1.solution.txt"), solver.solveImpl(loadSample("binairo1.txt")));
+            assertEquals(loadSample("binairo2.solution.txt"), solver.solveImpl(loadSample("binairo2.txt")));
+            assertTrue(inference.name(), solver.solveImpl(new Game(14, 14)).isComplete());
+        }
+    }
+
+    /**
+     * Tests if probing fills cells that the line patterns do not, all of
+     * which agree with the solution.
+     * @throws SolverException - If the puzzle could not be solved.
+     */
+    @Test
+    public void testProbing() throws SolverException {
+        Game puzzle = new Generator(16, 16).generate(Difficulty.HARD, 1, 3).findFirst().get();
+        Game solution = solver.solveImpl(puzzle);
+        Propagator patterns = new Propagator(puzzle.copy(), Inference.PATTERNS);
+        patterns.enqueueAll();
+        assertTrue(patterns.propagate());
+        assertFalse(patterns.game().isComplete());
+
+        Propagator probing = new Propagator(puzzle.copy(), Inference.PROBING);
+        SolverStatistics stats = new SolverStatistics();
+        probing.statistics(stats);
+        probing.probes(true);
+        probing.enqueueAll();
+        assertTrue(probing.propagate());
+        assertTrue(probing.filled() > patterns.filled());
+        assertTrue(stats.getCells(Rule.PROBING) > 0);
+        assertTrue(stats.getProbes() >= stats.getCells(Rule.PROBING));
+        for (int y=0; y<puzzle.getHeight(); y++) {
+            for (int x=0; x<puzzle.getWidth(); x++) {
+                State value = probing.game().get(x, y);
+                assertTrue(value == State.EMPTY || value == solution.get(x, y));
+            }
+        }
+    }
+
+    /**
+     * Tests if probing finds a board without solution that the line patterns
+     * cannot tell apart from a solvable one.
+     */
+    @Test
+    public void testProbingContradiction() {
+        Game game = createGame("    0 ", " 11   ", "   0  ", "1 1   ", "  0  0", "      ");
+        Propagator patterns = new Propagator(game.copy(), Inference.PATTERNS);
+        patterns.enqueueAll();
+        assertTrue(patterns.propagate());
+        assertEquals(SolveResult.Status.NONE, solver.countSolutions(game, 2).getStatus());
+
+        Propagator probing = new Propagator(game.copy(), Inference.PROBING);
+        probing.enqueueAll();
+        assertTrue(probing.propagate());
+        probing.probes(true);
+        assertFalse(probing.propagate());
+    }
+
+    /**
+     * Tests if the Solver with probing finds the same solutions with far
+     * fewer guesses on hard puzzles.
+     * @throws SolverException - If a puzzle could not be solved.
+     */
+    @Test
+    public void testProbingSolves() throws SolverException {
+        List<Game> puzzles = new Generator(20, 20).generate(Difficulty.HARD, 4, 5).collect(Collectors.toList());
+        long[] guesses = new long[2];
+        Inference[] levels = {Inference.PATTERNS, Inference.PROBING};
+        for (int i=0; i<levels.length; i++) {
+            Solver probing = new Solver();
+            probing.setInference(levels[i]);
+            SolverMetrics metrics = new SolverMetrics();
+            probing.addListener(metrics);
+            for (Game puzzle : puzzles) {
+                assertEquals(solver.solveImpl(puzzle), probing.solveImpl(puzzle));
+            }
+            guesses[i] = metrics.getGuesses();
+        }
+        assertTrue(Arrays.toString(guesses), guesses[1] < guesses[0]);
+    }
+
+    /**
+     * Tests if every Backend solves the samples and an empty board, and 
+     * reports a board with duplicate rows as unsolvable.
+     * @throws IOException     - If a sample could not be read.
+     * @throws SolverException - If a board could not be solved.
+     */
+    @Test
+    public void testBackends() throws IOException, SolverException {
+        for (Backend backend : Backend.values()) {
+            solver.setBackend(backend);
+            assertEquals(loadSample("binairo1.solution.txt"), solver.solveImpl(loadSample("binairo1.txt")));
+            assertEquals(loadSample("binairo2.solution.txt"), solver.solveImpl(loadSample("binairo2.txt")));
+            assertValid(solver.solveImpl(new Game(14, 14)));
+            Game duplicate = createGame("1010", "0101", "1010", "    ");
+            assertEquals(duplicate, solver.solve(duplicate));
+        }
+    }
+
+    /**
+     * Tests if the automatic backend switches to the SAT solver once the 
+     * search runs out of backtracks.
+     * @throws SolverException - If the board could not be solved.
+     */
+    @Test
+    public void testAutoBackendFallback() throws SolverException {
+        solver.setBackend(Backend.AUTO);
+        solver.setBacktrackBudget(0);
+        assertValid(solver.solveImpl(new Game(12, 12)));
+    }
+
+    /**
+     * Tests if a solve with a budget that does not run out reports solved 
+     * and unsolvable puzzles.
+     * @throws IOException - If a sample could not be read.
+     */
+    @Test
+    public void testSolveWithinBudget() throws IOException {
+        SolveResult solved = solver.solve(loadSample("binairo2.txt"), new SolveBudget(1, TimeUnit.MINUTES));
+        assertEquals(SolveResult.Status.SOLVED, solved.getStatus());
+        assertEquals(loadSample("binairo2.solution.txt"), solved.getBoard());
+        assertTrue(solved.getStatistics().getTotalNanos() > 0);
+        
+        SolveResult none = solver.solve(createGame("11", "  "), new SolveBudget());
+        assertEquals(SolveResult.Status.NONE, none.getStatus());
+        assertEquals(null, none.getBoard());
+    }
+
+    /**
+     * Tests if every Backend stops at the node limit, and returns the 
+     * propagated puzzle.
+     */
+    @Test
+    public void testNodeLimit() {
+        SolveBudget budget = new SolveBudget();
+        budget.setNodeLimit(0);
+        Game puzzle = new Game(30, 30);
+        puzzle.set(0, 0, State.ONE);
+        puzzle.set(1, 0, State.ONE);
+        for (Backend backend : Backend.values()) {
+            solver.setBackend(backend);
+            SolveResult result = solver.solve(puzzle, budget);
+            assertEquals(backend.name(), SolveResult.Status.UNKNOWN, result.getStatus());
+            assertEquals(State.ZERO, result.getBoard().get(2, 0));
+            assertFalse(result.getBoard().isComplete());
+        }
+        assertEquals(State.EMPTY, puzzle.get(2, 0));
+    }
+
+    /**
+     * Tests if sequential and parallel solves of a large board stop at the 
+     * deadline, and when the budget is cancelled from another thread.
+     * @throws InterruptedException - If the test is interrupted.
+     */
+    @Test(timeout = 20_000)
+    public void testTimeoutAndCancel() throws InterruptedException {
+        Game puzzle = new Game(200, 200);
+        for (int parallelism : new int[] {1, 2}) {
+            solver.setParallelism(parallelism);
+            SolveResult result = solver.solve(puzzle, new SolveBudget(50, TimeUnit.MILLISECONDS));
+            assertEquals(SolveResult.Status.UNKNOWN, result.getStatus());
+            
+            SolveBudget budget = new SolveBudget();
+            Thread canceller = new Thread(() -> {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ex) {
+                    // Cancel right away.
+                }
+                budget.cancel();
+            });
+            canceller.start();
+            result = solver.solve(puzzle, budget);
+            canceller.join();
+            assertEquals(SolveResult.Status.UNKNOWN, result.getStatus());
+            assertTrue(budget.isCancelled());
+        }
+    }
+
+    /**
+     * Tests if counting that runs out of its budget does not report a 
+     * puzzle with many solutions as unique.
+     */
+    @Test
+    public void testCountWithinBudget() {
+        SolveBudget budget = new SolveBudget();
+        budget.setNodeLimit(100);
+        SolveResult result = solver.countSolutions(new Game(20, 20), 1000, budget);
+        assertTrue(result.getStatus() == SolveResult.Status.UNKNOWN 
+                || result.getStatus() == SolveResult.Status.MULTIPLE);
+        assertTrue(result.getSolutions().size() < 1000);
+    }
+
+    /**
+     * Tests if the parallel search finds the same solutions as the 
+     * sequential search.
+     * @throws IOException     - If a sample could not be read.
+     * @throws SolverException - If a board could not be solved.
+     */
+    @Test
+    public void testParallelSolve() throws IOException, SolverException {
+        solver.setParallelism(4);
+        solver.setSplitDepth(3);
+        assertEquals(loadSample("binairo1.solution.txt"), solver.solveImpl(loadSample("binairo1.txt")));
+        assertEquals(loadSample("binairo2.solution.txt"), solver.solveImpl(loadSample("binairo2.txt")));
+        assertTrue(solver.solveImpl(new Game(16, 16)).isComplete());
+    }
+
+    /**
+     * Tests if solving a batch returns the solutions in input order, and 
+     * returns unsolvable puzzles unchanged without writing to standard 
+     * output.
+     * @throws IOException - If a sample could not be read.
+     */
+    @Test
+    public void testSolveAll() throws IOException {
+        Game unsolvable = createGame("000 ", "    ", "    ", "    ");
+        List<Game> puzzles = Arrays.asList(
+                loadSample("binairo1.txt"), loadSample("binairo2.txt"), unsolvable,
+                loadSample("binairo1.txt"), loadSample("binairo2.txt"));
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        List<Game> results;
+        System.setOut(new PrintStream(captured, true));
+        try {
+            results = solver.solveAll(puzzles.stream()).collect(Collectors.toList());
+        } finally {
+            System.setOut(out);
+        }
+        assertEquals(Arrays.asList(
+                loadSample("binairo1.solution.txt"), loadSample("binairo2.solution.txt"), unsolvable,
+                loadSample("binairo1.solution.txt"), loadSample("binairo2.solution.txt")), 
+                results);
+        assertEquals(0, captured.size());
+    }
+
+    /**
+     * Tests if listeners receive the statistics of each solve.
+     * @throws IOException - If a sample could not be read.
+     */
+    @Test
+    public void testStatistics() throws IOException {
+        Game puzzle = loadSample("binairo1.txt");
+        int empty = 0;
+        for (int y=0; y<puzzle.getHeight(); y++) {
+            for (int x=0; x<puzzle.getWidth(); x++) {
+                if (puzzle.get(x, y) == State.EMPTY) {
+                    empty++;
+                }
+            }
+        }
+        SolverMetrics metrics = new SolverMetrics();
+        solver.addListener(metrics);
+        solver.setInference(Inference.RULES);
+        solver.solve(puzzle);
+        solver.solve(createGame("11", "  "));
+        
+        assertEquals(2, metrics.getSolves());
+        assertEquals(1, metrics.getFailures());
+        SolverStatistics stats = metrics.getStatistics();
+        long filled = stats.getGuesses();
+        for (Rule rule : Rule.values()) {
+            filled += stats.getCells(rule);
+        }
+        // Cells filled in failed branches are counted as well.
+        assertTrue(filled >= empty);
+        assertTrue(stats.getCells(Rule.DOUBLE) > 0);
+        assertEquals(0, stats.getCells(Rule.PATTERNS));
+        assertTrue(stats.getContradictions() >= 1);
+        assertTrue(stats.getBacktracks() <= stats.getGuesses());
+        assertTrue(stats.getLineVisits() >= puzzle.getWidth() + puzzle.getHeight());
+        assertTrue(stats.getTotalNanos() >= stats.getPropagationNanos() + stats.getSearchNanos());
+        
+        solver.removeListener(metrics);
+        solver.solve(puzzle);
+        assertEquals(2, metrics.getSolves());
+    }
+    
+    /**
+     * Tests if the aggregated metrics are exposed through JMX.
+     * @throws IOException  - If a sample could not be read.
+     * @throws JMException  - If the MBean could not be registered or read.
+     */
+    @Test
+    public void testMetricsMBean() throws IOException, JMException {
+        String name = "net.pgrid.binairosolver:type=SolverMetrics,name=test";
+        SolverMetrics metrics = new SolverMetrics().register(name);
+        try {
+            solver.addListener(metrics);
+            solver.setParallelism(2);
+            solver.solve(new Game(12, 12));
+            ObjectName objectName = new ObjectName(name);
+            assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "Solves"));
+            assertTrue(metrics.getGuesses() > 0);
+            metrics.reset();
+            assertEquals(0L, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "Solves"));
+            assertFalse(metrics.getGuesses() > 0);
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(name));
+        }
+    }
+
+    /**
+     * Tests if a shared TranspositionTable cuts the branches of a repeated 
+     * solve that were refuted before, without changing the solutions.
+     * @throws IOException     - If a sample could not be read.
+     * @throws SolverException - If a board could not be solved.
+     */
+    @Test
+    public void testTranspositionTable() throws IOException, SolverException {
+        Game solution = loadSample("binairo1.solution.txt");
+        SolverMetrics metrics = new SolverMetrics();
+        solver.addListener(metrics);
+        solver.setInference(Inference.RULES);
+        // Cutoffs change the weights of MOST_FAILED, and with them the 
+        // solution it finds for puzzles with several solutions.
+        solver.setBranchingStrategy(BranchingStrategy.MOST_CONSTRAINED);
+        solver.setTranspositionTable(new TranspositionTable(1 << 20));
+        Random random = new Random(7);
+        long cutoffs = 0;
+        for (int i=0; i<20; i++) {
+            Game puzzle = solution.copy();
+            for (int y=0; y<puzzle.getHeight(); y++) {
+                for (int x=0; x<puzzle.getWidth(); x++) {
+                    if (random.nextDouble() >= 0.25) {
+                        puzzle.set(x, y, State.EMPTY);
+                    }
+                }
+            }
+            metrics.reset();
+            Game first = solver.solveImpl(puzzle);
+            long guesses = metrics.getGuesses();
+            metrics.reset();
+            assertEquals(first, solver.solveImpl(puzzle));
+            assertTrue(metrics.getGuesses() <= guesses);
+            cutoffs += metrics.getCutoffs();
+        }
+        assertTrue(cutoffs > 0);
+    }
+
+    /**
+     * Tests if counting tells unique puzzles, puzzles with several solutions 
+     * and puzzles without a solution apart.
+     * @throws IOException - If a sample could not be read.
+     */
+    @Test
+    public void testCountSolutions() throws IOException {
+        SolveResult unique = solver.countSolutions(loadSample("binairo1.txt"), 2);
+        assertEquals(SolveResult.Status.UNIQUE, unique.getStatus());
+        assertEquals(loadSample("binairo1.solution.txt"), unique.getSolution());
+        assertTrue(unique.getStatistics().getLineVisits() > 0);
+        
+        SolveResult multiple = solver.countSolutions(new Game(6, 6), 2);
+        assertEquals(SolveResult.Status.MULTIPLE, multiple.getStatus());
+        assertEquals(2, multiple.getSolutions().size());
+        assertFalse(multiple.getSolutions().get(0).equals(multiple.getSolutions().get(1)));
+        
+        SolveResult none = solver.countSolutions(createGame("11", "  "), 2);
+        assertEquals(SolveResult.Status.NONE, none.getStatus());
+        assertEquals(null, none.getSolution());
+        
+        // There are 72 valid 4x4 boards.
+        for (BranchingStrategy branching : BranchingStrategy.values()) {
+            solver.setBranchingStrategy(branching);
+            assertEquals(72, solver.countSolutions(new Game(4, 4), 1000).getSolutions().size());
+        }
+    }
+    
+    /**
+     * Tests if counting with a shared TranspositionTable does not store 
+     * boards below which solutions were found.
+     */
+    @Test
+    public void testCountWithTranspositionTable() {
+        solver.setTranspositionTable(new TranspositionTable(1 << 16));
+        for (int i=0; i<3; i++) {
+            assertEquals(72, solver.countSolutions(new Game(4, 4), 1000).getSolutions().size());
+            assertTrue(solver.solve(new Game(4, 4)).isComplete());
+        }
+    }
+}
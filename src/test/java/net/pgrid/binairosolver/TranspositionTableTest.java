@@ -0,0 +1,74 @@
+package net.pgrid.binairosolver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for the TranspositionTable class.
+ * @author Patrick Kramer
+ */
+public class TranspositionTableTest {
+
+    /**
+     * Tests if stored positions are found, and others are not.
+     */
+    @Test
+    public void testStore() {
+        TranspositionTable table = new TranspositionTable(1 << 10);
+        long key = 0x123456789ABC0000L;
+        assertFalse(table.contains(key));
+        table.store(key, 10);
+        assertTrue(table.contains(key));
+        assertFalse(table.contains(key ^ (1L << 40)));
+        table.clear();
+        assertFalse(table.contains(key));
+    }
+
+    /**
+     * Tests if the first slot of a bucket keeps the position with the most 
+     * empty cells, and the second slot takes the newest other position.
+     */
+    @Test
+    public void testReplacement() {
+        TranspositionTable table = new TranspositionTable(16);
+        long a = 1L << 20, b = 2L << 20, c = 3L << 20;
+        table.store(a, 30);
+        table.store(b, 10);
+        table.store(c, 20);
+        assertTrue(table.contains(a));
+        assertFalse(table.contains(b));
+        assertTrue(table.contains(c));
+        table.store(b, 40);
+        assertTrue(table.contains(b));
+        assertTrue(table.contains(c));
+        assertFalse(table.contains(a));
+    }
+
+    /**
+     * Tests if the capacity is rounded down to a power of two.
+     */
+    @Test
+    public void testCapacity() {
+        assertEquals(2, new TranspositionTable(16).getCapacity());
+        assertEquals(1 << 17, new TranspositionTable((1 << 20) + 1000).getCapacity());
+    }
+
+    /**
+     * Tests if the keys of boards of different sizes differ.
+     */
+    @Test
+    public void testKeyIncludesSize() {
+        assertTrue(TranspositionTable.key(new Game(6, 8)) != TranspositionTable.key(new Game(8, 6)));
+    }
+
+    /**
+     * Tests if a budget below one bucket is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBudget() {
+        new TranspositionTable(8);
+    }
+}